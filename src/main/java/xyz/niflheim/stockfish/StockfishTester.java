@@ -0,0 +1,351 @@
+/* Copyright 2018 David Cai Wang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.niflheim.stockfish;
+
+import xyz.niflheim.stockfish.engine.StockfishClient;
+import xyz.niflheim.stockfish.engine.enums.Option;
+import xyz.niflheim.stockfish.engine.enums.Query;
+import xyz.niflheim.stockfish.engine.enums.QueryType;
+import xyz.niflheim.stockfish.engine.enums.Variant;
+import xyz.niflheim.stockfish.exceptions.StockfishInitException;
+import xyz.niflheim.stockfish.metrics.LatencyHistogram;
+import xyz.niflheim.stockfish.metrics.StockfishMetrics;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Load generator for {@link StockfishClient}.
+ * <p>
+ * Drives a client with a weighted mix of {@link QueryType}s over a FEN corpus at a fixed concurrency,
+ * then prints throughput, engine utilization and latency percentiles. Run without arguments for
+ * defaults or with {@code --help} for the list of flags.
+ *
+ * @author Niflheim
+ * @since 3.1
+ */
+public class StockfishTester {
+
+    private static final String[] DEFAULT_CORPUS = {
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            "r1bqkbnr/pppp1ppp/2n5/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R w KQkq - 2 3",
+            "r1bqkb1r/pppp1ppp/2n2n2/4p2Q/2B1P3/8/PPPP1PPP/RNB1K1NR w KQkq - 4 4",
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+            "6k1/5ppp/8/8/8/8/5PPP/3R2K1 w - - 0 1",
+            "8/8/4k3/8/2p5/8/B2K4/8 w - - 0 1"
+    };
+
+    private static final long MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final Map<String, String> args;
+    private final Map<QueryType, Integer> mix = new EnumMap<>(QueryType.class);
+    private final Map<QueryType, LatencyHistogram> latencies = new EnumMap<>(QueryType.class);
+    private final Map<String, List<String>> legalMoves = new ConcurrentHashMap<>();
+    private final LatencyHistogram total = new LatencyHistogram();
+    private final AtomicLong completed = new AtomicLong();
+    private final Object utilizationLock = new Object();
+
+    private List<String> corpus;
+    private List<String> playable;
+    private int instances, concurrency, depth, outstanding;
+    private long movetime, nodes, busyNanos, lastEvent;
+
+    private StockfishTester(Map<String, String> args) {
+        this.args = args;
+    }
+
+    public static void main(String[] argv) throws Exception {
+        Map<String, String> args = parseArgs(argv);
+        if (args.containsKey("help")) {
+            printUsage();
+            return;
+        }
+
+        new StockfishTester(args).run();
+    }
+
+    private void run() throws StockfishInitException, IOException, InterruptedException {
+        instances = intArg("instances", 1);
+        concurrency = intArg("concurrency", instances);
+        depth = intArg("depth", 10);
+        movetime = longArg("movetime", -1);
+        nodes = longArg("nodes", -1);
+        int queries = intArg("queries", 1000);
+        int warmup = intArg("warmup", Math.min(queries, 2 * instances));
+        long timeout = longArg("timeout", 60_000);
+        parseMix(args.getOrDefault("mix", "Best_Move=70,Legal_Moves=15,Make_Move=10,Checkers=5"));
+        corpus = loadCorpus(args.get("fens"));
+
+        StockfishClient.Builder builder = new StockfishClient.Builder()
+                .setInstances(instances)
+                .setVariant(Variant.valueOf(args.getOrDefault("variant", Variant.DEFAULT.name()).toUpperCase()))
+                .setOption(Option.Threads, intArg("threads", 1))
+                .setOption(Option.Hash, intArg("hash", 16));
+        if (args.containsKey("path"))
+            builder.setPath(args.get("path"));
+
+        StockfishClient client = builder.build();
+        try {
+            if (mix.containsKey(QueryType.Make_Move))
+                prefetchLegalMoves(client, timeout);
+
+            System.out.printf("Warming up with %d queries...%n", warmup);
+            drive(client, warmup, timeout, false);
+            client.getMetrics().reset();
+
+            System.out.printf("Running %d queries on %d engines at concurrency %d...%n", queries, instances, concurrency);
+            long elapsed = drive(client, queries, timeout, true);
+            report(queries, elapsed, client.getMetrics());
+        } finally {
+            client.close();
+        }
+    }
+
+    private long drive(StockfishClient client, int queries, long timeout, boolean measure) throws InterruptedException {
+        Semaphore permits = new Semaphore(concurrency);
+        CountDownLatch done = new CountDownLatch(queries);
+        completed.set(0);
+
+        synchronized (utilizationLock) {
+            busyNanos = 0;
+            outstanding = 0;
+            lastEvent = System.nanoTime();
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < queries; i++) {
+            if (!permits.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+                System.err.println("Timed out waiting for a free slot, the pool seems stuck.");
+                break;
+            }
+
+            Query query = nextQuery();
+            long submitted = System.nanoTime();
+            onSubmit(submitted);
+            client.submit(query, output -> {
+                long now = System.nanoTime();
+                onComplete(now);
+                if (measure) {
+                    latencies.computeIfAbsent(query.getType(), t -> new LatencyHistogram()).record(now - submitted);
+                    total.record(now - submitted);
+                }
+                completed.incrementAndGet();
+                permits.release();
+                done.countDown();
+            });
+        }
+
+        if (!done.await(timeout, TimeUnit.MILLISECONDS))
+            System.err.printf("%d queries did not complete within %d ms.%n", done.getCount(), timeout);
+
+        return System.nanoTime() - start;
+    }
+
+    /*
+     * The pool is work conserving, so the number of busy engines at any instant is
+     * min(outstanding, instances). Integrating that over time gives engine utilization
+     * without having to instrument the client.
+     */
+    private void onSubmit(long now) {
+        synchronized (utilizationLock) {
+            busyNanos += (now - lastEvent) * Math.min(outstanding, instances);
+            lastEvent = now;
+            outstanding++;
+        }
+    }
+
+    private void onComplete(long now) {
+        synchronized (utilizationLock) {
+            busyNanos += (now - lastEvent) * Math.min(outstanding, instances);
+            lastEvent = now;
+            outstanding--;
+        }
+    }
+
+    private Query nextQuery() {
+        QueryType type = nextType();
+        List<String> positions = type == QueryType.Make_Move ? playable : corpus;
+        String fen = positions.get(ThreadLocalRandom.current().nextInt(positions.size()));
+        Query.Builder builder = new Query.Builder(type, fen);
+
+        if (type == QueryType.Best_Move) {
+            builder.setDepth(depth);
+            if (movetime > 0)
+                builder.setMovetime(movetime);
+            if (nodes > 0)
+                builder.setNodes(nodes);
+        } else if (type == QueryType.Make_Move) {
+            List<String> moves = legalMoves.get(fen);
+            builder.setMove(moves.get(ThreadLocalRandom.current().nextInt(moves.size())));
+        }
+
+        return builder.build();
+    }
+
+    private QueryType nextType() {
+        int weight = mix.values().stream().mapToInt(Integer::intValue).sum();
+        int pick = ThreadLocalRandom.current().nextInt(weight);
+        for (Map.Entry<QueryType, Integer> entry : mix.entrySet()) {
+            pick -= entry.getValue();
+            if (pick < 0)
+                return entry.getKey();
+        }
+        return QueryType.Best_Move;
+    }
+
+    private void prefetchLegalMoves(StockfishClient client, long timeout) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(corpus.size());
+        for (String fen : corpus)
+            client.submit(new Query.Builder(QueryType.Legal_Moves, fen).build(), moves -> {
+                legalMoves.put(fen, Arrays.stream(moves.trim().split("\\s+"))
+                        .filter(m -> m.length() == 4)
+                        .collect(Collectors.toList()));
+                done.countDown();
+            });
+
+        done.await(timeout, TimeUnit.MILLISECONDS);
+
+        // mated and stalemated positions, or those whose prefetch timed out, can not take a Make_Move query
+        playable = corpus.stream()
+                .filter(fen -> !legalMoves.getOrDefault(fen, Collections.emptyList()).isEmpty())
+                .collect(Collectors.toList());
+        if (playable.isEmpty()) {
+            System.err.println("No position of the corpus has a legal move, leaving out Make_Move queries.");
+            mix.remove(QueryType.Make_Move);
+            if (mix.isEmpty())
+                mix.put(QueryType.Best_Move, 1);
+        }
+    }
+
+    private void report(int queries, long elapsed, StockfishMetrics metrics) {
+        double seconds = elapsed / 1e9;
+        long busy;
+        synchronized (utilizationLock) {
+            busy = busyNanos;
+        }
+
+        System.out.println();
+        System.out.printf("Queries:      %d completed, %d lost%n", completed.get(), queries - completed.get());
+        System.out.printf("Duration:     %.3f s%n", seconds);
+        System.out.printf("Throughput:   %.1f queries/s%n", completed.get() / seconds);
+        System.out.printf("Utilization:  %.1f %% of %d engines (%.1f %% spent inside the engines)%n",
+                100.0 * busy / ((double) elapsed * instances), instances,
+                100.0 * metrics.getEngineBusyNanos() / ((double) elapsed * instances));
+        System.out.printf("Failures:     %d failed, %d crashed%n", metrics.getFailed(), metrics.getCrashed());
+        System.out.printf("Search speed: %.0f nodes/s per engine%n", metrics.getNodesPerSecond());
+        if (nodes > 0)
+            System.out.printf("Capacity:     %.1f Best_Move queries/s at %d nodes%n", instances * metrics.getNodesPerSecond() / nodes, nodes);
+        System.out.println();
+        System.out.printf("%-12s %8s %9s %9s %9s %9s %9s %9s%n",
+                "latency(ms)", "count", "mean", "p50", "p99", "p99.9", "max", "q/s");
+        for (Map.Entry<QueryType, LatencyHistogram> entry : latencies.entrySet())
+            printRow(entry.getKey().name(), entry.getValue(), seconds);
+        printRow("all", total, seconds);
+        printRow("queue wait", metrics.getQueueWait(), seconds);
+    }
+
+    private void printRow(String name, LatencyHistogram histogram, double seconds) {
+        System.out.printf("%-12s %8d %9.2f %9.2f %9.2f %9.2f %9.2f %9.1f%n", name, histogram.getCount(),
+                histogram.getMean() / MILLI,
+                (double) histogram.getValueAtPercentile(50) / MILLI,
+                (double) histogram.getValueAtPercentile(99) / MILLI,
+                (double) histogram.getValueAtPercentile(99.9) / MILLI,
+                (double) histogram.getMax() / MILLI,
+                histogram.getCount() / seconds);
+    }
+
+    private void parseMix(String value) {
+        for (String part : value.split(",")) {
+            String[] weighted = part.trim().split("[=:]");
+            int weight = weighted.length > 1 ? Integer.parseInt(weighted[1].trim()) : 1;
+            if (weight > 0)
+                mix.put(QueryType.valueOf(weighted[0].trim()), weight);
+        }
+
+        if (mix.isEmpty())
+            throw new IllegalArgumentException("Query mix must contain at least one type: " + value);
+    }
+
+    private static List<String> loadCorpus(String file) throws IOException {
+        if (file == null)
+            return Arrays.asList(DEFAULT_CORPUS);
+
+        List<String> fens = Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8).stream()
+                .map(String::trim)
+                .filter(l -> !l.isEmpty() && !l.startsWith("#"))
+                .collect(Collectors.toList());
+
+        if (fens.isEmpty())
+            throw new IllegalArgumentException("FEN corpus is empty: " + file);
+
+        return fens;
+    }
+
+    private int intArg(String name, int def) {
+        return args.containsKey(name) ? Integer.parseInt(args.get(name)) : def;
+    }
+
+    private long longArg(String name, long def) {
+        return args.containsKey(name) ? Long.parseLong(args.get(name)) : def;
+    }
+
+    private static Map<String, String> parseArgs(String[] argv) {
+        Map<String, String> args = new HashMap<>();
+        for (int i = 0; i < argv.length; i++) {
+            if (!argv[i].startsWith("--"))
+                throw new IllegalArgumentException("Unexpected argument: " + argv[i]);
+
+            String name = argv[i].substring(2);
+            int eq = name.indexOf('=');
+            if (eq >= 0)
+                args.put(name.substring(0, eq), name.substring(eq + 1));
+            else if (i + 1 < argv.length && !argv[i + 1].startsWith("--"))
+                args.put(name, argv[++i]);
+            else
+                args.put(name, "true");
+        }
+        return args;
+    }
+
+    private static void printUsage() {
+        System.out.println("Usage: StockfishTester [--flag value]...");
+        System.out.println("  --instances N    number of Stockfish engines (default 1)");
+        System.out.println("  --variant V      DEFAULT, BMI2, POPCNT or MODERN (default DEFAULT)");
+        System.out.println("  --path DIR       folder containing the Stockfish binaries");
+        System.out.println("  --threads N      Threads option per engine (default 1)");
+        System.out.println("  --hash MB        Hash option per engine (default 16)");
+        System.out.println("  --concurrency N  maximum queries in flight (default = instances)");
+        System.out.println("  --queries N      measured queries (default 1000)");
+        System.out.println("  --warmup N       unmeasured warm-up queries (default 2 * instances)");
+        System.out.println("  --mix SPEC       weighted QueryTypes, e.g. Best_Move=70,Legal_Moves=30");
+        System.out.println("  --depth N        Best_Move search depth (default 10)");
+        System.out.println("  --movetime MS    Best_Move search time (default unset)");
+        System.out.println("  --nodes N        Best_Move nodes budget (default unset)");
+        System.out.println("  --fens FILE      FEN corpus, one position per line (default built-in)");
+        System.out.println("  --timeout MS     give up waiting for a query after MS (default 60000)");
+    }
+}
@@ -0,0 +1,50 @@
+/* Copyright 2018 David Cai Wang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.niflheim.stockfish.book;
+
+/**
+ * Move stored in an opening book for a position.
+ *
+ * @author Niflheim
+ * @since 3.1
+ */
+public class BookMove {
+    private final String move;
+    private final int weight;
+
+    BookMove(String move, int weight) {
+        this.move = move;
+        this.weight = weight;
+    }
+
+    /**
+     * @return move in UCI notation, castling as king move, e.g. {@code e1g1}
+     */
+    public String getMove() {
+        return move;
+    }
+
+    /**
+     * @return relative weight of the move, typically derived from its score in the games the book was built from
+     */
+    public int getWeight() {
+        return weight;
+    }
+
+    @Override
+    public String toString() {
+        return move + " (" + weight + ")";
+    }
+}
@@ -0,0 +1,183 @@
+/* Copyright 2018 David Cai Wang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.niflheim.stockfish.book;
+
+import xyz.niflheim.stockfish.chess.Position;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Read-only Polyglot opening book ({@code .bin}).
+ * <p>
+ * The file is memory-mapped rather than loaded, so the book takes no heap regardless of its size and pages are
+ * read by the operating system as lookups touch them. Entries are sorted by position key, a lookup is a binary
+ * search over the mapping. Instances are safe for use by multiple threads.
+ *
+ * @author Niflheim
+ * @see <a href="http://hgm.nubati.net/book_format.html">Polyglot book format</a>
+ * @since 3.1
+ */
+public class PolyglotBook {
+
+    private static final int ENTRY_SIZE = 16;
+    private static final long SEGMENT_SIZE = 1L << 30;
+    private static final String PROMOTIONS = " nbrq";
+
+    private final MappedByteBuffer[] segments;
+    private final long entries;
+
+    private PolyglotBook(MappedByteBuffer[] segments, long entries) {
+        this.segments = segments;
+        this.entries = entries;
+    }
+
+    /**
+     * Map a Polyglot book file. The mapping stays valid after the file is closed and is released once the book
+     * is no longer referenced.
+     *
+     * @param file path to the {@code .bin} file
+     * @return book backed by the file
+     * @throws IOException if the file can not be read or its size is not a multiple of the entry size
+     */
+    public static PolyglotBook open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size % ENTRY_SIZE != 0)
+                throw new IOException("Not a Polyglot book, size " + size + " is not a multiple of " + ENTRY_SIZE + ": " + file);
+
+            MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((size + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+            for (int i = 0; i < segments.length; i++) {
+                long offset = i * SEGMENT_SIZE;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(SEGMENT_SIZE, size - offset));
+            }
+
+            return new PolyglotBook(segments, size / ENTRY_SIZE);
+        }
+    }
+
+    /**
+     * @param position position to hash
+     * @return Polyglot key of the position
+     */
+    public static long key(Position position) {
+        return PolyglotKeys.key(position);
+    }
+
+    /**
+     * @return number of entries in the book
+     */
+    public long size() {
+        return entries;
+    }
+
+    /**
+     * @param position position to look up
+     * @return book moves of the position in file order, best first in books built by Polyglot, empty if the
+     * position is not in the book
+     */
+    public List<BookMove> getMoves(Position position) {
+        long key = key(position);
+
+        long low = 0;
+        long high = entries;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (Long.compareUnsigned(keyAt(middle), key) < 0)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+
+        List<BookMove> moves = new ArrayList<>();
+        for (long i = low; i < entries && keyAt(i) == key; i++)
+            moves.add(new BookMove(decode(position, segment(i).getShort(offset(i) + 8) & 0xFFFF),
+                    segment(i).getShort(offset(i) + 10) & 0xFFFF));
+
+        return moves.isEmpty() ? Collections.emptyList() : moves;
+    }
+
+    /**
+     * @param position position to look up
+     * @return book move with the highest weight, or {@code null} if the position is not in the book
+     */
+    public String getBestMove(Position position) {
+        BookMove best = null;
+        for (BookMove move : getMoves(position))
+            if (best == null || move.getWeight() > best.getWeight())
+                best = move;
+
+        return best == null ? null : best.getMove();
+    }
+
+    /**
+     * @param position position to look up
+     * @param random   source of randomness
+     * @return book move chosen with probability proportional to its weight, or {@code null} if the position is
+     * not in the book or all of its moves have weight 0
+     */
+    public String getWeightedMove(Position position, Random random) {
+        List<BookMove> moves = getMoves(position);
+        int total = 0;
+        for (BookMove move : moves)
+            total += move.getWeight();
+        if (total == 0)
+            return null;
+
+        int pick = random.nextInt(total);
+        for (BookMove move : moves) {
+            pick -= move.getWeight();
+            if (pick < 0)
+                return move.getMove();
+        }
+        return null;
+    }
+
+    private long keyAt(long index) {
+        return segment(index).getLong(offset(index));
+    }
+
+    private MappedByteBuffer segment(long index) {
+        return segments[(int) (index * ENTRY_SIZE / SEGMENT_SIZE)];
+    }
+
+    private static int offset(long index) {
+        return (int) (index * ENTRY_SIZE % SEGMENT_SIZE);
+    }
+
+    /**
+     * Polyglot packs moves as to-square in bits 0-5, from-square in bits 6-11 and promotion piece in bits 12-14,
+     * squares numbered like {@link Position}. Castling is stored as the king capturing its own rook.
+     */
+    private static String decode(Position position, int move) {
+        int to = move & 0x3F;
+        int from = (move >>> 6) & 0x3F;
+        int promotion = (move >>> 12) & 0x7;
+
+        if (Character.toLowerCase(position.pieceAt(from)) == 'k' && (from == 4 || from == 60) && Math.abs(to - from) > 2
+                && to / 8 == from / 8)
+            to = to > from ? from + 2 : from - 2;
+
+        String uci = Position.squareName(from) + Position.squareName(to);
+        return promotion > 0 && promotion < PROMOTIONS.length() ? uci + PROMOTIONS.charAt(promotion) : uci;
+    }
+}
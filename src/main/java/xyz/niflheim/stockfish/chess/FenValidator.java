@@ -0,0 +1,273 @@
+/* Copyright 2018 David Cai Wang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.niflheim.stockfish.chess;
+
+/**
+ * Single-pass FEN validator that checks syntax and the legality rules Stockfish relies on.
+ * <p>
+ * A FEN is accepted if it has all six fields, every rank covers eight squares, each side has exactly one king
+ * and at most eight pawns, no pawn stands on the first or last rank, the side that just moved is not in check,
+ * castling rights match the king and rook squares and an en passant square follows a double pawn push.
+ * Valid input is checked without allocating, only a rejection creates its message. {@link PackedPosition}s are
+ * checked by the same rules straight from their words, without building a FEN.
+ *
+ * @author Niflheim
+ * @see <a href="https://en.wikipedia.org/wiki/Forsyth%E2%80%93Edwards_Notation">Wiki FEN</a>
+ * @since 3.1
+ */
+public final class FenValidator {
+
+    private static final long BACK_RANKS = 0xFF000000000000FFL;
+    private static final int[] KNIGHT_FILES = {1, 2, 2, 1, -1, -2, -2, -1};
+    private static final int[] KNIGHT_RANKS = {2, 1, -1, -2, -2, -1, 1, 2};
+
+    private FenValidator() {
+    }
+
+    /**
+     * @param fen FEN chessboard position as string
+     * @return {@code true} if the FEN is well formed and describes a legal position
+     */
+    public static boolean isValid(String fen) {
+        return validate(fen) == null;
+    }
+
+    /**
+     * @param fen FEN chessboard position as string
+     * @return {@code null} if the FEN is well formed and describes a legal position, otherwise the reason it is not
+     */
+    public static String validate(String fen) {
+        if (fen == null)
+            return "FEN is null";
+
+        int length = fen.length();
+        int i = 0;
+
+        // one bitboard per piece kind, kept in locals to stay allocation-free
+        long wp = 0, wn = 0, wb = 0, wr = 0, wq = 0, wk = 0;
+        long bp = 0, bn = 0, bb = 0, br = 0, bq = 0, bk = 0;
+        int rank = 7, file = 0;
+        for (; i < length && fen.charAt(i) != ' '; i++) {
+            char c = fen.charAt(i);
+            if (c == '/') {
+                if (file != 8)
+                    return "rank " + (rank + 1) + " covers " + file + " squares";
+                if (--rank < 0)
+                    return "more than 8 ranks";
+                file = 0;
+            } else if (c >= '1' && c <= '8') {
+                file += c - '0';
+                if (file > 8)
+                    return "rank " + (rank + 1) + " covers more than 8 squares";
+            } else {
+                if (file > 7)
+                    return "rank " + (rank + 1) + " covers more than 8 squares";
+
+                long bit = 1L << (rank * 8 + file++);
+                switch (c) {
+                    case 'P': wp |= bit; break;
+                    case 'N': wn |= bit; break;
+                    case 'B': wb |= bit; break;
+                    case 'R': wr |= bit; break;
+                    case 'Q': wq |= bit; break;
+                    case 'K': wk |= bit; break;
+                    case 'p': bp |= bit; break;
+                    case 'n': bn |= bit; break;
+                    case 'b': bb |= bit; break;
+                    case 'r': br |= bit; break;
+                    case 'q': bq |= bit; break;
+                    case 'k': bk |= bit; break;
+                    default:
+                        return "invalid character '" + c + "' in board";
+                }
+            }
+        }
+        if (rank != 0 || file != 8)
+            return "board does not cover 64 squares";
+
+        if (i + 2 > length || fen.charAt(i + 1) != 'w' && fen.charAt(i + 1) != 'b')
+            return "side to move must be w or b";
+        boolean white = fen.charAt(i + 1) == 'w';
+        i += 2;
+
+        if (i + 1 >= length || fen.charAt(i) != ' ')
+            return "missing castling rights";
+        int castling = 0;
+        if (fen.charAt(++i) == '-') {
+            i++;
+        } else {
+            for (; i < length && fen.charAt(i) != ' '; i++) {
+                int right = "KQkq".indexOf(fen.charAt(i));
+                if (right < 0 || (castling & 1 << right) != 0)
+                    return "invalid castling rights";
+                castling |= 1 << right;
+            }
+        }
+
+        if (i + 1 >= length || fen.charAt(i) != ' ')
+            return "missing en passant square";
+        int ep = -1;
+        if (fen.charAt(++i) == '-') {
+            i++;
+        } else {
+            if (i + 1 >= length)
+                return "invalid en passant square";
+            char epFile = fen.charAt(i), epRank = fen.charAt(i + 1);
+            if (epFile < 'a' || epFile > 'h' || epRank < '1' || epRank > '8')
+                return "invalid en passant square";
+            ep = (epRank - '1') * 8 + epFile - 'a';
+            i += 2;
+        }
+
+        if (i >= length || fen.charAt(i) != ' ')
+            return "missing halfmove clock";
+        int end = digits(fen, ++i);
+        if (end == i)
+            return "invalid halfmove clock";
+        i = end;
+
+        if (i >= length || fen.charAt(i) != ' ')
+            return "missing fullmove number";
+        end = digits(fen, ++i);
+        if (end == i || end != length)
+            return "invalid fullmove number";
+
+        return check(wp, wn, wb, wr, wq, wk, bp, bn, bb, br, bq, bk, white, castling, ep);
+    }
+
+    /**
+     * @param position packed chessboard position
+     * @return {@code null} if the position is legal, otherwise the reason it is not
+     */
+    public static String validate(PackedPosition position) {
+        if (position == null)
+            return "position is null";
+
+        long wp = 0, wn = 0, wb = 0, wr = 0, wq = 0, wk = 0;
+        long bp = 0, bn = 0, bb = 0, br = 0, bq = 0, bk = 0;
+        long squares = position.word(0);
+        for (int count = 0; squares != 0; count++) {
+            long bit = squares & -squares;
+            long pieces = position.word(count < 16 ? 1 : 2);
+            switch ((int) (pieces >>> (count % 16 * 4)) & 0xF) {
+                case 1: wp |= bit; break;
+                case 2: wn |= bit; break;
+                case 3: wb |= bit; break;
+                case 4: wr |= bit; break;
+                case 5: wq |= bit; break;
+                case 6: wk |= bit; break;
+                case 7: bp |= bit; break;
+                case 8: bn |= bit; break;
+                case 9: bb |= bit; break;
+                case 10: br |= bit; break;
+                case 11: bq |= bit; break;
+                case 12: bk |= bit; break;
+                default:
+                    return "invalid piece code";
+            }
+            squares &= squares - 1;
+        }
+
+        long state = position.word(3);
+        int ep = ((int) (state >>> 5) & 0x7F) - 1;
+        if (ep > 63)
+            return "invalid en passant square";
+        return check(wp, wn, wb, wr, wq, wk, bp, bn, bb, br, bq, bk, (state & 1) != 0, (int) (state >>> 1) & 0xF, ep);
+    }
+
+    private static String check(long wp, long wn, long wb, long wr, long wq, long wk,
+                                long bp, long bn, long bb, long br, long bq, long bk,
+                                boolean white, int castling, int ep) {
+        if (Long.bitCount(wk) != 1 || Long.bitCount(bk) != 1)
+            return "each side needs exactly one king";
+        if (((wp | bp) & BACK_RANKS) != 0)
+            return "pawn on first or last rank";
+        if (Long.bitCount(wp) > 8 || Long.bitCount(bp) > 8)
+            return "more than 8 pawns";
+
+        long whites = wp | wn | wb | wr | wq | wk;
+        long blacks = bp | bn | bb | br | bq | bk;
+        if (Long.bitCount(whites) > 16 || Long.bitCount(blacks) > 16)
+            return "more than 16 pieces";
+
+        if ((castling & Position.WHITE_OO) != 0 && ((wk & 1L << 4) == 0 || (wr & 1L << 7) == 0)
+                || (castling & Position.WHITE_OOO) != 0 && ((wk & 1L << 4) == 0 || (wr & 1L) == 0)
+                || (castling & Position.BLACK_OO) != 0 && ((bk & 1L << 60) == 0 || (br & 1L << 63) == 0)
+                || (castling & Position.BLACK_OOO) != 0 && ((bk & 1L << 60) == 0 || (br & 1L << 56) == 0))
+            return "castling rights without king and rook on their squares";
+
+        long occupied = whites | blacks;
+        if (ep >= 0) {
+            int pushed = white ? ep - 8 : ep + 8;
+            int origin = white ? ep + 8 : ep - 8;
+            if (ep / 8 != (white ? 5 : 2) || (occupied & (1L << ep | 1L << origin)) != 0
+                    || ((white ? bp : wp) & 1L << pushed) == 0)
+                return "en passant square does not follow a double pawn push";
+        }
+
+        int king = Long.numberOfTrailingZeros(white ? bk : wk);
+        boolean check = white
+                ? attacked(king, true, wp, wn, wb | wq, wr | wq, wk, occupied)
+                : attacked(king, false, bp, bn, bb | bq, br | bq, bk, occupied);
+        if (check)
+            return "side not to move is in check";
+
+        return null;
+    }
+
+    private static int digits(String fen, int from) {
+        int i = from;
+        while (i < fen.length() && i - from < 9 && fen.charAt(i) >= '0' && fen.charAt(i) <= '9')
+            i++;
+        return i;
+    }
+
+    private static boolean attacked(int square, boolean byWhite, long pawns, long knights, long diagonal,
+                                    long straight, long king, long occupied) {
+        int file = square % 8, rank = square / 8;
+
+        int pawnRank = byWhite ? rank - 1 : rank + 1;
+        if (pawnRank >= 0 && pawnRank < 8
+                && (file > 0 && has(pawns, pawnRank, file - 1) || file < 7 && has(pawns, pawnRank, file + 1)))
+            return true;
+
+        for (int d = 0; d < 8; d++)
+            if (has(knights, rank + KNIGHT_RANKS[d], file + KNIGHT_FILES[d]))
+                return true;
+
+        for (int df = -1; df <= 1; df++)
+            for (int dr = -1; dr <= 1; dr++) {
+                if (df == 0 && dr == 0)
+                    continue;
+                if (has(king, rank + dr, file + df))
+                    return true;
+
+                long sliders = df != 0 && dr != 0 ? diagonal : straight;
+                for (int f = file + df, r = rank + dr; f >= 0 && f < 8 && r >= 0 && r < 8; f += df, r += dr) {
+                    long bit = 1L << (r * 8 + f);
+                    if ((sliders & bit) != 0)
+                        return true;
+                    if ((occupied & bit) != 0)
+                        break;
+                }
+            }
+
+        return false;
+    }
+
+    private static boolean has(long pieces, int rank, int file) {
+        return rank >= 0 && rank < 8 && file >= 0 && file < 8 && (pieces & 1L << (rank * 8 + file)) != 0;
+    }
+}
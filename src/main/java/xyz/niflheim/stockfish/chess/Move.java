@@ -0,0 +1,107 @@
+/* Copyright 2018 David Cai Wang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.niflheim.stockfish.chess;
+
+/**
+ * Moves packed into an {@code int}: origin square in bits 0-5, target square in bits 6-11 and promotion piece in
+ * bits 12-14 (1 knight, 2 bishop, 3 rook, 4 queen). Squares are numbered like {@link Position}.
+ * <p>
+ * The packed form lets move lists live in primitive arrays; convert to UCI notation only for display or when
+ * talking to Stockfish.
+ *
+ * @author Niflheim
+ * @since 3.1
+ */
+public final class Move {
+
+    /**
+     * No move, e.g. Stockfish's {@code bestmove (none)} when the side to move is mated or stalemated.
+     */
+    public static final int NONE = 0;
+
+    private static final String PROMOTIONS = " nbrq";
+
+    private Move() {
+    }
+
+    /**
+     * @param from      origin square
+     * @param to        target square
+     * @param promotion piece to promote to, one of {@code nbrq}, or {@code 0} for none
+     * @return packed move
+     * @throws IllegalArgumentException if a square or the promotion piece is out of range
+     */
+    public static int of(int from, int to, char promotion) throws IllegalArgumentException {
+        int piece = promotion == 0 ? 0 : PROMOTIONS.indexOf(Character.toLowerCase(promotion));
+        if (from < 0 || from > 63 || to < 0 || to > 63 || piece < 0 || from == to)
+            throw new IllegalArgumentException("Incorrect move: " + from + ", " + to + ", " + promotion);
+
+        return from | to << 6 | piece << 12;
+    }
+
+    /**
+     * @param uci move in UCI notation, e.g. {@code e2e4} or {@code e7e8q}; {@code (none)} and {@code 0000} give
+     *            {@link #NONE}
+     * @return packed move
+     * @throws IllegalArgumentException if the move is malformed
+     */
+    public static int parse(String uci) throws IllegalArgumentException {
+        if ("(none)".equals(uci) || "0000".equals(uci))
+            return NONE;
+        if (uci == null || uci.length() < 4 || uci.length() > 5)
+            throw new IllegalArgumentException("Incorrect move: " + uci);
+
+        return of(Position.square(uci.substring(0, 2)), Position.square(uci.substring(2, 4)),
+                uci.length() == 5 ? uci.charAt(4) : 0);
+    }
+
+    /**
+     * @param move packed move
+     * @return origin square
+     */
+    public static int from(int move) {
+        return move & 0x3F;
+    }
+
+    /**
+     * @param move packed move
+     * @return target square
+     */
+    public static int to(int move) {
+        return move >>> 6 & 0x3F;
+    }
+
+    /**
+     * @param move packed move
+     * @return promotion piece in lower case, or {@code 0} if the move is not a promotion
+     */
+    public static char promotion(int move) {
+        int piece = move >>> 12 & 0x7;
+        return piece == 0 ? 0 : PROMOTIONS.charAt(piece);
+    }
+
+    /**
+     * @param move packed move
+     * @return move in UCI notation, {@code (none)} for {@link #NONE}
+     */
+    public static String toUci(int move) {
+        if (move == NONE)
+            return "(none)";
+
+        String uci = Position.squareName(from(move)) + Position.squareName(to(move));
+        char promotion = promotion(move);
+        return promotion == 0 ? uci : uci + promotion;
+    }
+}
@@ -0,0 +1,209 @@
+/* Copyright 2018 David Cai Wang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.niflheim.stockfish.chess;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Chess position packed into four {@code long}s, 32 bytes, for holding large numbers of positions.
+ * <p>
+ * The first word is the occupancy bitboard, the next two hold a 4 bit piece code for each occupied square in
+ * square order, at most 32 pieces. The last word holds the side to move, castling rights, en passant square and
+ * the move clocks, the half-move clock up to 255 and the full-move number up to 65535, larger values are rejected.
+ * A FEN string is only built by {@link #toFen()}, e.g. when the position is sent to Stockfish.
+ * <p>
+ * Use {@link #write(long[], int)} or {@link #write(ByteBuffer, int)} to store positions without an object per
+ * position, see {@link PositionArray}.
+ *
+ * @author Niflheim
+ * @since 3.1
+ */
+public final class PackedPosition {
+
+    /**
+     * Number of {@code long}s of a packed position.
+     */
+    public static final int LONGS = 4;
+
+    /**
+     * Number of bytes of a packed position.
+     */
+    public static final int BYTES = LONGS * Long.BYTES;
+
+    private static final String PIECES = ".PNBRQKpnbrqk";
+    private static final int MAX_PIECES = 32;
+    private static final int MAX_HALFMOVE = 0xFF;
+    private static final int MAX_FULLMOVE = 0xFFFF;
+
+    private final long occupancy;
+    private final long low;
+    private final long high;
+    private final long state;
+
+    PackedPosition(long occupancy, long low, long high, long state) {
+        this.occupancy = occupancy;
+        this.low = low;
+        this.high = high;
+        this.state = state;
+    }
+
+    /**
+     * @param position position to pack
+     * @return packed position
+     * @throws IllegalArgumentException if the position has more than 32 pieces, more than 255 half moves since the
+     *                                  last capture or pawn move or a full move number above 65535
+     */
+    public static PackedPosition of(Position position) throws IllegalArgumentException {
+        long occupancy = 0;
+        long[] pieces = new long[2];
+        int count = 0;
+        for (int square = 0; square < 64; square++) {
+            char piece = position.pieceAt(square);
+            if (piece == Position.EMPTY)
+                continue;
+            if (count == MAX_PIECES)
+                throw new IllegalArgumentException("Can not pack more than " + MAX_PIECES + " pieces: " + position);
+
+            occupancy |= 1L << square;
+            pieces[count / 16] |= (long) PIECES.indexOf(piece) << (count % 16 * 4);
+            count++;
+        }
+
+        if (position.getHalfmoveClock() > MAX_HALFMOVE || position.getFullmoveNumber() > MAX_FULLMOVE)
+            throw new IllegalArgumentException("Move counters too large to pack: " + position);
+
+        long state = (position.isWhiteToMove() ? 1 : 0)
+                | position.getCastling() << 1
+                | (position.getEnPassantSquare() + 1) << 5
+                | (long) position.getHalfmoveClock() << 12
+                | (long) position.getFullmoveNumber() << 20;
+        return new PackedPosition(occupancy, pieces[0], pieces[1], state);
+    }
+
+    /**
+     * @param fen FEN chessboard position as string
+     * @return packed position
+     * @throws IllegalArgumentException if the FEN can not be parsed or packed
+     */
+    public static PackedPosition fromFen(String fen) throws IllegalArgumentException {
+        return of(Position.fromFen(fen));
+    }
+
+    /**
+     * @param data   array holding packed positions
+     * @param offset index of the first of the {@link #LONGS} words of the position
+     * @return position stored at the offset
+     */
+    public static PackedPosition read(long[] data, int offset) {
+        return new PackedPosition(data[offset], data[offset + 1], data[offset + 2], data[offset + 3]);
+    }
+
+    /**
+     * @param buffer buffer holding packed positions, heap or direct
+     * @param offset byte index of the first of the {@link #BYTES} bytes of the position
+     * @return position stored at the offset
+     */
+    public static PackedPosition read(ByteBuffer buffer, int offset) {
+        return new PackedPosition(buffer.getLong(offset), buffer.getLong(offset + 8), buffer.getLong(offset + 16),
+                buffer.getLong(offset + 24));
+    }
+
+    /**
+     * @param data   array to store the position in
+     * @param offset index of the first of the {@link #LONGS} words to write
+     */
+    public void write(long[] data, int offset) {
+        data[offset] = occupancy;
+        data[offset + 1] = low;
+        data[offset + 2] = high;
+        data[offset + 3] = state;
+    }
+
+    /**
+     * @param buffer buffer to store the position in, heap or direct
+     * @param offset byte index of the first of the {@link #BYTES} bytes to write
+     */
+    public void write(ByteBuffer buffer, int offset) {
+        buffer.putLong(offset, occupancy);
+        buffer.putLong(offset + 8, low);
+        buffer.putLong(offset + 16, high);
+        buffer.putLong(offset + 24, state);
+    }
+
+    /**
+     * @param index word index, 0 to {@link #LONGS} - 1
+     * @return word of the packed position
+     */
+    long word(int index) {
+        switch (index) {
+            case 0:
+                return occupancy;
+            case 1:
+                return low;
+            case 2:
+                return high;
+            default:
+                return state;
+        }
+    }
+
+    /**
+     * @return unpacked position
+     */
+    public Position toPosition() {
+        char[] board = new char[64];
+        Arrays.fill(board, Position.EMPTY);
+
+        long squares = occupancy;
+        for (int count = 0; squares != 0; count++) {
+            int square = Long.numberOfTrailingZeros(squares);
+            long pieces = count < 16 ? low : high;
+            board[square] = PIECES.charAt((int) (pieces >>> (count % 16 * 4)) & 0xF);
+            squares &= squares - 1;
+        }
+
+        return new Position(board, (state & 1) != 0, (int) (state >>> 1) & 0xF, ((int) (state >>> 5) & 0x7F) - 1,
+                (int) (state >>> 12) & MAX_HALFMOVE, (int) (state >>> 20) & MAX_FULLMOVE);
+    }
+
+    /**
+     * @return the position as FEN
+     */
+    public String toFen() {
+        return toPosition().toFen();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof PackedPosition))
+            return false;
+
+        PackedPosition other = (PackedPosition) o;
+        return occupancy == other.occupancy && low == other.low && high == other.high && state == other.state;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(31 * (31 * (31 * occupancy + low) + high) + state);
+    }
+
+    @Override
+    public String toString() {
+        return toFen();
+    }
+}
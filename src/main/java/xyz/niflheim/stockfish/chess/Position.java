@@ -0,0 +1,410 @@
+/* Copyright 2018 David Cai Wang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.niflheim.stockfish.chess;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Immutable chess position parsed from FEN.
+ * <p>
+ * The position tracks the board, side to move, castling rights, en passant square and move clocks so that
+ * moves can be replayed without a round trip to Stockfish. It does not generate moves; legality is left to
+ * the engine, see {@link #toUci(String, Collection)}.
+ * <p>
+ * Squares are numbered from 0 (a1) to 63 (h8), rank by rank.
+ *
+ * @author Niflheim
+ * @see <a href="https://en.wikipedia.org/wiki/Forsyth%E2%80%93Edwards_Notation">Wiki FEN</a>
+ * @since 3.1
+ */
+public final class Position {
+
+    /**
+     * FEN of the standard starting position.
+     */
+    public static final String START_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    /**
+     * Castling right bits as returned by {@link #getCastling()}.
+     */
+    public static final int WHITE_OO = 1, WHITE_OOO = 2, BLACK_OO = 4, BLACK_OOO = 8;
+
+    /**
+     * Marker of an empty square in {@link #pieceAt(int)}.
+     */
+    public static final char EMPTY = '.';
+
+    private static final String PIECES = "PNBRQKpnbrqk";
+
+    private final char[] board;
+    private final boolean whiteToMove;
+    private final int castling;
+    private final int epSquare;
+    private final int halfmoveClock;
+    private final int fullmoveNumber;
+
+    Position(char[] board, boolean whiteToMove, int castling, int epSquare, int halfmoveClock, int fullmoveNumber) {
+        this.board = board;
+        this.whiteToMove = whiteToMove;
+        this.castling = castling;
+        this.epSquare = epSquare;
+        this.halfmoveClock = halfmoveClock;
+        this.fullmoveNumber = fullmoveNumber;
+    }
+
+    /**
+     * @return the standard starting position
+     */
+    public static Position start() {
+        return fromFen(START_FEN);
+    }
+
+    /**
+     * @param fen FEN chessboard position as string, move clocks may be omitted
+     * @return parsed position
+     * @throws IllegalArgumentException if the FEN can not be parsed
+     */
+    public static Position fromFen(String fen) throws IllegalArgumentException {
+        if (fen == null)
+            throw new IllegalArgumentException("FEN can not be null.");
+
+        String[] fields = fen.trim().split("\\s+");
+        if (fields.length < 2)
+            throw new IllegalArgumentException("Incorrect FEN: " + fen);
+
+        char[] board = new char[64];
+        Arrays.fill(board, EMPTY);
+        int rank = 7, file = 0;
+        for (char c : fields[0].toCharArray()) {
+            if (c == '/') {
+                if (file != 8 || rank == 0)
+                    throw new IllegalArgumentException("Incorrect FEN board: " + fen);
+                rank--;
+                file = 0;
+            } else if (c >= '1' && c <= '8') {
+                file += c - '0';
+            } else if (PIECES.indexOf(c) >= 0 && file < 8) {
+                board[rank * 8 + file++] = c;
+            } else {
+                throw new IllegalArgumentException("Incorrect FEN board: " + fen);
+            }
+
+            if (file > 8)
+                throw new IllegalArgumentException("Incorrect FEN board: " + fen);
+        }
+        if (rank != 0 || file != 8)
+            throw new IllegalArgumentException("Incorrect FEN board: " + fen);
+
+        if (!fields[1].equals("w") && !fields[1].equals("b"))
+            throw new IllegalArgumentException("Incorrect FEN side to move: " + fen);
+
+        int castling = 0;
+        if (fields.length > 2 && !fields[2].equals("-"))
+            for (char c : fields[2].toCharArray()) {
+                int index = "KQkq".indexOf(c);
+                if (index < 0)
+                    throw new IllegalArgumentException("Incorrect FEN castling rights: " + fen);
+                castling |= 1 << index;
+            }
+
+        int ep = -1;
+        if (fields.length > 3 && !fields[3].equals("-"))
+            ep = square(fields[3]);
+
+        try {
+            int halfmove = fields.length > 4 ? Integer.parseInt(fields[4]) : 0;
+            int fullmove = fields.length > 5 ? Integer.parseInt(fields[5]) : 1;
+            return new Position(board, fields[1].equals("w"), castling, ep, halfmove, fullmove);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Incorrect FEN move counters: " + fen, e);
+        }
+    }
+
+    /**
+     * @return the position as FEN
+     */
+    public String toFen() {
+        StringBuilder fen = new StringBuilder(90);
+        for (int rank = 7; rank >= 0; rank--) {
+            int empty = 0;
+            for (int file = 0; file < 8; file++) {
+                char piece = board[rank * 8 + file];
+                if (piece == EMPTY) {
+                    empty++;
+                } else {
+                    if (empty > 0)
+                        fen.append(empty);
+                    empty = 0;
+                    fen.append(piece);
+                }
+            }
+            if (empty > 0)
+                fen.append(empty);
+            if (rank > 0)
+                fen.append('/');
+        }
+
+        fen.append(whiteToMove ? " w " : " b ");
+        if (castling == 0)
+            fen.append('-');
+        for (int i = 0; i < 4; i++)
+            if ((castling & 1 << i) != 0)
+                fen.append("KQkq".charAt(i));
+
+        fen.append(' ').append(epSquare < 0 ? "-" : squareName(epSquare));
+        fen.append(' ').append(halfmoveClock).append(' ').append(fullmoveNumber);
+        return fen.toString();
+    }
+
+    /**
+     * @param square square index from 0 (a1) to 63 (h8)
+     * @return FEN letter of the piece on the square, or {@link #EMPTY}
+     */
+    public char pieceAt(int square) {
+        return board[square];
+    }
+
+    /**
+     * @param square square name, e.g. {@code e4}
+     * @return FEN letter of the piece on the square, or {@link #EMPTY}
+     */
+    public char pieceAt(String square) {
+        return board[square(square)];
+    }
+
+    /**
+     * @return {@code true} if white is to move
+     */
+    public boolean isWhiteToMove() {
+        return whiteToMove;
+    }
+
+    /**
+     * @return castling rights as bits, see {@link #WHITE_OO}
+     */
+    public int getCastling() {
+        return castling;
+    }
+
+    /**
+     * @return en passant target square, or -1
+     */
+    public int getEnPassantSquare() {
+        return epSquare;
+    }
+
+    /**
+     * @return number of half moves since the last capture or pawn move
+     */
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    /**
+     * @return number of the full move, starting at 1
+     */
+    public int getFullmoveNumber() {
+        return fullmoveNumber;
+    }
+
+    /**
+     * @return number of pieces on the board, kings included
+     */
+    public int getPieceCount() {
+        int count = 0;
+        for (char piece : board)
+            if (piece != EMPTY)
+                count++;
+        return count;
+    }
+
+    /**
+     * Play a move without checking its legality.
+     *
+     * @param uci move in UCI notation, e.g. {@code e2e4}, {@code e1g1} or {@code e7e8q}
+     * @return position after the move
+     * @throws IllegalArgumentException if the move is malformed or there is no piece of the side to move on its origin
+     */
+    public Position play(String uci) throws IllegalArgumentException {
+        if (uci == null || uci.length() < 4 || uci.length() > 5)
+            throw new IllegalArgumentException("Incorrect move: " + uci);
+
+        int from = square(uci.substring(0, 2));
+        int to = square(uci.substring(2, 4));
+        char piece = board[from];
+        if (piece == EMPTY || Character.isUpperCase(piece) != whiteToMove)
+            throw new IllegalArgumentException("No piece of the side to move on " + uci.substring(0, 2) + ": " + uci);
+
+        char[] next = board.clone();
+        char type = Character.toLowerCase(piece);
+        boolean capture = board[to] != EMPTY;
+
+        next[to] = piece;
+        next[from] = EMPTY;
+
+        if (type == 'p' && to == epSquare && !capture) {
+            next[to + (whiteToMove ? -8 : 8)] = EMPTY;
+            capture = true;
+        }
+
+        if (uci.length() == 5) {
+            char promotion = uci.charAt(4);
+            if ("nbrq".indexOf(Character.toLowerCase(promotion)) < 0)
+                throw new IllegalArgumentException("Incorrect promotion: " + uci);
+            next[to] = whiteToMove ? Character.toUpperCase(promotion) : Character.toLowerCase(promotion);
+        }
+
+        if (type == 'k' && Math.abs(to - from) == 2) {
+            int rookFrom = to > from ? from + 3 : from - 4;
+            int rookTo = to > from ? from + 1 : from - 1;
+            next[rookTo] = next[rookFrom];
+            next[rookFrom] = EMPTY;
+        }
+
+        int rights = castling & castlingMask(from) & castlingMask(to);
+
+        int ep = -1;
+        if (type == 'p' && Math.abs(to - from) == 16) {
+            char enemyPawn = whiteToMove ? 'p' : 'P';
+            int file = to % 8;
+            if ((file > 0 && next[to - 1] == enemyPawn) || (file < 7 && next[to + 1] == enemyPawn))
+                ep = (from + to) / 2;
+        }
+
+        return new Position(next, !whiteToMove, rights, ep,
+                type == 'p' || capture ? 0 : halfmoveClock + 1,
+                whiteToMove ? fullmoveNumber : fullmoveNumber + 1);
+    }
+
+    /**
+     * Convert a move in standard algebraic notation to UCI notation.
+     *
+     * @param san        move in SAN, e.g. {@code Nbd7}, {@code exd5}, {@code O-O} or {@code e8=Q+}
+     * @param legalMoves legal moves of this position in UCI notation, e.g. from a {@code Legal_Moves} query
+     * @return the matching legal move in UCI notation
+     * @throws IllegalArgumentException if no or more than one legal move matches
+     */
+    public String toUci(String san, Collection<String> legalMoves) throws IllegalArgumentException {
+        String move = san.replaceAll("[+#!?]", "").replace("0", "O");
+        int home = whiteToMove ? 4 : 60;
+
+        if (move.equals("O-O") || move.equals("O-O-O")) {
+            String uci = squareName(home) + squareName(move.equals("O-O") ? home + 2 : home - 2);
+            if (legalMoves.contains(uci))
+                return uci;
+            throw new IllegalArgumentException("Illegal move " + san + " in " + toFen());
+        }
+
+        char promotion = 0;
+        int eq = move.indexOf('=');
+        if (eq >= 0) {
+            promotion = Character.toLowerCase(move.charAt(eq + 1));
+            move = move.substring(0, eq);
+        } else if (move.length() > 2 && "NBRQ".indexOf(move.charAt(move.length() - 1)) >= 0 && Character.isDigit(move.charAt(move.length() - 2))) {
+            promotion = Character.toLowerCase(move.charAt(move.length() - 1));
+            move = move.substring(0, move.length() - 1);
+        }
+
+        if (move.length() < 2)
+            throw new IllegalArgumentException("Incorrect move: " + san);
+
+        char type = Character.isUpperCase(move.charAt(0)) && move.charAt(0) != 'O' ? move.charAt(0) : 'P';
+        String to = move.substring(move.length() - 2);
+        String hint = move.substring(type == 'P' ? 0 : 1, move.length() - 2).replace("x", "");
+
+        String found = null;
+        for (String uci : legalMoves) {
+            if (uci.length() < 4 || !uci.substring(2, 4).equals(to))
+                continue;
+            if (Character.toUpperCase(board[square(uci.substring(0, 2))]) != type)
+                continue;
+            if ((uci.length() == 5 ? uci.charAt(4) : 0) != promotion)
+                continue;
+            if (!uci.substring(0, 2).contains(hint))
+                continue;
+            if (found != null)
+                throw new IllegalArgumentException("Ambiguous move " + san + " in " + toFen());
+            found = uci;
+        }
+
+        if (found == null)
+            throw new IllegalArgumentException("Illegal move " + san + " in " + toFen());
+        return found;
+    }
+
+    /**
+     * @param name square name, e.g. {@code e4}
+     * @return square index from 0 (a1) to 63 (h8)
+     * @throws IllegalArgumentException if the name is not a square
+     */
+    public static int square(String name) throws IllegalArgumentException {
+        if (name == null || name.length() != 2 || name.charAt(0) < 'a' || name.charAt(0) > 'h'
+                || name.charAt(1) < '1' || name.charAt(1) > '8')
+            throw new IllegalArgumentException("Incorrect square: " + name);
+
+        return (name.charAt(1) - '1') * 8 + name.charAt(0) - 'a';
+    }
+
+    /**
+     * @param square square index from 0 (a1) to 63 (h8)
+     * @return square name, e.g. {@code e4}
+     */
+    public static String squareName(int square) {
+        return new String(new char[]{(char) ('a' + square % 8), (char) ('1' + square / 8)});
+    }
+
+    private static int castlingMask(int square) {
+        switch (square) {
+            case 0:
+                return ~WHITE_OOO;
+            case 4:
+                return ~(WHITE_OO | WHITE_OOO);
+            case 7:
+                return ~WHITE_OO;
+            case 56:
+                return ~BLACK_OOO;
+            case 60:
+                return ~(BLACK_OO | BLACK_OOO);
+            case 63:
+                return ~BLACK_OO;
+            default:
+                return ~0;
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof Position))
+            return false;
+
+        Position other = (Position) o;
+        return whiteToMove == other.whiteToMove && castling == other.castling && epSquare == other.epSquare
+                && halfmoveClock == other.halfmoveClock && fullmoveNumber == other.fullmoveNumber
+                && Arrays.equals(board, other.board);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * Arrays.hashCode(board) + castling * 2 + (whiteToMove ? 1 : 0)) + epSquare;
+    }
+
+    @Override
+    public String toString() {
+        return toFen();
+    }
+}
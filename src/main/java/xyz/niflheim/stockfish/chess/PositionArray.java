@@ -0,0 +1,135 @@
+/* Copyright 2018 David Cai Wang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.niflheim.stockfish.chess;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Fixed capacity, columnar store of {@link PackedPosition}s without an object per position.
+ * <p>
+ * Each of the four words of a packed position lives in its own column of a single buffer, which can be
+ * allocated off-heap with {@link #allocateDirect(int)} for batches that should not burden the garbage collector.
+ * Objects are only created when a position is read back. Not safe for concurrent writes.
+ *
+ * @author Niflheim
+ * @since 3.1
+ */
+public class PositionArray {
+
+    private final ByteBuffer data;
+    private final int capacity;
+    private int size;
+
+    /**
+     * @param capacity maximum number of positions, stored on the heap
+     */
+    public PositionArray(int capacity) {
+        this(ByteBuffer.allocate(checkCapacity(capacity) * PackedPosition.BYTES), capacity);
+    }
+
+    private PositionArray(ByteBuffer data, int capacity) {
+        this.data = data;
+        this.capacity = capacity;
+    }
+
+    /**
+     * @param capacity maximum number of positions, stored outside of the heap
+     * @return empty array
+     */
+    public static PositionArray allocateDirect(int capacity) {
+        return new PositionArray(ByteBuffer.allocateDirect(checkCapacity(capacity) * PackedPosition.BYTES), capacity);
+    }
+
+    /**
+     * @param position position to append
+     * @return index of the position
+     * @throws IllegalStateException    if the array is full
+     * @throws IllegalArgumentException if the position can not be packed
+     */
+    public int add(Position position) throws IllegalStateException, IllegalArgumentException {
+        return add(PackedPosition.of(position));
+    }
+
+    /**
+     * @param fen FEN chessboard position as string
+     * @return index of the position
+     * @throws IllegalStateException    if the array is full
+     * @throws IllegalArgumentException if the FEN can not be parsed or packed
+     */
+    public int add(String fen) throws IllegalStateException, IllegalArgumentException {
+        return add(PackedPosition.fromFen(fen));
+    }
+
+    /**
+     * @param position position to append
+     * @return index of the position
+     * @throws IllegalStateException if the array is full
+     */
+    public int add(PackedPosition position) throws IllegalStateException {
+        if (size == capacity)
+            throw new IllegalStateException("Position array is full: " + capacity);
+
+        for (int column = 0; column < PackedPosition.LONGS; column++)
+            data.putLong(offset(column, size), position.word(column));
+
+        return size++;
+    }
+
+    /**
+     * @param index index of the position
+     * @return packed position
+     * @throws IndexOutOfBoundsException if there is no position at the index
+     */
+    public PackedPosition get(int index) throws IndexOutOfBoundsException {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+
+        return new PackedPosition(data.getLong(offset(0, index)), data.getLong(offset(1, index)),
+                data.getLong(offset(2, index)), data.getLong(offset(3, index)));
+    }
+
+    /**
+     * @param index index of the position
+     * @return the position as FEN
+     * @throws IndexOutOfBoundsException if there is no position at the index
+     */
+    public String getFen(int index) throws IndexOutOfBoundsException {
+        return get(index).toFen();
+    }
+
+    /**
+     * @return number of positions stored
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return maximum number of positions
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    private int offset(int column, int index) {
+        return (column * capacity + index) * Long.BYTES;
+    }
+
+    private static int checkCapacity(int capacity) {
+        if (capacity < 0 || capacity > Integer.MAX_VALUE / PackedPosition.BYTES)
+            throw new IllegalArgumentException("Incorrect capacity: " + capacity);
+        return capacity;
+    }
+}
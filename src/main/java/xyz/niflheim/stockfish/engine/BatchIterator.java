@@ -0,0 +1,92 @@
+/* Copyright 2018 David Cai Wang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.niflheim.stockfish.engine;
+
+import xyz.niflheim.stockfish.engine.enums.Query;
+import xyz.niflheim.stockfish.exceptions.StockfishEngineException;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Iterator behind {@link StockfishClient#analyzeAll(Iterable, boolean, int)}, keeping a bounded window
+ * of queries in flight and refilling it as results are consumed.
+ */
+class BatchIterator implements Iterator<QueryResult> {
+    private final StockfishClient client;
+    private final Iterator<Query> source;
+    private final boolean ordered;
+    private final int window;
+
+    private final Deque<CompletableFuture<QueryResult>> pending = new ArrayDeque<>();
+    private final BlockingQueue<QueryResult> completed = new LinkedBlockingQueue<>();
+    private int inFlight;
+    private long index;
+
+    BatchIterator(StockfishClient client, Iterator<Query> source, boolean ordered, int window) {
+        this.client = client;
+        this.source = source;
+        this.ordered = ordered;
+        this.window = window;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return inFlight > 0 || source.hasNext();
+    }
+
+    @Override
+    public QueryResult next() {
+        fill();
+        if (inFlight == 0)
+            throw new NoSuchElementException();
+
+        QueryResult result;
+        if (ordered) {
+            result = pending.pollFirst().join();
+        } else {
+            try {
+                result = completed.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new StockfishEngineException("Interrupted while waiting for batch results", e);
+            }
+        }
+
+        inFlight--;
+        fill();
+        return result;
+    }
+
+    private void fill() {
+        while (inFlight < window && source.hasNext()) {
+            long i = index++;
+            Query query = source.next();
+            CompletableFuture<QueryResult> result = client.submitAsync(query)
+                    .handle((output, error) -> new QueryResult(i, query, output, error));
+
+            if (ordered)
+                pending.addLast(result);
+            else
+                result.thenAccept(completed::add);
+            inFlight++;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/* Copyright 2018 David Cai Wang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.niflheim.stockfish.engine;
+
+import xyz.niflheim.stockfish.chess.Move;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of a search: the best move together with the last principal variation Stockfish reported for it.
+ * Moves are kept packed as {@code int}s, see {@link Move}; the UCI accessors convert them on each call.
+ *
+ * @author Niflheim
+ * @since 3.1
+ */
+public class BestMoveResult {
+    private final int bestMove, ponder;
+    private final Evaluation evaluation;
+    private final int depth;
+    private final long nodes, time;
+    private final MoveList pv;
+
+    BestMoveResult(int bestMove, int ponder, Evaluation evaluation, int depth, long nodes, long time, MoveList pv) {
+        this.bestMove = bestMove;
+        this.ponder = ponder;
+        this.evaluation = evaluation;
+        this.depth = depth;
+        this.nodes = nodes;
+        this.time = time;
+        this.pv = pv;
+    }
+
+    /**
+     * @return best move in UCI notation, or {@code (none)} if the side to move has no legal move
+     */
+    public String getBestMove() {
+        return Move.toUci(bestMove);
+    }
+
+    /**
+     * @return packed best move, {@link Move#NONE} if the side to move has no legal move
+     */
+    public int getBestMoveCode() {
+        return bestMove;
+    }
+
+    /**
+     * @return the reply Stockfish expects, or {@code null} if it did not report one
+     */
+    public String getPonder() {
+        return ponder == Move.NONE ? null : Move.toUci(ponder);
+    }
+
+    /**
+     * @return packed reply Stockfish expects, {@link Move#NONE} if it did not report one
+     */
+    public int getPonderCode() {
+        return ponder;
+    }
+
+    /**
+     * @return score of the position from the side to move
+     */
+    public Evaluation getEvaluation() {
+        return evaluation;
+    }
+
+    /**
+     * @return depth of the last completed iteration
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return number of nodes searched
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * @return search time in milliseconds as reported by Stockfish
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * @return principal variation in UCI notation, starting with the best move
+     */
+    public List<String> getPv() {
+        return Collections.unmodifiableList(pv.toUciList());
+    }
+
+    /**
+     * @return principal variation as packed moves, starting with the best move
+     */
+    public MoveList getPvMoves() {
+        return pv;
+    }
+
+    @Override
+    public String toString() {
+        return getBestMove() + " (" + evaluation + ", depth " + depth + ")";
+    }
+}
@@ -0,0 +1,357 @@
+/* Copyright 2018 David Cai Wang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.niflheim.stockfish.engine;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import xyz.niflheim.stockfish.engine.enums.Option;
+import xyz.niflheim.stockfish.engine.enums.Variant;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Server exposing local Stockfish processes to {@link StockfishClient}s on other machines,
+ * see {@link StockfishClient.Builder#addRemoteEngines(String, int, int)}.
+ * <p>
+ * Every accepted connection gets its own Stockfish process and UCI traffic is relayed unchanged in both
+ * directions, so a remote engine behaves exactly like a local one. Connections beyond the capacity of the
+ * host are closed at once. A process is stopped when its connection closes and the connection is closed
+ * when the process exits.
+ * <p>
+ * The host does not authenticate its clients. It listens on the loopback address unless another address is
+ * given, and refuses {@code setoption} commands for options outside a configured list, by default the options
+ * of {@link Option} that do not take a string, so that no client can make the engine read or write files
+ * such as {@code Debug Log File} or {@code SyzygyPath}. A refused option is answered with an
+ * {@code info string} naming it, after which the connection is closed, see {@link #REFUSED}.
+ *
+ * @author Niflheim
+ * @since 3.1
+ */
+public class EngineHost implements Closeable {
+
+    private static final Log log = LogFactory.getLog(EngineHost.class);
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Start of the line sent to a client before its connection is closed for setting an option it may not set,
+     * followed by the name of the option.
+     */
+    public static final String REFUSED = "info string Engine host refused option ";
+
+    /**
+     * Options clients may set unless the host is given its own list: those of {@link Option} not taking a string.
+     */
+    public static final Set<String> DEFAULT_OPTIONS = Collections.unmodifiableSet(Arrays.stream(Option.values())
+            .filter(option -> option.getText() == null)
+            .map(Option::getName)
+            .collect(Collectors.toSet()));
+
+    private final ServerSocket server;
+    private final String command;
+    private final int capacity;
+    private final Set<String> options;
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    private final ExecutorService threads;
+    private volatile boolean closed;
+
+    /**
+     * Start accepting connections on the loopback address.
+     *
+     * @param port     port to listen on, 0 for any free port
+     * @param capacity maximum number of Stockfish processes run at the same time, usually the number of cores
+     * @param path     path to folder with Stockfish core, {@code null} for assets/engine/
+     * @param variant  variant of Stockfish core
+     * @throws IOException if the port can not be bound
+     */
+    public EngineHost(int port, int capacity, String path, Variant variant) throws IOException {
+        this(InetAddress.getLoopbackAddress(), port, capacity, path, variant, DEFAULT_OPTIONS);
+    }
+
+    /**
+     * Start accepting connections.
+     *
+     * @param address  address to listen on, only reachable by other machines if it is not the loopback address
+     * @param port     port to listen on, 0 for any free port
+     * @param capacity maximum number of Stockfish processes run at the same time, usually the number of cores
+     * @param path     path to folder with Stockfish core, {@code null} for assets/engine/
+     * @param variant  variant of Stockfish core
+     * @param options  names of the options clients may set, see {@link #DEFAULT_OPTIONS}
+     * @throws IOException if the port can not be bound
+     */
+    public EngineHost(InetAddress address, int port, int capacity, String path, Variant variant, Collection<String> options) throws IOException {
+        this(address, port, capacity, UCIEngine.getPath(variant, path), options);
+    }
+
+    /**
+     * Start accepting connections on the loopback address, serving any UCI engine.
+     *
+     * @param port     port to listen on, 0 for any free port
+     * @param capacity maximum number of engine processes run at the same time, usually the number of cores
+     * @param binary   path to the executable of the engine
+     * @throws IOException if the port can not be bound
+     */
+    public EngineHost(int port, int capacity, String binary) throws IOException {
+        this(InetAddress.getLoopbackAddress(), port, capacity, binary, DEFAULT_OPTIONS);
+    }
+
+    /**
+     * Start accepting connections, serving any UCI engine.
+     *
+     * @param address  address to listen on, only reachable by other machines if it is not the loopback address
+     * @param port     port to listen on, 0 for any free port
+     * @param capacity maximum number of engine processes run at the same time, usually the number of cores
+     * @param binary   path to the executable of the engine
+     * @param options  names of the options clients may set, see {@link #DEFAULT_OPTIONS}
+     * @throws IOException if the port can not be bound
+     */
+    public EngineHost(InetAddress address, int port, int capacity, String binary, Collection<String> options) throws IOException {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Engine host needs a capacity of at least one engine: " + capacity);
+
+        this.capacity = capacity;
+        command = binary;
+        this.options = options.stream().map(EngineHost::optionKey).collect(Collectors.toSet());
+        server = new ServerSocket(port, 0, address);
+
+        AtomicInteger count = new AtomicInteger();
+        threads = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "stockfish-host-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        threads.submit(this::accept);
+        log.info("Stockfish engine host listening on " + address.getHostAddress() + ":" + getPort() + " with capacity " + capacity);
+    }
+
+    /**
+     * @return port the host listens on
+     */
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * @return maximum number of Stockfish processes run at the same time
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return number of connected clients, each served by one Stockfish process
+     */
+    public int getConnections() {
+        return connections.size();
+    }
+
+    /**
+     * Stop accepting connections, drop all connected clients and stop their Stockfish processes.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            server.close();
+        } catch (IOException e) {
+            log.warn("Can not close engine host socket", e);
+        }
+
+        List<Connection> open = new ArrayList<>(connections);
+        dropConnections();
+        threads.shutdownNow();
+
+        try {
+            for (Connection connection : open)
+                connection.process.waitFor(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    void dropConnections() {
+        for (Connection connection : connections)
+            connection.close();
+    }
+
+    private void accept() {
+        while (!closed) {
+            Socket socket;
+            try {
+                socket = server.accept();
+            } catch (IOException e) {
+                if (!closed)
+                    log.error("Engine host stopped accepting connections", e);
+                return;
+            }
+
+            if (connections.size() >= capacity) {
+                log.warn("Refusing connection from " + socket.getRemoteSocketAddress() + ", all " + capacity + " engines are in use");
+                closeQuietly(socket);
+                continue;
+            }
+
+            Process process;
+            try {
+                socket.setTcpNoDelay(true);
+                process = Runtime.getRuntime().exec(new String[]{command});
+            } catch (IOException e) {
+                log.error("Can not start Stockfish process for " + socket.getRemoteSocketAddress(), e);
+                closeQuietly(socket);
+                continue;
+            }
+
+            Connection connection = new Connection(socket, process);
+            connections.add(connection);
+            threads.submit(connection::relayCommands);
+            threads.submit(connection::relayOutput);
+            log.debug("Serving Stockfish engine to " + socket.getRemoteSocketAddress());
+        }
+    }
+
+    /**
+     * @param command line sent by a client
+     * @return name of the option a {@code setoption} command sets, as compared by the host, otherwise {@code null}
+     */
+    static String optionName(String command) {
+        String[] tokens = command.trim().split("\\s+");
+        if (!tokens[0].equals("setoption"))
+            return null;
+
+        StringBuilder name = new StringBuilder();
+        for (int i = 2; i < tokens.length && !tokens[i].equals("value"); i++)
+            name.append(name.length() > 0 ? " " : "").append(tokens[i]);
+        return optionKey(name.toString());
+    }
+
+    private static String optionKey(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private class Connection {
+        private final Socket socket;
+        private final Process process;
+
+        private boolean lineOpen;
+
+        Connection(Socket socket, Process process) {
+            this.socket = socket;
+            this.process = process;
+        }
+
+        /**
+         * Tell the client which option was refused, on a line of its own between the lines of the engine.
+         *
+         * @param option name of the refused option
+         */
+        private void refuse(String option) {
+            try {
+                OutputStream out = socket.getOutputStream();
+                synchronized (this) {
+                    out.write(((lineOpen ? "\n" : "") + REFUSED + option + "\n").getBytes(StandardCharsets.ISO_8859_1));
+                    out.flush();
+                }
+            } catch (IOException e) {
+                log.debug("Can not tell " + socket.getRemoteSocketAddress() + " about refused option " + option, e);
+            }
+        }
+
+        void relayCommands() {
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+                 BufferedWriter out = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.ISO_8859_1))) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    String option = optionName(line);
+                    if (option != null && !options.contains(option)) {
+                        log.warn("Refusing option " + option + " set by " + socket.getRemoteSocketAddress());
+                        refuse(option);
+                        return;
+                    }
+                    out.write(line);
+                    out.write('\n');
+                    if (!in.ready())
+                        out.flush();
+                }
+            } catch (SocketException e) {
+                log.debug("Connection to " + socket.getRemoteSocketAddress() + " closed", e);
+            } catch (IOException e) {
+                if (!socket.isClosed())
+                    log.warn("Relaying UCI traffic for " + socket.getRemoteSocketAddress() + " failed", e);
+            } finally {
+                close();
+            }
+        }
+
+        void relayOutput() {
+            try (InputStream in = process.getInputStream();
+                 OutputStream out = socket.getOutputStream()) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = in.read(buffer)) >= 0) {
+                    synchronized (this) {
+                        out.write(buffer, 0, read);
+                        out.flush();
+                        lineOpen = read > 0 && buffer[read - 1] != '\n';
+                    }
+                }
+            } catch (SocketException e) {
+                log.debug("Connection to " + socket.getRemoteSocketAddress() + " closed", e);
+            } catch (IOException e) {
+                if (!socket.isClosed())
+                    log.warn("Relaying UCI traffic for " + socket.getRemoteSocketAddress() + " failed", e);
+            } finally {
+                close();
+            }
+        }
+
+        void close() {
+            if (connections.remove(this)) {
+                process.destroy();
+                closeQuietly(socket);
+            }
+        }
+    }
+}
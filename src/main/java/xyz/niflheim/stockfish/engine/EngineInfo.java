@@ -0,0 +1,184 @@
+/* Copyright 2018 David Cai Wang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.niflheim.stockfish.engine;
+
+import xyz.niflheim.stockfish.engine.enums.Option;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Identity and options of a UCI engine, as reported by the engine in its answer to the {@code uci} command.
+ * <p>
+ * Every engine asks for them when it starts, before any other command as UCI requires, and checks every
+ * {@link Option} it was given against them before sending it, so an option the configured binary does not know
+ * or a value out of its range fails fast instead of being ignored by the engine.
+ *
+ * @author Niflheim
+ * @since 3.1
+ */
+public class EngineInfo {
+    private final String name;
+    private final String author;
+    private final Map<String, UciOption> options;
+
+    private EngineInfo(String name, String author, Map<String, UciOption> options) {
+        this.name = name;
+        this.author = author;
+        this.options = Collections.unmodifiableMap(options);
+    }
+
+    /**
+     * @param lines answer of the engine to {@code uci}, up to and including {@code uciok}
+     * @return identity and options of the engine
+     * @throws IllegalArgumentException if an option line can not be parsed
+     */
+    static EngineInfo parse(List<String> lines) throws IllegalArgumentException {
+        String name = null, author = null;
+        Map<String, UciOption> options = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+        for (String line : lines) {
+            if (line.startsWith("id name "))
+                name = line.substring(8).trim();
+            else if (line.startsWith("id author "))
+                author = line.substring(10).trim();
+            else if (line.startsWith("option ")) {
+                UciOption option = UciOption.parse(line);
+                options.put(option.getName(), option);
+            }
+        }
+
+        return new EngineInfo(name, author, options);
+    }
+
+    /**
+     * @return name of the engine such as {@code Stockfish 10 64}, or {@code null} if it did not report one
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return authors of the engine, or {@code null} if it did not report them
+     */
+    public String getAuthor() {
+        return author;
+    }
+
+    /**
+     * @return options of the engine by name, names are compared ignoring case as required by UCI
+     */
+    public Map<String, UciOption> getOptions() {
+        return options;
+    }
+
+    /**
+     * @param name name of the option, ignoring case
+     * @return the option, or {@code null} if the engine does not have it
+     */
+    public UciOption getOption(String name) {
+        return options.get(name);
+    }
+
+    /**
+     * @param option option to look up
+     * @return {@code true} if the engine has the option
+     */
+    public boolean supports(Option option) {
+        return options.containsKey(option.getName());
+    }
+
+    /**
+     * Check that the engine has the option and accepts its current value.
+     *
+     * @param option option with its value
+     * @throws IllegalArgumentException if the engine does not have the option or the value does not fit its type or range
+     */
+    public void validate(Option option) throws IllegalArgumentException {
+        UciOption declared = options.get(option.getName());
+        if (declared == null)
+            throw new IllegalArgumentException(describe() + " has no option " + option.getName());
+
+        switch (declared.getType()) {
+            case SPIN:
+                if (option.getText() != null)
+                    throw new IllegalArgumentException("Option " + option.getName() + " of " + describe() + " takes a number, not a string");
+                if (option.getValue() < declared.getMin() || option.getValue() > declared.getMax())
+                    throw new IllegalArgumentException("Option " + option.getName() + " of " + describe() + " must be between "
+                            + declared.getMin() + " and " + declared.getMax() + ": " + option.getValue());
+                break;
+            case STRING:
+                if (option.getText() == null)
+                    throw new IllegalArgumentException("Option " + option.getName() + " of " + describe() + " takes a string");
+                break;
+            case COMBO:
+                if (option.getText() == null || !declared.getVars().contains(option.getText()))
+                    throw new IllegalArgumentException("Option " + option.getName() + " of " + describe() + " must be one of "
+                            + declared.getVars() + ": " + option.getText());
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Check that the engine has the option and accepts a value given as sent in a {@code setoption} command.
+     *
+     * @param option option to set
+     * @param value  value of the option, {@code true} or {@code false} for on/off options
+     * @throws IllegalArgumentException if the engine does not have the option or the value does not fit its type or range
+     */
+    public void validate(Option option, String value) throws IllegalArgumentException {
+        UciOption declared = options.get(option.getName());
+        if (declared == null)
+            throw new IllegalArgumentException(describe() + " has no option " + option.getName());
+
+        switch (declared.getType()) {
+            case SPIN:
+                long number;
+                try {
+                    number = Long.parseLong(value);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Option " + option.getName() + " of " + describe() + " takes a number: " + value);
+                }
+                if (number < declared.getMin() || number > declared.getMax())
+                    throw new IllegalArgumentException("Option " + option.getName() + " of " + describe() + " must be between "
+                            + declared.getMin() + " and " + declared.getMax() + ": " + value);
+                break;
+            case CHECK:
+                if (!value.equals("true") && !value.equals("false"))
+                    throw new IllegalArgumentException("Option " + option.getName() + " of " + describe() + " must be true or false: " + value);
+                break;
+            case COMBO:
+                if (!declared.getVars().contains(value))
+                    throw new IllegalArgumentException("Option " + option.getName() + " of " + describe() + " must be one of "
+                            + declared.getVars() + ": " + value);
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return describe() + " with " + options.size() + " options";
+    }
+
+    private String describe() {
+        return name == null ? "Engine" : name;
+    }
+}
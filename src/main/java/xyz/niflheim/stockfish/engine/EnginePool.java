@@ -0,0 +1,380 @@
+/* Copyright 2018 David Cai Wang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.niflheim.stockfish.engine;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Pool of Stockfish engines shared by the worker threads of a {@link StockfishClient}.
+ * <p>
+ * Engines are checked out exclusively with {@link #acquire()} and handed back with {@link #release(Stockfish)}.
+ * Maintenance such as clearing the hash or restarting a process is never run on a busy engine; it is queued
+ * with {@link #maintain(Stockfish, Maintenance)} and runs as soon as the engine is idle.
+ */
+class EnginePool {
+
+    private static final Log log = LogFactory.getLog(EnginePool.class);
+    private static final int NO_MATCH = Integer.MAX_VALUE;
+
+    /**
+     * Work run on an engine while it is checked out of the pool.
+     */
+    interface Maintenance {
+        /**
+         * @param engine engine checked out of the pool
+         * @return engine to put back into the pool, either {@code engine} itself or its replacement
+         * @throws Exception if the engine could not be maintained, it is then dropped from the pool
+         */
+        Stockfish apply(Stockfish engine) throws Exception;
+
+        /**
+         * Called instead of {@link #apply(Stockfish)} when the engine left the pool before the work could run.
+         */
+        default void skipped() {
+        }
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final List<Stockfish> engines = new ArrayList<>();
+    private final Deque<Stockfish> idle = new ArrayDeque<>();
+    private final Map<Stockfish, List<Maintenance>> pending = new HashMap<>();
+    private int retire;
+
+    /**
+     * Add a new idle engine to the pool.
+     *
+     * @param engine engine to add
+     */
+    void add(Stockfish engine) {
+        lock.lock();
+        try {
+            engines.add(engine);
+            idle.addLast(engine);
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Check out an idle engine, waiting until one becomes available.
+     *
+     * @return engine for exclusive use by the caller
+     * @throws InterruptedException if interrupted while waiting
+     */
+    Stockfish acquire() throws InterruptedException {
+        return acquire(-1, null, null);
+    }
+
+    /**
+     * Check out an idle engine, waiting until any engine becomes available.
+     * <p>
+     * A given engine is taken if it is idle, otherwise an engine that last ran the same game, whose hash table is
+     * warm. Queries of other games prefer an engine of their profile that is cold, then one not holding another
+     * game. Without an engine of the profile the engine is taken from the profile with the most idle engines, so
+     * engines move from profiles that have more than they need to the profiles queries are waiting for.
+     *
+     * @param preferred id of the engine to take if it is idle, or -1
+     * @param profile   name of the profile the caller runs, or {@code null} for the options of the client
+     * @param game      tag of the game the caller analyses, or {@code null}
+     * @return engine for exclusive use by the caller
+     * @throws InterruptedException if interrupted while waiting
+     */
+    Stockfish acquire(int preferred, String profile, String game) throws InterruptedException {
+        lock.lock();
+        try {
+            while (idle.isEmpty())
+                changed.await();
+
+            Stockfish match = null;
+            int best = NO_MATCH;
+            for (Stockfish engine : idle) {
+                int rank = rank(engine, preferred, profile, game);
+                if (rank < best) {
+                    best = rank;
+                    match = engine;
+                }
+            }
+
+            if (match == null)
+                match = surplus();
+            idle.remove(match);
+            return match;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Check out an idle engine if there is one.
+     *
+     * @return engine for exclusive use by the caller or {@code null} if all engines are busy
+     */
+    Stockfish tryAcquire() {
+        lock.lock();
+        try {
+            return idle.pollFirst();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Hand an engine back to the pool, running any maintenance queued while it was busy.
+     *
+     * @param engine engine previously returned by {@link #acquire()}
+     */
+    void release(Stockfish engine) {
+        while (engine != null) {
+            List<Maintenance> tasks;
+            lock.lock();
+            try {
+                tasks = pending.remove(engine);
+                if (tasks == null) {
+                    if (retire > 0) {
+                        retire--;
+                        engines.remove(engine);
+                    } else {
+                        idle.addFirst(engine);
+                        engine = null;
+                    }
+                    changed.signalAll();
+                    break;
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            for (Maintenance task : tasks)
+                if (engine != null)
+                    engine = run(engine, task);
+                else
+                    task.skipped();
+        }
+
+        if (engine != null)
+            close(engine);
+    }
+
+    /**
+     * Run maintenance on an engine now if it is idle, otherwise as soon as it is released.
+     *
+     * @param engine engine to maintain
+     * @param task   work to run on the engine
+     * @return {@code false} if the engine is no longer in the pool and the work was not scheduled
+     */
+    boolean maintain(Stockfish engine, Maintenance task) {
+        lock.lock();
+        try {
+            if (!engines.contains(engine))
+                return false;
+
+            if (!idle.remove(engine)) {
+                pending.computeIfAbsent(engine, e -> new ArrayList<>()).add(task);
+                return true;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        release(run(engine, task));
+        return true;
+    }
+
+    /**
+     * Remove engines from the pool, closing idle ones now and busy ones when they are released.
+     *
+     * @param count number of engines to remove
+     */
+    void shrink(int count) {
+        List<Stockfish> closing = new ArrayList<>();
+        lock.lock();
+        try {
+            for (int i = 0; i < count; i++) {
+                Stockfish engine = idle.pollLast();
+                if (engine == null) {
+                    retire += count - i;
+                    break;
+                }
+                engines.remove(engine);
+                closing.add(engine);
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        closing.forEach(this::close);
+    }
+
+    /**
+     * Wait until no engine is busy.
+     *
+     * @param timeout maximum time to wait
+     * @param unit    unit of {@code timeout}
+     * @return {@code true} if all engines are idle
+     * @throws InterruptedException if interrupted while waiting
+     */
+    boolean awaitIdle(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (idle.size() < engines.size()) {
+                if (nanos <= 0)
+                    return false;
+                nanos = changed.awaitNanos(nanos);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param id engine id
+     * @return engine with the given id or {@code null}
+     */
+    Stockfish find(int id) {
+        lock.lock();
+        try {
+            for (Stockfish engine : engines)
+                if (engine.id == id)
+                    return engine;
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return all engines of the pool, busy or idle
+     */
+    List<Stockfish> snapshot() {
+        lock.lock();
+        try {
+            return new ArrayList<>(engines);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of engines that will remain in the pool once pending removals are done
+     */
+    int size() {
+        lock.lock();
+        try {
+            return engines.size() - retire;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of idle engines
+     */
+    int idleCount() {
+        lock.lock();
+        try {
+            return idle.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static int rank(Stockfish engine, int preferred, String profile, String game) {
+        if (engine.id == preferred)
+            return 0;
+        if (game != null && game.equals(engine.game))
+            return 1;
+        if (!Objects.equals(engine.profile, profile))
+            return NO_MATCH;
+        if (engine.cold)
+            return 2;
+        return engine.game == null ? 3 : 4;
+    }
+
+    private Stockfish surplus() {
+        Map<String, Integer> counts = new HashMap<>();
+        for (Stockfish engine : idle)
+            counts.merge(engine.profile, 1, Integer::sum);
+
+        Stockfish surplus = null;
+        int most = 0;
+        for (Iterator<Stockfish> it = idle.descendingIterator(); it.hasNext(); ) {
+            Stockfish engine = it.next();
+            int count = counts.get(engine.profile);
+            if (count > most) {
+                most = count;
+                surplus = engine;
+            }
+        }
+        return surplus;
+    }
+
+    private Stockfish run(Stockfish engine, Maintenance task) {
+        Stockfish result;
+        try {
+            result = task.apply(engine);
+        } catch (Exception e) {
+            log.error("Maintenance of Stockfish engine " + engine.id + " failed, removing it from the pool", e);
+            result = null;
+        }
+
+        if (result != engine) {
+            List<Maintenance> dropped = null;
+            lock.lock();
+            try {
+                int index = engines.indexOf(engine);
+                if (result == null) {
+                    engines.remove(index);
+                    if (retire > 0)
+                        retire--;
+                } else {
+                    engines.set(index, result);
+                }
+
+                List<Maintenance> queued = pending.remove(engine);
+                if (queued != null && result != null)
+                    pending.computeIfAbsent(result, e -> new ArrayList<>()).addAll(queued);
+                else
+                    dropped = queued;
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+
+            if (dropped != null)
+                dropped.forEach(Maintenance::skipped);
+        }
+
+        return result;
+    }
+
+    private void close(Stockfish engine) {
+        try {
+            engine.close();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Can not stop Stockfish engine " + engine.id + ". Please, close it manually.", e);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/* Copyright 2018 David Cai Wang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.niflheim.stockfish.engine;
+
+/**
+ * Score of a position as reported by Stockfish, either in centipawns or as a forced mate.
+ * Like in UCI, scores are seen from the side to move unless stated otherwise.
+ *
+ * @author Niflheim
+ * @since 3.1
+ */
+public final class Evaluation {
+
+    /**
+     * Centipawn value of a mate in 0, see {@link #toCentipawns()}.
+     */
+    public static final int MATE_SCORE = 100_000;
+
+    private final int value;
+    private final boolean mate;
+
+    private Evaluation(int value, boolean mate) {
+        this.value = value;
+        this.mate = mate;
+    }
+
+    /**
+     * @param centipawns score in hundredths of a pawn
+     * @return centipawn evaluation
+     */
+    public static Evaluation centipawns(int centipawns) {
+        return new Evaluation(centipawns, false);
+    }
+
+    /**
+     * @param moves moves until mate, negative if the side to move gets mated, 0 if it is mated already
+     * @return mate evaluation
+     */
+    public static Evaluation mate(int moves) {
+        return new Evaluation(moves, true);
+    }
+
+    /**
+     * @return {@code true} if this is a forced mate
+     */
+    public boolean isMate() {
+        return mate;
+    }
+
+    /**
+     * @return score in centipawns, or 0 for mates
+     */
+    public int getCentipawns() {
+        return mate ? 0 : value;
+    }
+
+    /**
+     * @return moves until mate, or 0 for centipawn scores
+     */
+    public int getMate() {
+        return mate ? value : 0;
+    }
+
+    /**
+     * @return score in centipawns with mates mapped just below {@code ±}{@link #MATE_SCORE}, so evaluations can be compared
+     */
+    public int toCentipawns() {
+        if (!mate)
+            return value;
+        return value > 0 ? MATE_SCORE - value : -MATE_SCORE - value;
+    }
+
+    /**
+     * @return the same evaluation seen from the other side
+     */
+    public Evaluation negate() {
+        return new Evaluation(-value, mate);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Evaluation))
+            return false;
+        Evaluation other = (Evaluation) o;
+        return value == other.value && mate == other.mate;
+    }
+
+    @Override
+    public int hashCode() {
+        return mate ? ~value : value;
+    }
+
+    /**
+     * @return the score like {@code +0.35}, {@code -1.20}, {@code #3} or {@code #-2}
+     */
+    @Override
+    public String toString() {
+        if (mate)
+            return "#" + value;
+        return String.format("%+.2f", value / 100.0);
+    }
+}
@@ -0,0 +1,99 @@
+/* Copyright 2018 David Cai Wang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.niflheim.stockfish.engine;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Memory limit of the container the client runs in, read from the cgroup file system behind
+ * {@link StockfishClient.Builder#setMemoryBudget(long)}.
+ * <p>
+ * Both cgroup v2 ({@code memory.max}) and v1 ({@code memory.limit_in_bytes}) are read, first in the group of this
+ * process as listed in {@code /proc/self/cgroup}, then at the root of the mount, which is the group of the
+ * container when it has its own cgroup namespace.
+ */
+class MemoryLimit {
+
+    /**
+     * Limit reported when there is none or it can not be read.
+     */
+    static final long UNLIMITED = Long.MAX_VALUE;
+
+    /**
+     * cgroup v1 reports no limit as the largest page-aligned long, anything above this is taken as no limit.
+     */
+    private static final long UNLIMITED_V1 = 1L << 62;
+
+    private MemoryLimit() {
+    }
+
+    /**
+     * @return memory limit of this process in bytes, or {@link #UNLIMITED}
+     */
+    static long detect() {
+        return detect(Paths.get("/sys/fs/cgroup"), Paths.get("/proc/self/cgroup"));
+    }
+
+    /**
+     * @param mount  mount point of the cgroup file system
+     * @param groups file listing the groups of this process, in the format of {@code /proc/self/cgroup}
+     * @return memory limit in bytes, or {@link #UNLIMITED}
+     */
+    static long detect(Path mount, Path groups) {
+        String v2 = "";
+        String v1 = "";
+        try {
+            List<String> lines = Files.readAllLines(groups, StandardCharsets.US_ASCII);
+            for (String line : lines) {
+                String[] fields = line.split(":", 3);
+                if (fields.length < 3)
+                    continue;
+                if (fields[0].equals("0") && fields[1].isEmpty())
+                    v2 = fields[2];
+                else if (("," + fields[1] + ",").contains(",memory,"))
+                    v1 = fields[2];
+            }
+        } catch (IOException ignored) {
+        }
+
+        long limit = Math.min(read(mount.resolve(relative(v2)).resolve("memory.max")), read(mount.resolve("memory.max")));
+        if (limit == UNLIMITED)
+            limit = Math.min(read(mount.resolve("memory").resolve(relative(v1)).resolve("memory.limit_in_bytes")),
+                    read(mount.resolve("memory").resolve("memory.limit_in_bytes")));
+        return limit;
+    }
+
+    private static String relative(String group) {
+        return group.startsWith("/") ? group.substring(1) : group;
+    }
+
+    private static long read(Path file) {
+        try {
+            String value = new String(Files.readAllBytes(file), StandardCharsets.US_ASCII).trim();
+            if (value.equals("max"))
+                return UNLIMITED;
+
+            long bytes = Long.parseLong(value);
+            return bytes <= 0 || bytes >= UNLIMITED_V1 ? UNLIMITED : bytes;
+        } catch (IOException | NumberFormatException e) {
+            return UNLIMITED;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/* Copyright 2018 David Cai Wang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.niflheim.stockfish.engine;
+
+import xyz.niflheim.stockfish.chess.Move;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable list of moves packed as {@code int}s, see {@link Move}, e.g. the legal moves of a position or a
+ * principal variation.
+ *
+ * @author Niflheim
+ * @since 3.1
+ */
+public class MoveList {
+
+    private static final MoveList EMPTY = new MoveList(new int[0]);
+
+    private final int[] moves;
+
+    private MoveList(int[] moves) {
+        this.moves = moves;
+    }
+
+    /**
+     * @param moves packed moves, copied
+     * @return list of the moves
+     */
+    public static MoveList of(int... moves) {
+        return moves.length == 0 ? EMPTY : new MoveList(moves.clone());
+    }
+
+    /**
+     * @param uci moves in UCI notation separated by whitespace, like the output of a {@code Legal_Moves} query
+     * @return list of the moves
+     * @throws IllegalArgumentException if a move is malformed
+     */
+    public static MoveList parse(String uci) throws IllegalArgumentException {
+        String trimmed = uci.trim();
+        if (trimmed.isEmpty())
+            return EMPTY;
+
+        String[] tokens = trimmed.split("\\s+");
+        return parse(tokens, 0, tokens.length);
+    }
+
+    static MoveList wrap(int[] moves) {
+        return moves.length == 0 ? EMPTY : new MoveList(moves);
+    }
+
+    static MoveList parse(String[] tokens, int from, int to) {
+        if (from >= to)
+            return EMPTY;
+
+        int[] moves = new int[to - from];
+        for (int i = from; i < to; i++)
+            moves[i - from] = Move.parse(tokens[i]);
+        return wrap(moves);
+    }
+
+    /**
+     * @return number of moves
+     */
+    public int size() {
+        return moves.length;
+    }
+
+    /**
+     * @return {@code true} if there are no moves
+     */
+    public boolean isEmpty() {
+        return moves.length == 0;
+    }
+
+    /**
+     * @param index index of the move
+     * @return packed move
+     */
+    public int get(int index) {
+        return moves[index];
+    }
+
+    /**
+     * @param index index of the move
+     * @return move in UCI notation
+     */
+    public String getUci(int index) {
+        return Move.toUci(moves[index]);
+    }
+
+    /**
+     * @param move packed move
+     * @return {@code true} if the list contains the move
+     */
+    public boolean contains(int move) {
+        for (int m : moves)
+            if (m == move)
+                return true;
+        return false;
+    }
+
+    /**
+     * @param uci move in UCI notation
+     * @return {@code true} if the list contains the move
+     */
+    public boolean contains(String uci) {
+        try {
+            return contains(Move.parse(uci));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return copy of the packed moves
+     */
+    public int[] toArray() {
+        return moves.clone();
+    }
+
+    /**
+     * @return view of the moves in UCI notation, converting on access
+     */
+    public List<String> toUciList() {
+        return new AbstractList<String>() {
+            @Override
+            public String get(int index) {
+                return getUci(index);
+            }
+
+            @Override
+            public int size() {
+                return moves.length;
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof MoveList && Arrays.equals(moves, ((MoveList) o).moves);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(moves);
+    }
+
+    /**
+     * @return moves in UCI notation separated by spaces
+     */
+    @Override
+    public String toString() {
+        StringBuilder uci = new StringBuilder(moves.length * 5);
+        for (int move : moves) {
+            if (uci.length() > 0)
+                uci.append(' ');
+            uci.append(Move.toUci(move));
+        }
+        return uci.toString();
+    }
+}
@@ -0,0 +1,144 @@
+/* Copyright 2018 David Cai Wang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.niflheim.stockfish.engine;
+
+import xyz.niflheim.stockfish.engine.enums.HashPolicy;
+import xyz.niflheim.stockfish.engine.enums.Option;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Named set of engine options a query can ask for, such as a playing strength or a contempt value.
+ * <p>
+ * Profiles are registered with {@link StockfishClient.Builder#addProfile(Profile)} and selected per query with
+ * {@link xyz.niflheim.stockfish.engine.enums.Query.Builder#setProfile(String)}. An engine keeps the options of the
+ * last profile it ran, and the client sends a query to an idle engine already set to its profile, so serving
+ * several profiles from one pool does not reset options before every search and keeps each engine's hash table
+ * filled with searches of the same profile.
+ *
+ * @author Niflheim
+ * @since 3.1
+ */
+public class Profile {
+    private final String name;
+    private final Map<Option, String> options;
+    private final HashPolicy hashPolicy;
+
+    private Profile(String name, Map<Option, String> options, HashPolicy hashPolicy) {
+        this.name = name;
+        this.options = Collections.unmodifiableMap(options);
+        this.hashPolicy = hashPolicy;
+    }
+
+    /**
+     * @return name of the profile, used by queries to select it
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return options of the profile with their values as sent to the engine
+     */
+    public Map<Option, String> getOptions() {
+        return options;
+    }
+
+    /**
+     * @return hash policy of queries with this profile, or {@code null} for the policy of the client
+     */
+    public HashPolicy getHashPolicy() {
+        return hashPolicy;
+    }
+
+    @Override
+    public String toString() {
+        return name + options;
+    }
+
+    static String value(Option option, long value) {
+        return option.isCheck() ? String.valueOf(value != 0) : String.valueOf(value);
+    }
+
+    /**
+     * Standard Builder pattern to create {@link Profile} instance.
+     *
+     * @see <a href="https://en.wikipedia.org/wiki/Builder_pattern">Wiki <b>Builder</b> pattern.</a>
+     */
+    public static class Builder {
+        private final String name;
+        private final Map<Option, String> options = new EnumMap<>(Option.class);
+        private HashPolicy hashPolicy;
+
+        /**
+         * @param name name of the profile
+         */
+        public Builder(String name) {
+            if (name == null || name.isEmpty())
+                throw new IllegalArgumentException("Profile needs a name");
+
+            this.name = name;
+        }
+
+        /**
+         * @param option option to set while the profile is active, anything but {@link Option#Hash}
+         * @param value  value of the option, for on/off options 0 is off and anything else on
+         * @return Builder
+         */
+        public Builder setOption(Option option, long value) {
+            return put(option, value(option, value));
+        }
+
+        /**
+         * @param option option taking a string, such as {@link Option#SyzygyPath}
+         * @param value  value of the option
+         * @return Builder
+         */
+        public Builder setOption(Option option, String value) {
+            return put(option, value);
+        }
+
+        /**
+         * @param hashPolicy what engines do with their hash table before a query of this profile unrelated to
+         *                   their previous one, or {@code null} for the policy of the client
+         * @return Builder
+         */
+        public Builder setHashPolicy(HashPolicy hashPolicy) {
+            this.hashPolicy = hashPolicy;
+            return this;
+        }
+
+        /**
+         * @return profile with the options set
+         * @throws IllegalStateException if neither an option nor a hash policy was set
+         */
+        public Profile build() throws IllegalStateException {
+            if (options.isEmpty() && hashPolicy == null)
+                throw new IllegalStateException("Profile " + name + " sets no option");
+
+            return new Profile(name, options.isEmpty() ? Collections.emptyMap() : new EnumMap<>(options), hashPolicy);
+        }
+
+        private Builder put(Option option, String value) {
+            if (option == Option.Hash || option == Option.Clear_Hash)
+                throw new IllegalArgumentException("Profile " + name + " can not set " + option.getName() + ", switching profiles must keep the hash");
+
+            options.put(option, value);
+            return this;
+        }
+    }
+}
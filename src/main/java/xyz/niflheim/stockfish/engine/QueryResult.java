@@ -0,0 +1,72 @@
+/* Copyright 2018 David Cai Wang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.niflheim.stockfish.engine;
+
+import xyz.niflheim.stockfish.engine.enums.Query;
+
+/**
+ * Result of one query of a batch, see {@link StockfishClient#analyzeAll(Iterable, boolean, int)}.
+ *
+ * @author Niflheim
+ * @since 3.1
+ */
+public class QueryResult {
+    private final long index;
+    private final Query query;
+    private final String output;
+    private final Throwable error;
+
+    QueryResult(long index, Query query, String output, Throwable error) {
+        this.index = index;
+        this.query = query;
+        this.output = output;
+        this.error = error;
+    }
+
+    /**
+     * @return position of the query in the input, starting at 0
+     */
+    public long getIndex() {
+        return index;
+    }
+
+    /**
+     * @return the executed query
+     */
+    public Query getQuery() {
+        return query;
+    }
+
+    /**
+     * @return output of Stockfish, or {@code null} if the query failed
+     */
+    public String getOutput() {
+        return output;
+    }
+
+    /**
+     * @return cause of the failure, or {@code null} if the query succeeded
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    /**
+     * @return {@code true} if the query produced an output
+     */
+    public boolean isSuccess() {
+        return error == null;
+    }
+}
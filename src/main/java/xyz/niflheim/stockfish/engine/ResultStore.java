@@ -0,0 +1,116 @@
+/* Copyright 2018 David Cai Wang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.niflheim.stockfish.engine;
+
+import xyz.niflheim.stockfish.engine.enums.Query;
+import xyz.niflheim.stockfish.engine.enums.QueryType;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Store of completed searches behind {@link StockfishClient.Builder#setResultStore(int)}, indexed by position,
+ * skill level and reached depth.
+ * <p>
+ * A search to depth 24 also answers any request for depth 24 or less on the same position, so depth-limited
+ * {@code Best_Move} queries are served from the store when a search at least as deep completed before. Deeper
+ * requests are routed to the engine that ran the stored search, whose hash table still holds its tree and
+ * principal variation, so the new search starts from where the old one stopped.
+ */
+class ResultStore {
+
+    private static final class Stored {
+        final BestMoveResult result;
+        final int engine;
+
+        Stored(BestMoveResult result, int engine) {
+            this.result = result;
+            this.engine = engine;
+        }
+    }
+
+    private final Map<String, Stored> entries;
+
+    ResultStore(int capacity) {
+        entries = new LinkedHashMap<String, Stored>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Stored> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * @param query query about to be dispatched
+     * @return stored result at least as deep as the query asks for, or {@code null}
+     */
+    synchronized BestMoveResult lookup(Query query) {
+        if (!isDepthLimited(query))
+            return null;
+
+        Stored entry = entries.get(key(query));
+        return entry != null && entry.result.getDepth() >= query.getDepth() ? entry.result : null;
+    }
+
+    /**
+     * @param query query about to run on an engine
+     * @return id of the engine that searched the position before, or -1
+     */
+    synchronized int engineFor(Query query) {
+        if (query.getType() != QueryType.Best_Move)
+            return -1;
+
+        Stored entry = entries.get(key(query));
+        return entry != null ? entry.engine : -1;
+    }
+
+    /**
+     * Keep a completed search unless a deeper one of the same position is stored already.
+     *
+     * @param query  completed {@code Best_Move} query
+     * @param result outcome of its search
+     * @param engine id of the engine that ran it
+     */
+    synchronized void put(Query query, BestMoveResult result, int engine) {
+        if (result == null || result.getPvMoves().isEmpty())
+            return;
+
+        String key = key(query);
+        Stored entry = entries.get(key);
+        if (entry == null || entry.result.getDepth() <= result.getDepth())
+            entries.put(key, new Stored(result, engine));
+    }
+
+    /**
+     * @return number of stored positions
+     */
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private static boolean isDepthLimited(Query query) {
+        return query.getType() == QueryType.Best_Move && query.getDepth() >= 0 && query.getMovetime() < 0
+                && query.getNodes() < 0 && !query.isTimed();
+    }
+
+    private static String key(Query query) {
+        String[] fields = query.getFen().trim().split("\\s+");
+        StringBuilder key = new StringBuilder();
+        for (int i = 0; i < Math.min(5, fields.length); i++)
+            key.append(fields[i]).append(' ');
+
+        return key.append(query.getDifficulty()).append('|').append(query.getProfile()).toString();
+    }
+}
@@ -0,0 +1,95 @@
+/* Copyright 2018 David Cai Wang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.niflheim.stockfish.engine;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import xyz.niflheim.stockfish.engine.enums.Query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+
+/**
+ * In-flight deduplication behind {@link StockfishClient.Builder#setCoalescing(boolean)}.
+ * <p>
+ * The first query for a key leads and runs on an engine; identical queries arriving before it completes
+ * only register their callback and receive the leader's result or error.
+ *
+ * @param <T> type of the result
+ */
+class SingleFlight<T> {
+
+    private static final Log log = LogFactory.getLog(SingleFlight.class);
+
+    private final ConcurrentMap<String, List<BiConsumer<T, Throwable>>> calls = new ConcurrentHashMap<>();
+
+    /**
+     * @param key  key of the query, see {@link #key(Query)}
+     * @param done callback for the result
+     * @return {@code true} if the caller leads and must run the query, {@code false} if it joined a running one
+     */
+    boolean join(String key, BiConsumer<T, Throwable> done) {
+        boolean[] leader = {false};
+        calls.compute(key, (k, waiters) -> {
+            if (waiters == null) {
+                waiters = new ArrayList<>();
+                leader[0] = true;
+            }
+            waiters.add(done);
+            return waiters;
+        });
+        return leader[0];
+    }
+
+    /**
+     * Pass the leader's result to every query of the key and forget the key.
+     *
+     * @param key    key of the query
+     * @param output result of the query
+     * @param error  exception of the query or {@code null}
+     */
+    void complete(String key, T output, Throwable error) {
+        List<BiConsumer<T, Throwable>> waiters = calls.remove(key);
+        for (BiConsumer<T, Throwable> done : waiters != null ? waiters : Collections.<BiConsumer<T, Throwable>>emptyList()) {
+            try {
+                done.accept(output, error);
+            } catch (RuntimeException e) {
+                log.warn("Callback of a coalesced query failed", e);
+            }
+        }
+    }
+
+    /**
+     * @return number of distinct queries in flight
+     */
+    int size() {
+        return calls.size();
+    }
+
+    /**
+     * @param query query to identify
+     * @return key equal for queries that produce the same result, with the FEN normalized
+     */
+    static String key(Query query) {
+        return query.getType() + "|" + String.join(" ", query.getFen().trim().split("\\s+")) + "|" + query.getMove()
+                + "|" + query.getDifficulty() + "|" + query.getDepth() + "|" + query.getMovetime() + "|" + query.getNodes()
+                + "|" + query.getWhiteTime() + "|" + query.getBlackTime() + "|" + query.getWhiteIncrement()
+                + "|" + query.getBlackIncrement() + "|" + query.getMovesToGo() + "|" + query.getProfile();
+    }
+}
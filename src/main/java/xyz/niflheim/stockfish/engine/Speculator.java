@@ -0,0 +1,233 @@
+/* Copyright 2018 David Cai Wang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.niflheim.stockfish.engine;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import xyz.niflheim.stockfish.chess.Position;
+import xyz.niflheim.stockfish.engine.enums.Query;
+import xyz.niflheim.stockfish.engine.enums.QueryType;
+import xyz.niflheim.stockfish.metrics.StockfishMetrics;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Speculative precomputation behind {@link StockfishClient.Builder#setSpeculation(boolean)}.
+ * <p>
+ * After a {@code Best_Move} query the position two plies down its principal variation is likely to be asked
+ * next, and after a {@code Make_Move} query the resulting position is. Such positions are searched with the
+ * parameters of the last {@code Best_Move} query, but only on engines that are idle while no query waits. Every
+ * real query stops the running speculative search at once, so speculation never delays real work by more
+ * than the time Stockfish needs to answer {@code stop}. The lock shared with real queries is never held while
+ * waiting for an engine: a speculation cancelled while its engine is still being set up never sends {@code go}.
+ * Completed results are kept in an LRU cache of at most {@value #CACHE_SIZE} entries that later {@code Best_Move}
+ * queries are answered from, emptied whenever the engines are reconfigured.
+ */
+class Speculator {
+
+    private static final Log log = LogFactory.getLog(Speculator.class);
+
+    private static final int CACHE_SIZE = 1024;
+    private static final int BACKLOG = 16;
+
+    private final StockfishClient client;
+    private final EnginePool engines;
+    private final StockfishMetrics metrics;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, BestMoveResult> cache = Collections.synchronizedMap(new LinkedHashMap<String, BestMoveResult>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, BestMoveResult> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    });
+
+    private final Object lock = new Object();
+    private Stockfish current;
+    private boolean searching;
+    private boolean cancelled;
+    private volatile Query template;
+
+    Speculator(StockfishClient client, EnginePool engines, StockfishMetrics metrics) {
+        this.client = client;
+        this.engines = engines;
+        this.metrics = metrics;
+        executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(BACKLOG), r -> {
+            Thread thread = new Thread(r, "stockfish-speculation");
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.DiscardOldestPolicy());
+    }
+
+    /**
+     * @param query query about to be dispatched
+     * @return result of a completed speculative search for the same query or {@code null}
+     */
+    BestMoveResult lookup(Query query) {
+        if (!isCacheable(query))
+            return null;
+
+        BestMoveResult result = cache.get(key(query));
+        if (result != null)
+            metrics.speculationHit();
+        return result;
+    }
+
+    /**
+     * Stop the running speculative search, called whenever real work arrives.
+     */
+    void cancel() {
+        synchronized (lock) {
+            if (current != null && !cancelled) {
+                cancelled = true;
+                if (searching)
+                    current.sendCommand("stop");
+            }
+        }
+    }
+
+    /**
+     * Drop all cached results and stop the running speculative search, called when the engines change.
+     */
+    void invalidate() {
+        cancel();
+        cache.clear();
+    }
+
+    /**
+     * Schedule the positions likely to follow a query that completed.
+     *
+     * @param query  completed query
+     * @param search outcome of the search for {@code Best_Move} queries, otherwise {@code null}
+     * @param output result of the query
+     */
+    void completed(Query query, BestMoveResult search, String output) {
+        try {
+            if (query.getType() == QueryType.Best_Move && isCacheable(query)) {
+                template = query;
+                List<String> pv = search != null ? search.getPv() : Collections.emptyList();
+                if (pv.size() >= 2)
+                    schedule(predict(query, Position.fromFen(query.getFen()).play(pv.get(0)).play(pv.get(1)).toFen()));
+            } else if (query.getType() == QueryType.Make_Move && template != null && output != null) {
+                schedule(predict(template, output));
+            }
+        } catch (IllegalArgumentException e) {
+            log.debug("Can not predict the position after " + query.getType() + " on " + query.getFen(), e);
+        }
+    }
+
+    /**
+     * Record a result for a query answered from the cache, so speculation continues down its variation.
+     *
+     * @param query  query answered from the cache
+     * @param result cached result
+     */
+    void served(Query query, BestMoveResult result) {
+        if (result.getPv().size() >= 2) {
+            try {
+                schedule(predict(query, Position.fromFen(query.getFen()).play(result.getPv().get(0)).play(result.getPv().get(1)).toFen()));
+            } catch (IllegalArgumentException e) {
+                log.debug("Can not predict the position after " + result.getPv(), e);
+            }
+        }
+    }
+
+    void close() {
+        executor.shutdownNow();
+        cancel();
+    }
+
+    private void schedule(Query query) {
+        if (!executor.isShutdown() && !cache.containsKey(key(query)))
+            executor.execute(() -> speculate(query));
+    }
+
+    private void speculate(Query query) {
+        String key = key(query);
+        if (cache.containsKey(key) || metrics.getQueueDepth() > 0)
+            return;
+
+        Stockfish engine = engines.tryAcquire();
+        if (engine == null)
+            return;
+
+        try {
+            synchronized (lock) {
+                if (metrics.getQueueDepth() > 0)
+                    return;
+                current = engine;
+                cancelled = false;
+            }
+
+            client.prepare(engine, query);
+            engine.setPosition(query);
+            boolean started;
+            synchronized (lock) {
+                started = !cancelled;
+                if (started) {
+                    engine.sendCommand(engine.goCommand(query));
+                    searching = true;
+                }
+            }
+
+            BestMoveResult result = started ? engine.readSearch(null) : null;
+
+            boolean complete;
+            synchronized (lock) {
+                current = null;
+                searching = false;
+                complete = !cancelled;
+            }
+
+            if (complete)
+                cache.put(key, result);
+            else
+                metrics.speculationCancelled();
+        } catch (RuntimeException e) {
+            log.debug("Speculative search on Stockfish engine " + engine.id + " failed", e);
+        } finally {
+            synchronized (lock) {
+                current = null;
+                searching = false;
+            }
+            client.release(engine);
+        }
+    }
+
+    private static Query predict(Query template, String fen) {
+        return new Query.Builder(QueryType.Best_Move, fen).setDifficulty(template.getDifficulty()).setDepth(template.getDepth())
+                .setMovetime(template.getMovetime()).setNodes(template.getNodes()).setProfile(template.getProfile())
+                .setGame(template.getGame()).setHashPolicy(template.getHashPolicy()).build();
+    }
+
+    private static boolean isCacheable(Query query) {
+        return query.getType() == QueryType.Best_Move && !query.isTimed();
+    }
+
+    private static String key(Query query) {
+        String[] fields = query.getFen().trim().split("\\s+");
+        StringBuilder key = new StringBuilder();
+        for (int i = 0; i < Math.min(5, fields.length); i++)
+            key.append(fields[i]).append(' ');
+
+        return key.append(query.getDifficulty()).append('|').append(query.getDepth()).append('|')
+                .append(query.getMovetime()).append('|').append(query.getNodes()).append('|').append(query.getProfile()).toString();
+    }
+}
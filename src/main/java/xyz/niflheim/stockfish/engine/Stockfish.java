@@ -14,18 +14,70 @@
  */
 package xyz.niflheim.stockfish.engine;
 
+import xyz.niflheim.stockfish.chess.Move;
+import xyz.niflheim.stockfish.chess.Position;
 import xyz.niflheim.stockfish.engine.enums.Option;
 import xyz.niflheim.stockfish.engine.enums.Query;
 import xyz.niflheim.stockfish.engine.enums.Variant;
+import xyz.niflheim.stockfish.exceptions.StockfishEngineException;
 import xyz.niflheim.stockfish.exceptions.StockfishInitException;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 class Stockfish extends UCIEngine {
 
     Stockfish(String path, Variant variant, Option... options) throws StockfishInitException {
-        super(path, variant, options);
+        this(0, path, variant, null, values(options));
+    }
+
+    private final long nodestime;
+    long nodesSearched;
+    String profile, game;
+    boolean skillChanged;
+    boolean cold = true;
+    BestMoveResult lastSearch;
+    long lastCheckers;
+
+    Stockfish(int id, String path, Variant variant, UciListener listener, Map<Option, String> options) throws StockfishInitException {
+        super(id, path, variant, listener, options);
+        nodestime = nodestime(options);
+    }
+
+    Stockfish(int id, String binary, UciListener listener, Map<Option, String> options) throws StockfishInitException {
+        super(id, binary, listener, options);
+        nodestime = nodestime(options);
+    }
+
+    Stockfish(int id, InetSocketAddress remote, UciListener listener, Map<Option, String> options) throws StockfishInitException {
+        super(id, remote, listener, options);
+        nodestime = nodestime(options);
+    }
+
+    private static long nodestime(Map<Option, String> options) {
+        String npmsec = options.get(Option.Nodestime);
+        return npmsec != null ? Long.parseLong(npmsec) : 0;
+    }
+
+    String execute(Query query) {
+        switch (query.getType()) {
+            case Best_Move:
+                return getBestMove(query);
+            case Make_Move:
+                return makeMove(query);
+            case Legal_Moves:
+                return getLegalMoves(query);
+            case Checkers:
+                return getCheckers(query);
+            case Perft:
+                return perft(query);
+            default:
+                return null;
+        }
     }
 
     String makeMove(Query query) {
@@ -41,54 +93,262 @@ class Stockfish extends UCIEngine {
         waitForReady();
         sendCommand("d");
 
-        return readLine("Checkers: ").substring(10);
+        String checkers = readLine("Checkers: ").substring(10);
+        lastCheckers = checkers(checkers);
+        return checkers;
+    }
+
+    long checkers(Query query) {
+        getCheckers(query);
+        return lastCheckers;
+    }
+
+    /**
+     * @param output result of a {@code Checkers} query, the squares of the checking pieces
+     * @return bitboard of the checking pieces, bit 0 for a1 up to bit 63 for h8
+     */
+    static long checkers(String output) {
+        long checkers = 0;
+        for (String square : output.trim().split("\\s+"))
+            if (!square.isEmpty())
+                checkers |= 1L << Position.square(square);
+
+        return checkers;
     }
 
     String getBestMove(Query query) {
+        return analyse(query, null).getBestMove();
+    }
+
+    BestMoveResult analyse(Query query, Consumer<BestMoveResult> progress) {
+        startSearch(query, false);
+        return readSearch(progress);
+    }
+
+    void go(Query query) {
+        startSearch(query, false);
+    }
+
+    void ponder(Query query) {
+        startSearch(query, true);
+    }
+
+    BestMoveResult ponderHit() {
+        sendCommand("ponderhit");
+        return readSearch(null);
+    }
+
+    void stopSearch() {
+        sendCommand("stop");
+        readSearch(null);
+    }
+
+    String goCommand(Query query) {
+        StringBuilder command = new StringBuilder("go ");
+
+        if (query.getDepth() >= 0)
+            command.append("depth ").append(query.getDepth()).append(" ");
+
+        long nodes = query.getNodes(), movetime = query.getMovetime();
+        if (nodestime > 0 && movetime >= 0) {
+            nodes = nodes >= 0 ? Math.min(nodes, movetime * nodestime) : movetime * nodestime;
+            movetime = -1;
+        }
+
+        if (nodes >= 0)
+            command.append("nodes ").append(nodes).append(" ");
+
+        if (movetime >= 0)
+            command.append("movetime ").append(movetime).append(" ");
+
+        if (query.getWhiteTime() >= 0)
+            command.append("wtime ").append(query.getWhiteTime()).append(" ");
+
+        if (query.getBlackTime() >= 0)
+            command.append("btime ").append(query.getBlackTime()).append(" ");
+
+        if (query.getWhiteIncrement() >= 0)
+            command.append("winc ").append(query.getWhiteIncrement()).append(" ");
+
+        if (query.getBlackIncrement() >= 0)
+            command.append("binc ").append(query.getBlackIncrement()).append(" ");
+
+        if (query.getMovesToGo() > 0)
+            command.append("movestogo ").append(query.getMovesToGo()).append(" ");
+
+        return command.toString();
+    }
+
+    private void startSearch(Query query, boolean ponder) {
+        setPosition(query);
+        sendCommand(ponder ? goCommand(query).replaceFirst("go ", "go ponder ") : goCommand(query));
+    }
+
+    /**
+     * Send everything a search needs except the {@code go} command, waiting until the engine is ready for it.
+     *
+     * @param query query to search next
+     */
+    void setPosition(Query query) {
+        cold = false;
         if (query.getDifficulty() >= 0) {
             waitForReady();
             sendCommand("setoption name Skill Level value " + query.getDifficulty());
+            skillChanged = true;
         }
 
         waitForReady();
         sendCommand("position fen " + query.getFen());
 
-        StringBuilder command = new StringBuilder("go ");
+        waitForReady();
+    }
 
-        if (query.getDepth() >= 0)
-            command.append("depth ").append(query.getDepth()).append(" ");
+    BestMoveResult readSearch(Consumer<BestMoveResult> progress) {
+        Evaluation evaluation = Evaluation.centipawns(0);
+        int depth = 0;
+        long nodes = 0, time = 0;
+        MoveList pv = MoveList.of();
 
-        if (query.getMovetime() >= 0)
-            command.append("movetime ").append(query.getMovetime());
+        try {
+            String line;
+            while ((line = nextLine()) != null) {
+                if (line.startsWith("bestmove")) {
+                    String[] tokens = line.split("\\s+");
+                    int ponder = tokens.length > 3 && tokens[2].equals("ponder") ? Move.parse(tokens[3]) : Move.NONE;
+                    nodesSearched += nodes;
+                    lastSearch = new BestMoveResult(Move.parse(tokens[1]), ponder, evaluation, depth, nodes, time, pv);
+                    return lastSearch;
+                }
 
-        waitForReady();
-        sendCommand(command.toString());
+                if (!line.startsWith("info ") || !line.contains(" score ") || line.contains(" multipv ") && !line.contains(" multipv 1 "))
+                    continue;
+
+                String[] tokens = line.split("\\s+");
+                for (int i = 1; i < tokens.length - 1; i++) {
+                    switch (tokens[i]) {
+                        case "depth":
+                            depth = Integer.parseInt(tokens[++i]);
+                            break;
+                        case "nodes":
+                            nodes = Long.parseLong(tokens[++i]);
+                            break;
+                        case "time":
+                            time = Long.parseLong(tokens[++i]);
+                            break;
+                        case "score":
+                            int value = Integer.parseInt(tokens[i + 2]);
+                            evaluation = tokens[i + 1].equals("mate") ? Evaluation.mate(value) : Evaluation.centipawns(value);
+                            i += 2;
+                            break;
+                        case "pv":
+                            pv = MoveList.parse(tokens, i + 1, tokens.length);
+                            i = tokens.length;
+                            break;
+                        default:
+                            break;
+                    }
+                }
 
-        return readLine("bestmove").substring(9).split("\\s+")[0];
+                if (progress != null && !pv.isEmpty())
+                    progress.accept(new BestMoveResult(pv.get(0), Move.NONE, evaluation, depth, nodes, time, pv));
+            }
+        } catch (IOException e) {
+            throw new StockfishEngineException(e);
+        } catch (RuntimeException e) {
+            throw new StockfishEngineException("Can not parse search output", e);
+        }
+
+        throw new StockfishEngineException("Can not find expected line: bestmove");
+    }
+
+    void newGame() {
+        waitForReady();
+        sendCommand("ucinewgame");
+        cold = true;
     }
 
     String getLegalMoves(Query query) {
+        StringBuilder legal = new StringBuilder();
+        MoveList moves = legalMoves(query);
+        for (int i = 0; i < moves.size(); i++)
+            legal.append(moves.getUci(i)).append(" ");
+
+        return legal.toString();
+    }
+
+    MoveList legalMoves(Query query) {
         waitForReady();
         sendCommand("position fen " + query.getFen());
 
         waitForReady();
         sendCommand("go perft 1");
 
-        StringBuilder legal = new StringBuilder();
         List<String> response = readResponse("Nodes");
+        int[] moves = new int[response.size()];
+        int count = 0;
+        for (String line : response) {
+            int colon = line.indexOf(':');
+            if (colon > 0 && !line.contains("Nodes"))
+                moves[count++] = Move.parse(line.substring(0, colon));
+        }
 
-        for (String line : response)
-            if (!line.isEmpty() && !line.contains("Nodes") && line.contains(":"))
-                legal.append(line.split(":")[0]).append(" ");
+        return MoveList.wrap(Arrays.copyOf(moves, count));
+    }
 
-        return legal.toString();
+    String perft(Query query) {
+        waitForReady();
+        sendCommand("position fen " + query.getFen() + (query.getMove() != null ? " moves " + query.getMove() : ""));
+
+        long started = System.nanoTime();
+        waitForReady();
+        sendCommand("go perft " + query.getDepth());
+
+        StringBuilder divide = new StringBuilder();
+        long nodes = 0;
+        for (String line : readResponse("Nodes searched")) {
+            if (line.startsWith("Nodes searched"))
+                nodes = perftNodes(line);
+            else if (line.contains(":"))
+                divide.append(line).append("\n");
+        }
+
+        return perftOutput(divide, nodes, System.nanoTime() - started);
+    }
+
+    static String perftOutput(CharSequence divide, long nodes, long nanos) {
+        return divide + "\nNodes searched: " + nodes + "\nNodes/second: " + (nanos > 0 ? (long) (nodes * 1e9 / nanos) : 0) + "\n";
+    }
+
+    static long perftNodes(String output) {
+        int start = output.indexOf("Nodes searched: ") + 16;
+        int end = start;
+        while (end < output.length() && Character.isDigit(output.charAt(end)))
+            end++;
+
+        return Long.parseLong(output.substring(start, end));
+    }
+
+    void clearHash() {
+        waitForReady();
+        sendCommand("setoption name " + Option.Clear_Hash.getName());
+        cold = true;
+    }
+
+    void setHash(long megabytes) {
+        setOption(Option.Hash.getName(), String.valueOf(megabytes));
+        cold = true;
+    }
+
+    void setOption(String name, String value) {
+        waitForReady();
+        sendCommand("setoption name " + name + " value " + value);
     }
 
     void close() throws IOException {
         try {
             sendCommand("quit");
         } finally {
-            process.destroy();
+            destroy();
             input.close();
             output.close();
         }
@@ -16,23 +16,44 @@ package xyz.niflheim.stockfish.engine;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import xyz.niflheim.stockfish.book.PolyglotBook;
+import xyz.niflheim.stockfish.chess.Move;
+import xyz.niflheim.stockfish.chess.Position;
+import xyz.niflheim.stockfish.engine.enums.HashPolicy;
 import xyz.niflheim.stockfish.engine.enums.Option;
 import xyz.niflheim.stockfish.engine.enums.Query;
+import xyz.niflheim.stockfish.engine.enums.QueryType;
 import xyz.niflheim.stockfish.engine.enums.Variant;
 import xyz.niflheim.stockfish.exceptions.StockfishEngineException;
 import xyz.niflheim.stockfish.exceptions.StockfishInitException;
+import xyz.niflheim.stockfish.metrics.MetricsExporter;
+import xyz.niflheim.stockfish.metrics.StockfishMetrics;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
 import java.io.IOException;
-import java.util.HashSet;
-import java.util.Queue;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * The StockfishClient for managing Stockfish processes,
@@ -47,27 +68,105 @@ import java.util.function.Consumer;
 public class StockfishClient {
 
     private static final Log log = LogFactory.getLog(StockfishClient.class);
+    private static final AtomicInteger clients = new AtomicInteger();
+    private static final int RECONNECT_ATTEMPTS = 3;
+    private static final long RECONNECT_BACKOFF = 200;
+    private static final long MEGABYTE = 1 << 20;
+    private static final long DEFAULT_HASH = 16;
 
-    private ExecutorService executor, callback;
-    private Queue<Stockfish> engines;
-
+    private ThreadPoolExecutor executor;
+    private ExecutorService callback;
+    private ScheduledExecutorService reporter;
+    private final EnginePool engines = new EnginePool();
+    private final StockfishMetrics metrics = new StockfishMetrics();
+    private final AtomicInteger nextId = new AtomicInteger();
+    private final MetricsExporter exporter;
+    private final String path;
+    private final Variant variant;
+    private volatile String binary;
+    private volatile EngineInfo engineInfo;
+    private CompletableFuture<Void> rollout = CompletableFuture.completedFuture(null);
+    private volatile boolean closing;
+    private volatile Map<Option, String> options;
+    private final Map<String, Profile> profiles;
+    private final HashPolicy hashPolicy;
+    private final long memoryBudget;
+    private final long memoryLimit;
+    private volatile long hash;
+    private final UciListener listener;
+    private final UciTrafficRecorder recorder;
+    private final long slowQueryNanos;
+    private final Speculator speculator;
+    private final SingleFlight<Result> singleFlight;
+    private final ResultStore store;
+    private final PolyglotBook book;
+    private final boolean bookWeighted;
+    private ObjectName jmxName;
 
     /**
      * Private constructor for {@code StockfishClient} which is used by Builder to create a new instance
      *
-     * @param path      path to folder with Stockfish core (default assets/engine)
-     * @param instances number of Stockfish core that will be launched to process requests asynchronously
-     * @param variant   variant of Stockfish core, see {@link xyz.niflheim.stockfish.engine.enums.Variant} enum
-     * @param options   Stockfish launch options, see {@link xyz.niflheim.stockfish.engine.enums.Option} enum
+     * @param builder builder holding path to Stockfish core, number of instances, variant, options and metrics setup
      * @throws StockfishInitException throws if Stockfish process can not be initialized, starter or bind
      */
-    private StockfishClient(String path, int instances, Variant variant, Set<Option> options) throws StockfishInitException {
-        executor = Executors.newFixedThreadPool(instances);
+    private StockfishClient(Builder builder) throws StockfishInitException {
+        options = Collections.unmodifiableMap(new EnumMap<>(builder.options));
+        profiles = new LinkedHashMap<>(builder.profiles);
+        hashPolicy = builder.hashPolicy;
+        memoryBudget = builder.memoryBudget;
+        memoryLimit = builder.memoryLimit > 0 ? builder.memoryLimit * MEGABYTE : MemoryLimit.detect();
+        if (memoryBudget > 0) {
+            if (builder.options.containsKey(Option.Hash))
+                throw new IllegalArgumentException("Option Hash can not be set together with a memory budget");
+            hash = hashPerEngine(builder.instances);
+            checkMemory(memoryBudget);
+        } else {
+            checkMemory(builder.instances * configuredHash(options));
+        }
+
+        int total = builder.instances + builder.remotes.size();
+        executor = new ThreadPoolExecutor(total, total, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
         callback = Executors.newSingleThreadExecutor();
-        engines = new ArrayBlockingQueue<>(instances);
+        path = builder.path;
+        variant = builder.variant;
+        binary = builder.binary;
+        exporter = builder.exporter;
+        recorder = builder.recorder;
+        slowQueryNanos = builder.slowQueryNanos;
+        listener = UciListener.compose(builder.listener, recorder);
+        speculator = builder.speculation ? new Speculator(this, engines, metrics) : null;
+        singleFlight = builder.coalescing ? new SingleFlight<>() : null;
+        store = builder.storeCapacity > 0 ? new ResultStore(builder.storeCapacity) : null;
+        book = builder.book;
+        bookWeighted = builder.bookWeighted;
+
+        Stockfish first;
+        try {
+            first = builder.instances > 0 ? newEngine(nextId.getAndIncrement()) : newEngine(nextId.getAndIncrement(), builder.remotes.get(0));
+            engineInfo = checkEngine(first);
+        } catch (StockfishInitException e) {
+            executor.shutdownNow();
+            callback.shutdownNow();
+            throw e;
+        }
+        engines.add(first);
+
+        for (int i = 1; i < builder.instances; i++)
+            engines.add(newEngine(nextId.getAndIncrement()));
+        for (int i = builder.instances > 0 ? 0 : 1; i < builder.remotes.size(); i++)
+            engines.add(newEngine(nextId.getAndIncrement(), builder.remotes.get(i)));
 
-        for (int i = 0; i < instances; i++)
-            engines.add(new Stockfish(path, variant, options.toArray(new Option[0])));
+        if (exporter != null) {
+            reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "stockfish-metrics");
+                thread.setDaemon(true);
+                return thread;
+            });
+            reporter.scheduleAtFixedRate(this::exportMetrics, builder.exportPeriod, builder.exportPeriod, TimeUnit.MILLISECONDS);
+        }
+
+        if (builder.jmx)
+            registerMBean(builder.jmxName != null ? builder.jmxName : "client-" + clients.incrementAndGet());
     }
 
     /**
@@ -90,33 +189,493 @@ public class StockfishClient {
      * @see xyz.niflheim.stockfish.engine.enums.Query
      */
     public void submit(Query query, Consumer<String> result) {
-        executor.submit(() -> {
-            Stockfish engine = engines.remove();
-            String output;
+        if (isSplit(query)) {
+            perft(query).thenAccept(output -> {
+                if (result != null)
+                    callback.submit(() -> result.accept(output));
+            });
+            return;
+        }
 
-            switch (query.getType()) {
-                case Best_Move:
-                    output = engine.getBestMove(query);
-                    break;
-                case Make_Move:
-                    output = engine.makeMove(query);
-                    break;
-                case Legal_Moves:
-                    output = engine.getLegalMoves(query);
-                    break;
-                case Checkers:
-                    output = engine.getCheckers(query);
-                    break;
-                default:
-                    output = null;
-                    break;
+        dispatch(query, (output, error) -> {
+            if (error == null && result != null)
+                callback.submit(() -> result.accept(output.output));
+        });
+    }
+
+    /**
+     * Method to execute UCI command as Query in Stockfish, returning the result as a future.
+     * <p>
+     * Unlike {@link #submit(Query, Consumer)} failures are reported through the future. A {@code Perft} query
+     * deeper than 1 without a move is split into one query per root move, run in parallel across the pool. Dependent
+     * stages run on the worker thread that completed the query unless an async variant is used.
+     *
+     * @param query query to execute in Stockfish
+     * @return future completed with the result of the query
+     * @see xyz.niflheim.stockfish.engine.enums.Query
+     */
+    public CompletableFuture<String> submitAsync(Query query) {
+        return isSplit(query) ? perft(query) : execute(query).thenApply(result -> result.output);
+    }
+
+    /**
+     * Execute a {@code Best_Move} query, returning the search with its evaluation instead of only the move.
+     * <p>
+     * The query takes the same path as {@link #submitAsync(Query)}, so book moves, speculative searches, stored
+     * searches and coalesced queries are served here as well. A book move is reported at depth 0 with an even
+     * evaluation and the move as its only principal variation.
+     *
+     * @param query {@code Best_Move} query
+     * @return future completed with the search of the position
+     * @throws IllegalArgumentException if the query is of another type
+     */
+    public CompletableFuture<BestMoveResult> bestMoveAsync(Query query) throws IllegalArgumentException {
+        checkType(query, QueryType.Best_Move);
+        return execute(query).thenApply(result -> result.search);
+    }
+
+    /**
+     * Execute a {@code Legal_Moves} query, returning the moves packed instead of as a string.
+     *
+     * @param query {@code Legal_Moves} query
+     * @return future completed with the legal moves of the position
+     * @throws IllegalArgumentException if the query is of another type
+     */
+    public CompletableFuture<MoveList> legalMovesAsync(Query query) throws IllegalArgumentException {
+        checkType(query, QueryType.Legal_Moves);
+        return execute(query).thenApply(result -> MoveList.parse(result.output));
+    }
+
+    /**
+     * Execute a {@code Checkers} query, returning the squares of the checking pieces as a bitboard.
+     *
+     * @param query {@code Checkers} query
+     * @return future completed with the bitboard of the checking pieces, bit 0 for a1 up to bit 63 for h8
+     * @throws IllegalArgumentException if the query is of another type
+     */
+    public CompletableFuture<Long> checkersAsync(Query query) throws IllegalArgumentException {
+        checkType(query, QueryType.Checkers);
+        return execute(query).thenApply(result -> result.checkers);
+    }
+
+    private static void checkType(Query query, QueryType type) {
+        if (query.getType() != type)
+            throw new IllegalArgumentException("Expected a " + type + " query but got " + query.getType());
+    }
+
+    private CompletableFuture<Result> execute(Query query) {
+        CompletableFuture<Result> future = new CompletableFuture<>();
+        dispatch(query, (output, error) -> {
+            if (error == null)
+                future.complete(output);
+            else
+                future.completeExceptionally(error);
+        });
+        return future;
+    }
+
+    /**
+     * Execute many queries across all engines and stream the results in input order.
+     * At most twice as many queries as there are engines are in flight at any time.
+     *
+     * @param queries queries to execute, consumed lazily
+     * @return results in the order of {@code queries}
+     * @see #analyzeAll(Iterable, boolean, int)
+     */
+    public Stream<QueryResult> analyzeAll(Iterable<Query> queries) {
+        return analyzeAll(queries, true);
+    }
+
+    /**
+     * Execute many queries across all engines and stream their results.
+     * At most twice as many queries as there are engines are in flight at any time.
+     *
+     * @param queries queries to execute, consumed lazily
+     * @param ordered {@code true} to stream results in input order, {@code false} in completion order
+     * @return results of the queries
+     * @see #analyzeAll(Iterable, boolean, int)
+     */
+    public Stream<QueryResult> analyzeAll(Iterable<Query> queries, boolean ordered) {
+        return analyzeAll(queries, ordered, 2 * Math.max(1, engines.size()));
+    }
+
+    /**
+     * Execute many queries across all engines and stream their results.
+     * <p>
+     * Queries are pulled from {@code queries} only as results are consumed, so no more than {@code maxInFlight}
+     * queries and results are held in memory no matter how large the input is. A window larger than the number
+     * of engines keeps every engine busy while the consumer processes results. Failed queries are streamed as
+     * results carrying the error.
+     *
+     * @param queries     queries to execute, consumed lazily
+     * @param ordered     {@code true} to stream results in input order, {@code false} in completion order
+     * @param maxInFlight maximum number of queries submitted but not yet streamed
+     * @return results of the queries
+     */
+    public Stream<QueryResult> analyzeAll(Iterable<Query> queries, boolean ordered, int maxInFlight) {
+        if (maxInFlight < 1)
+            throw new IllegalArgumentException("At least one query must be in flight: " + maxInFlight);
+
+        BatchIterator results = new BatchIterator(this, queries.iterator(), ordered, maxInFlight);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(results, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Lease one engine exclusively, waiting until an engine is idle.
+     * <p>
+     * Use sessions to analyse related positions one after another on the same engine, for example the
+     * moves of one game. The engine is missing from the pool until the session is closed, so open at
+     * most as many sessions as there are engines minus those needed for other queries.
+     *
+     * @return open session, to be closed by the caller
+     * @throws InterruptedException if interrupted while waiting for an engine
+     */
+    public StockfishSession openSession() throws InterruptedException {
+        return openSession(null);
+    }
+
+    /**
+     * Lease one engine exclusively, set to a profile, waiting until an engine is idle. An idle engine already
+     * set to the profile is preferred.
+     *
+     * @param profile name of a profile registered with {@link Builder#addProfile(Profile)}, or {@code null} for
+     *                the options of the client
+     * @return open session, to be closed by the caller
+     * @throws InterruptedException     if interrupted while waiting for an engine
+     * @throws IllegalArgumentException if the profile is unknown
+     * @see #openSession()
+     */
+    public StockfishSession openSession(String profile) throws InterruptedException {
+        checkProfile(profile);
+        Stockfish engine = engines.acquire(-1, profile, null);
+        try {
+            useProfile(engine, profile);
+            engine.game = null;
+        } catch (RuntimeException e) {
+            release(engine);
+            throw e;
+        }
+        return new StockfishSession(this, engine);
+    }
+
+    /**
+     * @return live metrics of this client, such as queue depth, queue wait, engine time and query latencies
+     * @see StockfishMetrics
+     */
+    public StockfishMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Estimate how many node-budgeted queries the pool completes per second, based on the nodes per
+     * second measured so far. Unlike movetime, a nodes budget costs the same no matter how busy the machine is.
+     *
+     * @param nodes nodes budget per query, see {@link Query.Builder#setNodes(long)}
+     * @return queries per second with every engine busy, 0 while no search has completed
+     */
+    public double estimateCapacity(long nodes) {
+        if (nodes <= 0)
+            throw new IllegalArgumentException("Nodes budget must be positive: " + nodes);
+
+        return engines.size() * metrics.getNodesPerSecond() / nodes;
+    }
+
+    /**
+     * @return number of Stockfish engines in the pool
+     */
+    public int getInstances() {
+        return engines.size();
+    }
+
+    /**
+     * @return number of Stockfish engines not running a query
+     */
+    public int getIdleEngines() {
+        return engines.idleCount();
+    }
+
+    /**
+     * @return number of queries waiting for an engine
+     */
+    public int getQueueLength() {
+        return metrics.getQueueDepth();
+    }
+
+    /**
+     * @return ids of the Stockfish engines in the pool
+     */
+    public int[] getEngineIds() {
+        return engines.snapshot().stream().mapToInt(engine -> engine.id).toArray();
+    }
+
+    /**
+     * @return name and options the engine binary reported when the client started
+     */
+    public EngineInfo getEngineInfo() {
+        return engineInfo;
+    }
+
+    /**
+     * @return options every Stockfish engine of this client was started with
+     */
+    public Option[] getOptions() {
+        return options.keySet().toArray(new Option[0]);
+    }
+
+    /**
+     * @return values of the options every Stockfish engine of this client was started with, as sent in
+     * {@code setoption}, on/off options as true or false
+     */
+    public Map<Option, String> getOptionValues() {
+        return options;
+    }
+
+    /**
+     * @return profiles queries can select, by name
+     */
+    public Map<String, Profile> getProfiles() {
+        return Collections.unmodifiableMap(profiles);
+    }
+
+    /**
+     * @return hash table size in MB of each local engine, the memory budget divided among them if one is set,
+     * otherwise the configured {@link Option#Hash}
+     */
+    public long getHash() {
+        return memoryBudget > 0 ? hash : configuredHash(options);
+    }
+
+    /**
+     * Grow or shrink the engine pool. New engines are started immediately as local processes, surplus engines,
+     * local or remote, are stopped as soon as they finish their current query.
+     * <p>
+     * With a memory budget the hash of the local engines follows the pool size: before growing, the running engines
+     * shrink their hash to make room for the new ones, after shrinking the remaining engines get the freed memory.
+     * Busy engines resize their hash, which also clears it, as soon as they finish their current query.
+     *
+     * @param instances new number of Stockfish engines, at least 1
+     * @throws StockfishInitException if a new Stockfish process can not be started or the hash of the larger pool
+     *                                does not fit into the memory budget or limit
+     */
+    public synchronized void resize(int instances) throws StockfishInitException {
+        if (instances < 1)
+            throw new IllegalArgumentException("Pool needs at least one Stockfish instance: " + instances);
+
+        int current = engines.size();
+        if (instances > current) {
+            long locals = localEngines() + instances - current;
+            if (memoryBudget > 0)
+                applyHash(hashPerEngine(locals));
+            else
+                checkMemory(locals * configuredHash(options));
+
+            executor.setMaximumPoolSize(instances);
+            executor.setCorePoolSize(instances);
+            for (int i = current; i < instances; i++)
+                engines.add(newEngine(nextId.getAndIncrement()));
+        } else if (instances < current) {
+            engines.shrink(current - instances);
+            executor.setCorePoolSize(instances);
+            executor.setMaximumPoolSize(instances);
+            if (memoryBudget > 0)
+                applyHash(hashPerEngine(localEngines()));
+        }
+
+        log.info("Resized Stockfish pool to " + instances + " instances");
+    }
+
+    /**
+     * Replace the engines one at a time with engines of a new binary or with new options, without dropping queries.
+     * <p>
+     * Each engine is taken out of the pool as soon as it finishes its current query or session, its replacement
+     * is started, and the replacement takes its place under the same id before the next engine is replaced, so the
+     * pool keeps at least N-1 of its N engines serving during the rollout. Remote engines are reconnected, their
+     * host starts a fresh process with the new options but keeps its own binary.
+     * <p>
+     * The new configuration is checked on the replacement of the first local engine before any engine is touched,
+     * in a pool of remote engines only against the options reported when the client started. If a later
+     * replacement fails to start, the rollout stops and the remaining engines keep their old configuration.
+     *
+     * @param binary  path to the executable of the new engine, or {@code null} to keep the current one
+     * @param options options to set, replacing the values of options already set, the others are kept
+     * @return future completed once every engine was replaced
+     * @throws StockfishInitException if the new engine can not be started, rejects an option or the new
+     *                                {@link Option#Hash} of all local engines exceeds the memory limit
+     * @throws IllegalStateException  if a reconfiguration is still running
+     */
+    public CompletableFuture<Void> reconfigure(String binary, Option... options) throws StockfishInitException {
+        return reconfigure(binary, UCIEngine.values(options));
+    }
+
+    /**
+     * Replace the engines one at a time with engines of a new binary or with new options, without dropping queries,
+     * taking the options with their values instead of from the shared {@link Option} constants.
+     *
+     * @param binary  path to the executable of the new engine, or {@code null} to keep the current one
+     * @param options options to set with their values as sent in {@code setoption}, replacing the values of
+     *                options already set, the others are kept
+     * @return future completed once every engine was replaced
+     * @throws StockfishInitException if the new engine can not be started, rejects an option or the new
+     *                                {@link Option#Hash} of all local engines exceeds the memory limit
+     * @throws IllegalStateException  if a reconfiguration is still running
+     * @see #reconfigure(String, Option...)
+     */
+    public synchronized CompletableFuture<Void> reconfigure(String binary, Map<Option, String> options) throws StockfishInitException {
+        if (!rollout.isDone())
+            throw new IllegalStateException("Stockfish engines are already being reconfigured");
+
+        Map<Option, String> merged = new EnumMap<>(Option.class);
+        merged.putAll(this.options);
+        merged.putAll(options);
+        Map<Option, String> configured = Collections.unmodifiableMap(merged);
+        if (memoryBudget > 0 && merged.containsKey(Option.Hash))
+            throw new IllegalArgumentException("Option Hash can not be set together with a memory budget");
+        if (memoryBudget == 0)
+            checkMemory(localEngines() * configuredHash(configured));
+
+        List<Stockfish> current = engines.snapshot();
+        Stockfish local = current.stream().filter(engine -> engine.remote == null).findFirst().orElse(null);
+        Stockfish prepared = null;
+        EngineInfo info = engineInfo;
+        if (local != null) {
+            current.remove(local);
+            current.add(0, local);
+            prepared = new Stockfish(local.id, binary != null ? binary : engineCommand(), listener, configured);
+            info = checkEngine(prepared);
+            if (memoryBudget > 0)
+                prepared.setHash(hash);
+        } else {
+            try {
+                configured.forEach(info::validate);
+            } catch (IllegalArgumentException e) {
+                throw new StockfishInitException("Stockfish engine rejected the configuration: " + e.getMessage(), e);
             }
+        }
 
-            callback.submit(() -> result.accept(output));
-            engines.add(engine);
+        if (binary != null)
+            this.binary = binary;
+        this.options = configured;
+        engineInfo = info;
+        if (speculator != null)
+            speculator.invalidate();
+        log.info("Reconfiguring " + current.size() + " Stockfish engines running " + engineInfo.getName());
+
+        CompletableFuture<Void> done = CompletableFuture.completedFuture(null);
+        for (Stockfish engine : current) {
+            Stockfish replacement = engine == local ? prepared : null;
+            done = done.thenCompose(replaced -> replace(engine, replacement));
+        }
+
+        rollout = done.whenComplete((replaced, error) -> {
+            // searches of the replaced engines may have completed during the rollout
+            if (speculator != null)
+                speculator.invalidate();
+            if (error == null)
+                log.info("Reconfigured all Stockfish engines");
+            else
+                log.error("Reconfiguration of Stockfish engines stopped", error);
         });
+        return rollout;
     }
 
+    private CompletableFuture<Void> replace(Stockfish engine, Stockfish prepared) {
+        CompletableFuture<Void> replaced = new CompletableFuture<>();
+        boolean scheduled = engines.maintain(engine, new EnginePool.Maintenance() {
+            @Override
+            public Stockfish apply(Stockfish old) throws StockfishInitException {
+                if (closing) {
+                    if (prepared != null)
+                        shutdown(prepared);
+                    replaced.completeExceptionally(new StockfishEngineException("Client closed during reconfiguration"));
+                    return old;
+                }
+
+                if (old.remote != null) {
+                    try {
+                        Stockfish next = restart(old);
+                        replaced.complete(null);
+                        return next;
+                    } catch (StockfishInitException e) {
+                        replaced.completeExceptionally(e);
+                        throw e;
+                    }
+                }
+
+                Stockfish next = prepared;
+                try {
+                    if (next == null)
+                        next = newEngine(old.id);
+                } catch (StockfishInitException e) {
+                    replaced.completeExceptionally(e);
+                    return old;
+                }
+
+                shutdown(old);
+                replaced.complete(null);
+                return next;
+            }
+
+            @Override
+            public void skipped() {
+                if (prepared != null)
+                    shutdown(prepared);
+                replaced.complete(null);
+            }
+        });
+
+        if (!scheduled) {
+            if (prepared != null)
+                shutdown(prepared);
+            replaced.complete(null);
+        }
+        return replaced;
+    }
+
+    /**
+     * Wait until every queued query has been processed and all engines are idle.
+     * New queries may still be submitted while waiting.
+     *
+     * @param timeout maximum time to wait
+     * @param unit    unit of {@code timeout}
+     * @return {@code true} if the client was drained, {@code false} if the timeout elapsed first
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean drain(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (metrics.getQueueDepth() > 0) {
+            if (System.nanoTime() >= deadline)
+                return false;
+            Thread.sleep(10);
+        }
+
+        return engines.awaitIdle(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Restart one Stockfish process. A busy engine is restarted as soon as it finishes its current query.
+     *
+     * @param id engine id, see {@link #getEngineIds()}
+     * @return {@code false} if there is no engine with that id
+     */
+    public boolean restartEngine(int id) {
+        Stockfish engine = engines.find(id);
+        if (engine == null)
+            return false;
+
+        engines.maintain(engine, this::restart);
+        return true;
+    }
+
+    /**
+     * Clear the hash table of every Stockfish engine. Busy engines are cleared as soon as they finish their current query.
+     */
+    public void clearHash() {
+        for (Stockfish engine : engines.snapshot())
+            engines.maintain(engine, e -> {
+                e.clearHash();
+                return e;
+            });
+    }
 
     /**
      * This method close all Stockfish instances that were created, as well as close all
@@ -128,13 +687,24 @@ public class StockfishClient {
      * @throws StockfishEngineException when at least one of the processes could not be closed.
      */
     public void close() throws StockfishEngineException {
+        closing = true;
+
+        if (speculator != null)
+            speculator.close();
 
         awaitTerminationAfterShutdown(executor);
         awaitTerminationAfterShutdown(callback);
 
+        if (reporter != null) {
+            reporter.shutdownNow();
+            exportMetrics();
+        }
+
+        unregisterMBean();
+
         AtomicBoolean error = new AtomicBoolean(false);
         AtomicReference<Exception> ex = new AtomicReference<>();
-        engines.parallelStream().forEach(engine -> {
+        engines.snapshot().parallelStream().forEach(engine -> {
             try {
                 engine.close();
             } catch (IOException | StockfishEngineException e) {
@@ -148,6 +718,426 @@ public class StockfishClient {
         }
     }
 
+    private boolean isSplit(Query query) {
+        return query.getType() == QueryType.Perft && query.getMove() == null && query.getDepth() > 1;
+    }
+
+    private CompletableFuture<String> perft(Query query) {
+        long started = System.nanoTime();
+        return submitAsync(new Query(QueryType.Legal_Moves, query.getFen(), -1, -1, -1)).thenCompose(legal -> {
+            List<String> moves = legal.trim().isEmpty() ? Collections.emptyList() : Arrays.asList(legal.trim().split("\\s+"));
+            List<CompletableFuture<String>> parts = new ArrayList<>(moves.size());
+            for (String move : moves)
+                parts.add(submitAsync(new Query(QueryType.Perft, query.getFen(), move, -1, query.getDepth() - 1, -1)));
+
+            return CompletableFuture.allOf(parts.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+                StringBuilder divide = new StringBuilder();
+                long nodes = 0;
+                for (int i = 0; i < moves.size(); i++) {
+                    long count = Stockfish.perftNodes(parts.get(i).join());
+                    divide.append(moves.get(i)).append(": ").append(count).append("\n");
+                    nodes += count;
+                }
+                return Stockfish.perftOutput(divide, nodes, System.nanoTime() - started);
+            });
+        });
+    }
+
+    private void dispatch(Query query, BiConsumer<Result, Throwable> done) {
+        try {
+            checkProfile(query.getProfile());
+        } catch (IllegalArgumentException e) {
+            done.accept(null, e);
+            return;
+        }
+
+        if (book != null && query.getType() == QueryType.Best_Move) {
+            String move = bookMove(query);
+            if (move != null) {
+                metrics.bookHit();
+                int code = Move.parse(move);
+                done.accept(new Result(move, new BestMoveResult(code, Move.NONE, Evaluation.centipawns(0), 0, 0, 0, MoveList.of(code)), 0), null);
+                return;
+            }
+        }
+
+        if (speculator != null) {
+            BestMoveResult speculated = speculator.lookup(query);
+            if (speculated != null) {
+                speculator.served(query, speculated);
+                done.accept(new Result(speculated.getBestMove(), speculated, 0), null);
+                return;
+            }
+        }
+
+        if (store != null) {
+            BestMoveResult stored = store.lookup(query);
+            if (stored != null) {
+                metrics.storeHit();
+                done.accept(new Result(stored.getBestMove(), stored, 0), null);
+                return;
+            }
+        }
+
+        if (singleFlight != null) {
+            String key = SingleFlight.key(query);
+            if (singleFlight.join(key, done))
+                enqueue(query, (output, error) -> singleFlight.complete(key, output, error));
+            else
+                metrics.queryCoalesced();
+            return;
+        }
+
+        enqueue(query, done);
+    }
+
+    private String bookMove(Query query) {
+        Position position;
+        try {
+            position = Position.fromFen(query.getFen());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+
+        return bookWeighted ? book.getWeightedMove(position, ThreadLocalRandom.current()) : book.getBestMove(position);
+    }
+
+    private void enqueue(Query query, BiConsumer<Result, Throwable> done) {
+        long submitted = System.nanoTime();
+        metrics.querySubmitted();
+        if (speculator != null)
+            speculator.cancel();
+
+        executor.submit(() -> {
+            Stockfish engine;
+            try {
+                engine = engines.acquire(store != null ? store.engineFor(query) : -1, query.getProfile(), query.getGame());
+            } catch (InterruptedException e) {
+                metrics.queryDropped();
+                Thread.currentThread().interrupt();
+                done.accept(null, new StockfishEngineException("Interrupted while waiting for a Stockfish engine", e));
+                return;
+            }
+
+            long started = System.nanoTime();
+            metrics.queryStarted(started - submitted);
+
+            String output = null;
+            Throwable error = null;
+            BestMoveResult search = null;
+            long checkers = 0;
+            long nodes = engine.nodesSearched;
+            try {
+                prepare(engine, query);
+                output = engine.execute(query);
+                long finished = System.nanoTime();
+                metrics.nodesSearched(engine.nodesSearched - nodes);
+                if (query.getType() == QueryType.Best_Move)
+                    search = engine.lastSearch;
+                else if (query.getType() == QueryType.Checkers)
+                    checkers = engine.lastCheckers;
+                metrics.queryCompleted(query.getType(), engine.id, finished - started, finished - submitted);
+
+                if (recorder != null && finished - started > slowQueryNanos)
+                    log.warn("Slow " + query.getType() + " query took " + (finished - started) / 1_000_000 + " ms on Stockfish engine "
+                            + engine.id + ", UCI traffic:\n" + recorder.dump(engine.id, started));
+            } catch (RuntimeException e) {
+                error = e;
+                boolean crash = !engine.isAlive();
+                metrics.queryFailed(query.getType(), engine.id, System.nanoTime() - started, crash);
+                log.error((crash ? "Stockfish engine " + engine.id + " crashed" : "Query failed") + " while running " + query.getType()
+                        + (recorder != null ? ", UCI traffic:\n" + recorder.dump(engine.id, started) : ""), e);
+
+                if (crash)
+                    engines.maintain(engine, this::restart);
+            } finally {
+                engines.release(engine);
+            }
+
+            if (store != null && search != null)
+                store.put(query, search, engine.id);
+            if (speculator != null && error == null)
+                speculator.completed(query, search, output);
+
+            done.accept(error == null ? new Result(output, search, checkers) : null, error);
+        });
+    }
+
+    /**
+     * Output of a query together with its typed form, as it is passed from the engines to the callers.
+     */
+    private static final class Result {
+        final String output;
+        final BestMoveResult search;
+        final long checkers;
+
+        Result(String output, BestMoveResult search, long checkers) {
+            this.output = output;
+            this.search = search;
+            this.checkers = checkers;
+        }
+    }
+
+    /**
+     * Set an engine checked out of the pool to the profile of a query and, before a search unrelated to the
+     * previous one of the engine, apply the hash policy of the query.
+     *
+     * @param engine engine checked out of the pool
+     * @param query  query about to run on the engine
+     */
+    void prepare(Stockfish engine, Query query) {
+        useProfile(engine, query.getProfile());
+        if (query.getType() != QueryType.Best_Move)
+            return;
+
+        if (!engine.cold && (query.getGame() == null || !query.getGame().equals(engine.game))) {
+            switch (hashPolicy(query)) {
+                case NEW_GAME:
+                    engine.newGame();
+                    break;
+                case CLEAR:
+                    engine.clearHash();
+                    break;
+                default:
+                    break;
+            }
+        }
+        engine.game = query.getGame();
+    }
+
+    private HashPolicy hashPolicy(Query query) {
+        if (query.getHashPolicy() != null)
+            return query.getHashPolicy();
+
+        Profile profile = query.getProfile() != null ? profiles.get(query.getProfile()) : null;
+        return profile != null && profile.getHashPolicy() != null ? profile.getHashPolicy() : hashPolicy;
+    }
+
+    /**
+     * Set an engine checked out of the pool to a profile, resetting the options of its previous profile to those
+     * of the client or the defaults of the engine. A Skill Level left by a query with a difficulty is reset too.
+     *
+     * @param engine  engine checked out of the pool
+     * @param profile name of a registered profile, or {@code null} for the options of the client
+     */
+    void useProfile(Stockfish engine, String profile) {
+        boolean switching = !Objects.equals(engine.profile, profile);
+        if (!switching && !engine.skillChanged)
+            return;
+
+        Set<Option> reset = EnumSet.noneOf(Option.class);
+        if (switching && engine.profile != null)
+            reset.addAll(profiles.get(engine.profile).getOptions().keySet());
+        if (engine.skillChanged)
+            reset.add(Option.Skill_Level);
+
+        Map<Option, String> next = profile != null ? profiles.get(profile).getOptions() : Collections.emptyMap();
+        for (Option option : reset) {
+            String value = next.containsKey(option) ? next.get(option) : clientValue(option);
+            if (value != null)
+                engine.setOption(option.getName(), value);
+        }
+        if (switching)
+            next.forEach((option, value) -> {
+                if (!reset.contains(option))
+                    engine.setOption(option.getName(), value);
+            });
+
+        engine.skillChanged = false;
+        engine.profile = profile;
+        if (switching)
+            metrics.profileSwitched();
+    }
+
+    private String clientValue(Option option) {
+        String configured = options.get(option);
+        if (configured != null)
+            return configured;
+
+        UciOption declared = engineInfo != null ? engineInfo.getOption(option.getName()) : null;
+        return declared != null ? declared.getDefault() : null;
+    }
+
+    private void checkProfile(String profile) {
+        if (profile != null && !profiles.containsKey(profile))
+            throw new IllegalArgumentException("Unknown profile " + profile + ", known profiles are " + profiles.keySet());
+    }
+
+    void release(Stockfish engine) {
+        if (!engine.isAlive()) {
+            log.error("Stockfish engine " + engine.id + " died during a session");
+            engines.maintain(engine, this::restart);
+        }
+
+        engines.release(engine);
+    }
+
+    private Stockfish newEngine(int id) throws StockfishInitException {
+        Stockfish engine = binary != null ? new Stockfish(id, binary, listener, options) : new Stockfish(id, path, variant, listener, options);
+        if (memoryBudget > 0)
+            engine.setHash(hash);
+        return engine;
+    }
+
+    private String engineCommand() {
+        return binary != null ? binary : UCIEngine.getPath(variant, path);
+    }
+
+    private EngineInfo checkEngine(Stockfish engine) throws StockfishInitException {
+        EngineInfo info = engine.info;
+        try {
+            for (Profile profile : profiles.values())
+                profile.getOptions().forEach(info::validate);
+            if (memoryBudget > 0 && engine.remote == null)
+                checkHash(info, hash);
+            return info;
+        } catch (RuntimeException e) {
+            shutdown(engine);
+            throw new StockfishInitException("Stockfish engine rejected the configuration: " + e.getMessage(), e);
+        }
+    }
+
+    private Stockfish newEngine(int id, InetSocketAddress remote) throws StockfishInitException {
+        return new Stockfish(id, remote, listener, options);
+    }
+
+    private Stockfish restart(Stockfish engine) throws StockfishInitException {
+        try {
+            engine.close();
+        } catch (IOException | StockfishEngineException e) {
+            log.debug("Stockfish engine " + engine.id + " did not stop cleanly", e);
+        }
+
+        if (engine.remote != null)
+            return reconnect(engine);
+
+        log.info("Restarting Stockfish engine " + engine.id);
+        return newEngine(engine.id);
+    }
+
+    private Stockfish reconnect(Stockfish engine) throws StockfishInitException {
+        for (int attempt = 1; ; attempt++) {
+            log.info("Reconnecting Stockfish engine " + engine.id + " to " + engine.remote + ", attempt " + attempt);
+            try {
+                return newEngine(engine.id, engine.remote);
+            } catch (StockfishInitException e) {
+                if (attempt == RECONNECT_ATTEMPTS)
+                    throw e;
+                log.warn("Can not reconnect Stockfish engine " + engine.id + " to " + engine.remote, e);
+            }
+
+            try {
+                Thread.sleep(RECONNECT_BACKOFF << (attempt - 1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new StockfishInitException("Interrupted while reconnecting to " + engine.remote, e);
+            }
+        }
+    }
+
+    private void registerMBean(String name) {
+        try {
+            jmxName = new ObjectName("xyz.niflheim.stockfish:type=StockfishClient,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new StockfishClientManagement(this), jmxName);
+        } catch (JMException e) {
+            jmxName = null;
+            log.warn("Can not register JMX MBean for StockfishClient " + name, e);
+        }
+    }
+
+    private void unregisterMBean() {
+        if (jmxName == null)
+            return;
+
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(jmxName);
+        } catch (JMException e) {
+            log.warn("Can not unregister JMX MBean " + jmxName, e);
+        }
+    }
+
+    private void exportMetrics() {
+        try {
+            metrics.exportTo(exporter);
+        } catch (RuntimeException e) {
+            log.warn("Metrics exporter failed", e);
+        }
+    }
+
+    private long localEngines() {
+        return engines.snapshot().stream().filter(engine -> engine.remote == null).count();
+    }
+
+    private long configuredHash(Map<Option, String> options) {
+        String configured = options.get(Option.Hash);
+        if (configured != null)
+            return Long.parseLong(configured);
+
+        UciOption option = engineInfo != null ? engineInfo.getOption(Option.Hash.getName()) : null;
+        if (option != null && option.getDefault() != null) {
+            try {
+                return Long.parseLong(option.getDefault());
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return DEFAULT_HASH;
+    }
+
+    private long hashPerEngine(long locals) throws StockfishInitException {
+        long megabytes = memoryBudget / Math.max(1, locals);
+        if (megabytes < 1)
+            throw new StockfishInitException("Memory budget of " + memoryBudget + " MB can not give " + locals + " Stockfish engines 1 MB of hash each");
+        if (engineInfo != null) {
+            try {
+                checkHash(engineInfo, megabytes);
+            } catch (IllegalArgumentException e) {
+                throw new StockfishInitException(e.getMessage(), e);
+            }
+        }
+        return megabytes;
+    }
+
+    private static void checkHash(EngineInfo info, long megabytes) {
+        UciOption option = info.getOption(Option.Hash.getName());
+        if (option == null)
+            throw new IllegalArgumentException(info.getName() + " has no option Hash to apply the memory budget to");
+        if (megabytes < option.getMin() || megabytes > option.getMax())
+            throw new IllegalArgumentException("Memory budget gives " + info.getName() + " " + megabytes
+                    + " MB of hash per engine, it must be between " + option.getMin() + " and " + option.getMax());
+    }
+
+    private void checkMemory(long megabytes) throws StockfishInitException {
+        if (memoryLimit == MemoryLimit.UNLIMITED)
+            return;
+
+        long heap = Runtime.getRuntime().maxMemory();
+        if (megabytes * MEGABYTE + heap > memoryLimit)
+            throw new StockfishInitException("Stockfish hash of " + megabytes + " MB and Java heap of " + heap / MEGABYTE
+                    + " MB exceed the memory limit of " + memoryLimit / MEGABYTE + " MB");
+    }
+
+    private void applyHash(long megabytes) {
+        if (megabytes == hash)
+            return;
+
+        hash = megabytes;
+        log.info("Setting hash of local Stockfish engines to " + megabytes + " MB");
+        for (Stockfish engine : engines.snapshot())
+            if (engine.remote == null)
+                engines.maintain(engine, e -> {
+                    e.setHash(megabytes);
+                    return e;
+                });
+    }
+
+    private void shutdown(Stockfish engine) {
+        try {
+            engine.close();
+        } catch (IOException | StockfishEngineException e) {
+            engine.destroy();
+        }
+    }
+
     private void awaitTerminationAfterShutdown(ExecutorService threadPool) {
         threadPool.shutdown();
         try {
@@ -166,10 +1156,28 @@ public class StockfishClient {
      * @see <a href="https://en.wikipedia.org/wiki/Builder_pattern">Wiki <b>Builder</b> pattern.</a>
      */
     public static class Builder {
-        private Set<Option> options = new HashSet<>();
+        private final Map<Option, String> options = new EnumMap<>(Option.class);
         private Variant variant = Variant.DEFAULT;
         private String path = null;
+        private String binary = null;
         private int instances = 1;
+        private MetricsExporter exporter = null;
+        private long exportPeriod = 0;
+        private boolean jmx = false;
+        private String jmxName = null;
+        private UciListener listener = null;
+        private UciTrafficRecorder recorder = null;
+        private long slowQueryNanos = Long.MAX_VALUE;
+        private boolean speculation = false;
+        private boolean coalescing = false;
+        private int storeCapacity = 0;
+        private PolyglotBook book = null;
+        private boolean bookWeighted = false;
+        private List<InetSocketAddress> remotes = new ArrayList<>();
+        private long memoryBudget = 0;
+        private Map<String, Profile> profiles = new LinkedHashMap<>();
+        private HashPolicy hashPolicy = HashPolicy.KEEP;
+        private long memoryLimit = 0;
 
         /**
          * @param num number of Stockfish core that will be launched to process requests asynchronously
@@ -195,7 +1203,20 @@ public class StockfishClient {
          * @return Builder to continue creating StockfishClient
          */
         public final Builder setOption(Option o, long value) {
-            options.add(o.setValue(value));
+            options.put(o, Profile.value(o, value));
+            return this;
+        }
+
+        /**
+         * @param o     Stockfish launch option taking a string, such as {@link Option#SyzygyPath}
+         * @param value value of option
+         * @return Builder to continue creating StockfishClient
+         */
+        public final Builder setOption(Option o, String value) {
+            if (o.getText() == null)
+                throw new IllegalArgumentException("Option " + o.getName() + " does not take a string value");
+
+            options.put(o, value);
             return this;
         }
 
@@ -208,12 +1229,227 @@ public class StockfishClient {
             return this;
         }
 
+        /**
+         * Run any UCI engine instead of the bundled Stockfish 10, for example a current NNUE build. Path and
+         * variant are then ignored. The options of the client are checked against those the binary reports when
+         * the client starts, see {@link StockfishClient#getEngineInfo()}.
+         *
+         * @param binary path to the executable of the engine
+         * @return Builder to continue creating StockfishClient
+         */
+        public final Builder setEngine(String binary) {
+            this.binary = binary;
+            return this;
+        }
+
+        /**
+         * @param exporter exporter to receive the client metrics, see {@link StockfishMetrics#exportTo(MetricsExporter)}
+         * @param period   time between two exports
+         * @param unit     unit of {@code period}
+         * @return Builder to continue creating StockfishClient
+         */
+        public final Builder setMetricsExporter(MetricsExporter exporter, long period, TimeUnit unit) {
+            if (period <= 0)
+                throw new IllegalArgumentException("Export period must be positive: " + period);
+
+            this.exporter = exporter;
+            this.exportPeriod = Math.max(1, unit.toMillis(period));
+            return this;
+        }
+
+        /**
+         * @param enabled whether to register a {@link StockfishClientMXBean} for this client (default false)
+         * @return Builder to continue creating StockfishClient
+         */
+        public final Builder setJmxEnabled(boolean enabled) {
+            jmx = enabled;
+            return this;
+        }
+
+        /**
+         * @param name name of the client in its JMX object name, unique among the clients of the JVM (default client-N)
+         * @return Builder to continue creating StockfishClient
+         */
+        public final Builder setJmxName(String name) {
+            jmxName = name;
+            return this;
+        }
+
+        /**
+         * @param listener listener to see every UCI command and line exchanged with the engines
+         * @return Builder to continue creating StockfishClient
+         */
+        public final Builder setUciListener(UciListener listener) {
+            this.listener = listener;
+            return this;
+        }
+
+        /**
+         * Record the UCI traffic of all engines and log it for every failed query
+         * and every query that spent longer than the threshold in an engine.
+         *
+         * @param recorder  recorder to keep the traffic in
+         * @param threshold engine time above which a query is logged as slow
+         * @param unit      unit of {@code threshold}
+         * @return Builder to continue creating StockfishClient
+         */
+        public final Builder setTrafficRecorder(UciTrafficRecorder recorder, long threshold, TimeUnit unit) {
+            this.recorder = recorder;
+            this.slowQueryNanos = unit.toNanos(threshold);
+            return this;
+        }
+
+        /**
+         * Let idle engines search the positions most likely to be queried next, the position two plies down the
+         * principal variation of a {@code Best_Move} query and the result of a {@code Make_Move} query. Later
+         * {@code Best_Move} queries with the same parameters are answered from these searches without waiting for
+         * an engine. Speculative searches run only while no query waits and are stopped as soon as one arrives.
+         *
+         * @param enabled whether to speculate (default false)
+         * @return Builder to continue creating StockfishClient
+         */
+        public final Builder setSpeculation(boolean enabled) {
+            speculation = enabled;
+            return this;
+        }
+
+        /**
+         * Let identical queries share one engine computation. A query arriving while an identical one, same type,
+         * position and parameters, is queued or running does not take an engine but receives the result of the
+         * running one. Queries with a difficulty then share one sample of the weakened play.
+         *
+         * @param enabled whether to coalesce identical in-flight queries (default false)
+         * @return Builder to continue creating StockfishClient
+         */
+        public final Builder setCoalescing(boolean enabled) {
+            coalescing = enabled;
+            return this;
+        }
+
+        /**
+         * Keep completed {@code Best_Move} searches indexed by position, difficulty and reached depth. A query
+         * limited only by depth is answered at once when a search at least as deep was stored for its position;
+         * a deeper query runs on the engine that searched the position before, so its hash table gives the new
+         * search a head start.
+         *
+         * @param capacity maximum number of stored positions, 0 to disable the store (default 0)
+         * @return Builder to continue creating StockfishClient
+         */
+        public final Builder setResultStore(int capacity) {
+            if (capacity < 0)
+                throw new IllegalArgumentException("Result store capacity can not be negative: " + capacity);
+
+            storeCapacity = capacity;
+            return this;
+        }
+
+        /**
+         * Answer {@code Best_Move} queries from an opening book before they reach an engine. Positions not in the
+         * book are searched as usual.
+         *
+         * @param book     opening book, or {@code null} to disable (default null)
+         * @param weighted whether to pick a random book move by weight, like a human opponent varying its
+         *                 openings, instead of always the move with the highest weight
+         * @return Builder to continue creating StockfishClient
+         */
+        public final Builder setOpeningBook(PolyglotBook book, boolean weighted) {
+            this.book = book;
+            bookWeighted = weighted;
+            return this;
+        }
+
+        /**
+         * Add engines run by an {@link EngineHost} on another machine to the pool. Hosts carry no weight of their
+         * own: each remote engine is one more slot of the pool, handed the next query when it is idle just like a
+         * local engine, so a host's share of the work follows the number of engines it contributes. Pass the
+         * capacity of a host to weight it by its cores. A remote engine whose connection fails is reconnected
+         * before it takes the next query and dropped from the pool if the host stays unreachable.
+         * The options of this client are passed to remote engines too.
+         *
+         * @param host    host name or address of the engine host
+         * @param port    port of the engine host
+         * @param engines number of engines to run on the host
+         * @return Builder to continue creating StockfishClient
+         */
+        public final Builder addRemoteEngines(String host, int port, int engines) {
+            if (engines < 1)
+                throw new IllegalArgumentException("At least one remote engine must be added: " + engines);
+
+            for (int i = 0; i < engines; i++)
+                remotes.add(InetSocketAddress.createUnresolved(host, port));
+            return this;
+        }
+
+        /**
+         * Register a profile queries can select with {@link Query.Builder#setProfile(String)}. Engines switch
+         * between profiles on demand: a query runs on an idle engine already set to its profile if there is one,
+         * otherwise on an engine taken from the profile with the most idle engines, which is then switched to the
+         * profile of the query. Options of the profile are checked against the engine when the client starts.
+         *
+         * @param profile profile to register, its name must be unique
+         * @return Builder to continue creating StockfishClient
+         */
+        public final Builder addProfile(Profile profile) {
+            if (profiles.putIfAbsent(profile.getName(), profile) != null)
+                throw new IllegalArgumentException("Profile " + profile.getName() + " is already registered");
+            return this;
+        }
+
+        /**
+         * Decide what an engine does with its hash table before a search unrelated to the previous one it ran,
+         * that is without the same game tag, see {@link Query.Builder#setGame(String)}. Profiles and queries can
+         * override the policy.
+         *
+         * @param policy hash policy of the client (default {@link HashPolicy#KEEP})
+         * @return Builder to continue creating StockfishClient
+         */
+        public final Builder setHashPolicy(HashPolicy policy) {
+            if (policy == null)
+                throw new IllegalArgumentException("Hash policy can not be null");
+
+            hashPolicy = policy;
+            return this;
+        }
+
+        /**
+         * Share a total amount of hash among the local engines instead of giving each the same {@link Option#Hash}.
+         * Every engine gets an equal part, which follows the pool size when it is {@link StockfishClient#resize(int)
+         * resized}. Remote engines are not counted, they use the memory of their host. {@link Option#Hash} can
+         * not be set together with a budget.
+         *
+         * @param megabytes total hash of all local engines in MB, 0 to give each engine its own hash (default 0)
+         * @return Builder to continue creating StockfishClient
+         */
+        public final Builder setMemoryBudget(long megabytes) {
+            if (megabytes < 0)
+                throw new IllegalArgumentException("Memory budget can not be negative: " + megabytes);
+
+            memoryBudget = megabytes;
+            return this;
+        }
+
+        /**
+         * Memory available to this process and its engines. The hash of all local engines plus the maximum Java
+         * heap must fit into it, otherwise building the client or growing the pool fails instead of the container
+         * being killed for running out of memory later.
+         *
+         * @param megabytes memory limit in MB, 0 to use the limit of the cgroup the process runs in (default 0)
+         * @return Builder to continue creating StockfishClient
+         */
+        public final Builder setMemoryLimit(long megabytes) {
+            if (megabytes < 0)
+                throw new IllegalArgumentException("Memory limit can not be negative: " + megabytes);
+
+            memoryLimit = megabytes;
+            return this;
+        }
+
         /**
          * @return ready StockfishClient with fields set
          * @throws StockfishInitException throws if Stockfish process can not be initialized, starter or bind
          */
         public final StockfishClient build() throws StockfishInitException {
-            return new StockfishClient(path, instances, variant, options);
+            return new StockfishClient(this);
         }
     }
 }
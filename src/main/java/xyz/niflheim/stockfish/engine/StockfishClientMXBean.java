@@ -0,0 +1,88 @@
+/* Copyright 2018 David Cai Wang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.niflheim.stockfish.engine;
+
+/**
+ * JMX management interface of a {@link StockfishClient}, registered under
+ * {@code xyz.niflheim.stockfish:type=StockfishClient,name=...} for every client
+ * unless disabled with {@link StockfishClient.Builder#setJmxEnabled(boolean)}.
+ *
+ * @author Niflheim
+ * @since 3.1
+ */
+public interface StockfishClientMXBean {
+
+    /**
+     * @return number of Stockfish engines in the pool
+     */
+    int getInstances();
+
+    /**
+     * @return number of engines running a query or leased to a session
+     */
+    int getBusyEngines();
+
+    /**
+     * @return number of engines waiting for a query
+     */
+    int getIdleEngines();
+
+    /**
+     * @return number of queries waiting for an engine
+     */
+    int getQueueLength();
+
+    /**
+     * @return ids of the engines in the pool
+     */
+    int[] getEngineIds();
+
+    /**
+     * @return options the engines were started with, as {@code name=value}
+     */
+    String[] getOptions();
+
+    /**
+     * @return number of queries that produced a result
+     */
+    long getCompletedQueries();
+
+    /**
+     * @return number of queries that failed
+     */
+    long getFailedQueries();
+
+    /**
+     * @param instances new number of engines
+     */
+    void resize(int instances);
+
+    /**
+     * @param timeoutMillis maximum time to wait in milliseconds
+     * @return {@code true} if all queued queries were processed and all engines are idle
+     */
+    boolean drain(long timeoutMillis);
+
+    /**
+     * @param id id of the engine to restart
+     * @return {@code false} if there is no engine with that id
+     */
+    boolean restartEngine(int id);
+
+    /**
+     * Send {@code Clear Hash} to every engine.
+     */
+    void clearHash();
+}
@@ -0,0 +1,102 @@
+/* Copyright 2018 David Cai Wang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.niflheim.stockfish.engine;
+
+import xyz.niflheim.stockfish.exceptions.StockfishInitException;
+import xyz.niflheim.stockfish.exceptions.StockfishPoolException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link StockfishClientMXBean} backed by a {@link StockfishClient}.
+ */
+class StockfishClientManagement implements StockfishClientMXBean {
+    private final StockfishClient client;
+
+    StockfishClientManagement(StockfishClient client) {
+        this.client = client;
+    }
+
+    @Override
+    public int getInstances() {
+        return client.getInstances();
+    }
+
+    @Override
+    public int getBusyEngines() {
+        return Math.max(0, client.getInstances() - client.getIdleEngines());
+    }
+
+    @Override
+    public int getIdleEngines() {
+        return client.getIdleEngines();
+    }
+
+    @Override
+    public int getQueueLength() {
+        return client.getQueueLength();
+    }
+
+    @Override
+    public int[] getEngineIds() {
+        return client.getEngineIds();
+    }
+
+    @Override
+    public String[] getOptions() {
+        return client.getOptionValues().entrySet().stream()
+                .map(option -> option.getKey().getName() + "=" + option.getValue())
+                .toArray(String[]::new);
+    }
+
+    @Override
+    public long getCompletedQueries() {
+        return client.getMetrics().getCompleted();
+    }
+
+    @Override
+    public long getFailedQueries() {
+        return client.getMetrics().getFailed();
+    }
+
+    @Override
+    public void resize(int instances) {
+        try {
+            client.resize(instances);
+        } catch (StockfishInitException e) {
+            throw new StockfishPoolException("Can not resize Stockfish pool: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public boolean drain(long timeoutMillis) {
+        try {
+            return client.drain(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @Override
+    public boolean restartEngine(int id) {
+        return client.restartEngine(id);
+    }
+
+    @Override
+    public void clearHash() {
+        client.clearHash();
+    }
+}
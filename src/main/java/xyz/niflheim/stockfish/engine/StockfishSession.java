@@ -0,0 +1,205 @@
+/* Copyright 2018 David Cai Wang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.niflheim.stockfish.engine;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import xyz.niflheim.stockfish.engine.enums.Query;
+
+import java.util.function.Consumer;
+
+/**
+ * Exclusive lease of one Stockfish engine of a {@link StockfishClient}.
+ * <p>
+ * All queries of a session run synchronously on the same engine, so consecutive positions of a game
+ * profit from the hash table filled by the previous search. The engine goes back to the pool on
+ * {@link #close()}; while the session is open it does not serve any other query.
+ *
+ * @author Niflheim
+ * @see StockfishClient#openSession()
+ * @since 3.1
+ */
+public class StockfishSession implements AutoCloseable {
+
+    private static final Log log = LogFactory.getLog(StockfishSession.class);
+
+    private final StockfishClient client;
+    private final Stockfish engine;
+    private boolean closed, pondering;
+
+    StockfishSession(StockfishClient client, Stockfish engine) {
+        this.client = client;
+        this.engine = engine;
+    }
+
+    /**
+     * @return id of the leased engine
+     */
+    public int getEngineId() {
+        return engine.id;
+    }
+
+    /**
+     * Execute a query on the leased engine and wait for its result.
+     *
+     * @param query query to execute in Stockfish
+     * @return result of the query, like the callback of {@link StockfishClient#submit(Query, java.util.function.Consumer)}
+     * @throws xyz.niflheim.stockfish.exceptions.StockfishEngineException if the engine fails
+     */
+    public synchronized String submit(Query query) {
+        checkOpen();
+        stop();
+        return engine.execute(query);
+    }
+
+    /**
+     * @param query query with the position to list the legal moves of
+     * @return legal moves of the position, packed
+     * @throws xyz.niflheim.stockfish.exceptions.StockfishEngineException if the engine fails
+     */
+    public synchronized MoveList legalMoves(Query query) {
+        checkOpen();
+        stop();
+        return engine.legalMoves(query);
+    }
+
+    /**
+     * @param query query with the position to find the checking pieces of
+     * @return bitboard of the pieces giving check, bit 0 for a1 up to bit 63 for h8
+     * @throws xyz.niflheim.stockfish.exceptions.StockfishEngineException if the engine fails
+     */
+    public synchronized long checkers(Query query) {
+        checkOpen();
+        stop();
+        return engine.checkers(query);
+    }
+
+    /**
+     * Search the position of the query and return the best move together with its evaluation.
+     * Only depth, movetime, nodes and difficulty of the query are used.
+     *
+     * @param query query to search
+     * @return outcome of the search
+     * @throws xyz.niflheim.stockfish.exceptions.StockfishEngineException if the engine fails
+     */
+    public synchronized BestMoveResult analyse(Query query) {
+        return analyse(query, null);
+    }
+
+    /**
+     * Search the position of the query, reporting every principal variation while the search runs.
+     *
+     * @param query    query to search
+     * @param progress called on the calling thread for every {@code info} line with a principal variation,
+     *                 the reported best move is the first move of that variation
+     * @return outcome of the search
+     * @throws xyz.niflheim.stockfish.exceptions.StockfishEngineException if the engine fails
+     */
+    public synchronized BestMoveResult analyse(Query query, Consumer<BestMoveResult> progress) {
+        checkOpen();
+        stop();
+        return engine.analyse(query, progress);
+    }
+
+    /**
+     * Start thinking on the opponent's time. The FEN of the query is the position after the move the opponent
+     * is expected to play, usually {@link BestMoveResult#getPonder()} of the previous search, and its clocks are
+     * those Stockfish would see if the opponent played that move now.
+     * <p>
+     * The search runs until {@link #ponderHit()} or {@link #stop()}. Any other call stops it first.
+     * Enable {@link xyz.niflheim.stockfish.engine.enums.Option#Ponder} so Stockfish plans its time for pondering.
+     *
+     * @param query query with the expected position, usually with clocks
+     * @throws xyz.niflheim.stockfish.exceptions.StockfishEngineException if the engine fails
+     */
+    public synchronized void ponder(Query query) {
+        checkOpen();
+        stop();
+        engine.ponder(query);
+        pondering = true;
+    }
+
+    /**
+     * The opponent played the expected move: turn the ponder search into a normal search and wait for its move.
+     * Stockfish continues from where it is, so the reply is often immediate.
+     *
+     * @return outcome of the search
+     * @throws IllegalStateException if the session is not pondering
+     * @throws xyz.niflheim.stockfish.exceptions.StockfishEngineException if the engine fails
+     */
+    public synchronized BestMoveResult ponderHit() {
+        checkOpen();
+        if (!pondering)
+            throw new IllegalStateException("Stockfish session is not pondering.");
+
+        pondering = false;
+        return engine.ponderHit();
+    }
+
+    /**
+     * The opponent played another move: abort the ponder search. Does nothing if the session is not pondering.
+     *
+     * @throws xyz.niflheim.stockfish.exceptions.StockfishEngineException if the engine fails
+     */
+    public synchronized void stop() {
+        checkOpen();
+        if (pondering) {
+            pondering = false;
+            engine.stopSearch();
+        }
+    }
+
+    /**
+     * @return {@code true} while a ponder search is running
+     */
+    public synchronized boolean isPondering() {
+        return pondering;
+    }
+
+    /**
+     * Tell the engine that the next positions belong to a different game.
+     */
+    public synchronized void newGame() {
+        checkOpen();
+        stop();
+        engine.newGame();
+    }
+
+    /**
+     * Give the engine back to the pool. An engine that died during the session is restarted first.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed)
+            return;
+
+        try {
+            if (pondering && engine.isAlive())
+                engine.stopSearch();
+        } catch (RuntimeException e) {
+            log.warn("Can not stop pondering of Stockfish engine " + engine.id + ", restarting it", e);
+            engine.destroy();
+        } finally {
+            closed = true;
+            pondering = false;
+            client.release(engine);
+        }
+    }
+
+    private void checkOpen() {
+        if (closed)
+            throw new IllegalStateException("Stockfish session is closed.");
+    }
+}
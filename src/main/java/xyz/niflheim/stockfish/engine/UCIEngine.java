@@ -20,25 +20,112 @@ import xyz.niflheim.stockfish.exceptions.StockfishEngineException;
 import xyz.niflheim.stockfish.exceptions.StockfishInitException;
 
 import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
 abstract class UCIEngine {
+    private static final int CONNECT_TIMEOUT = 5000;
+
     final BufferedReader input;
     final BufferedWriter output;
     final Process process;
+    final Socket socket;
+    final InetSocketAddress remote;
+    final int id;
+    final UciListener listener;
+    final EngineInfo info;
+    private volatile boolean broken;
+
+    UCIEngine(int id, String path, Variant variant, UciListener listener, Map<Option, String> options) throws StockfishInitException {
+        this(id, getPath(variant, path), listener, options);
+    }
 
-    UCIEngine(String path, Variant variant, Option... options) throws StockfishInitException {
+    UCIEngine(int id, String binary, UciListener listener, Map<Option, String> options) throws StockfishInitException {
+        this.id = id;
+        this.listener = listener;
         try {
-            process = Runtime.getRuntime().exec(getPath(variant, path));
+            process = Runtime.getRuntime().exec(new String[]{binary});
             input = new BufferedReader(new InputStreamReader(process.getInputStream()));
             output = new BufferedWriter(new OutputStreamWriter(process.getOutputStream()));
-
-            for (Option option : options)
-                passOption(option);
         } catch (IOException e) {
             throw new StockfishInitException("Unable to start and bind Stockfish process: ", e);
         }
+        socket = null;
+        remote = null;
+        info = handshake(options);
+    }
+
+    UCIEngine(int id, InetSocketAddress remote, UciListener listener, Map<Option, String> options) throws StockfishInitException {
+        this.id = id;
+        this.listener = listener;
+        this.remote = remote;
+        process = null;
+        socket = new Socket();
+        try {
+            socket.connect(remote.isUnresolved() ? new InetSocketAddress(remote.getHostString(), remote.getPort()) : remote, CONNECT_TIMEOUT);
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(CONNECT_TIMEOUT);
+            input = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            output = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream()));
+        } catch (IOException e) {
+            destroy();
+            throw new StockfishInitException("Unable to connect to Stockfish engine at " + remote + ": ", e);
+        }
+        info = handshake(options);
+        try {
+            socket.setSoTimeout(0);
+        } catch (IOException e) {
+            destroy();
+            throw new StockfishInitException("Unable to connect to Stockfish engine at " + remote + ": ", e);
+        }
+    }
+
+    /**
+     * Start the UCI session as the protocol requires: {@code uci} first, then the options checked against those
+     * the engine declared in its answer, then {@code isready}.
+     *
+     * @param options options to set with their values as sent in {@code setoption}
+     * @return identity and options of the engine
+     * @throws StockfishInitException if the engine does not answer or rejects an option, the engine is then stopped
+     */
+    private EngineInfo handshake(Map<Option, String> options) throws StockfishInitException {
+        try {
+            sendCommand("uci");
+            EngineInfo info = EngineInfo.parse(readResponse("uciok"));
+            options.forEach(info::validate);
+
+            options.forEach(this::passOption);
+            waitForReady();
+            return info;
+        } catch (RuntimeException e) {
+            destroy();
+            throw new StockfishInitException("Stockfish engine rejected the configuration: " + e.getMessage(), e);
+        }
+    }
+
+    boolean isAlive() {
+        return process != null ? process.isAlive() : !broken && !socket.isClosed();
+    }
+
+    /**
+     * Stop the engine without asking it to quit, killing the local process or dropping the connection to the remote one.
+     */
+    void destroy() {
+        if (process != null) {
+            process.destroy();
+            return;
+        }
+
+        broken = true;
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
     }
 
     void waitForReady() {
@@ -48,18 +135,26 @@ abstract class UCIEngine {
 
     void sendCommand(String command) {
         try {
+            if (listener != null)
+                listener.onCommand(id, System.nanoTime(), command);
+
             output.write(command + "\n");
             output.flush();
         } catch (IOException e) {
+            broken = true;
             throw new StockfishEngineException(e);
         }
     }
 
     String readLine(String expected) {
         try {
-            return input.lines().sequential().filter(l -> l.startsWith(expected)).findFirst()
-                    .orElseThrow(() -> new StockfishEngineException("Can not find expected line: " + expected));
-        } catch (UncheckedIOException e) {
+            String line;
+            while ((line = nextLine()) != null)
+                if (line.startsWith(expected))
+                    return line;
+
+            throw new StockfishEngineException("Can not find expected line: " + expected);
+        } catch (IOException e) {
             throw new StockfishEngineException(e);
         }
     }
@@ -69,7 +164,7 @@ abstract class UCIEngine {
             List<String> lines = new ArrayList<>();
             String line;
             boolean isPresent = false;
-            while ((line = input.readLine()) != null) {
+            while ((line = nextLine()) != null) {
                 lines.add(line);
 
                 if (line.startsWith(expected)) {
@@ -79,6 +174,9 @@ abstract class UCIEngine {
             }
             if (isPresent) {
                 return lines;
+            } else if (!lines.isEmpty() && lines.get(lines.size() - 1).startsWith(EngineHost.REFUSED)) {
+                throw new StockfishEngineException("Can not find expected line: " + expected + ", "
+                        + lines.get(lines.size() - 1).substring("info string ".length()));
             } else {
                 throw new StockfishEngineException("Can not find expected line: " + expected);
             }
@@ -87,11 +185,43 @@ abstract class UCIEngine {
         }
     }
 
-    private void passOption(Option option) {
-        sendCommand(option.toString());
+    String nextLine() throws IOException {
+        String line;
+        try {
+            line = input.readLine();
+        } catch (IOException e) {
+            broken = true;
+            throw e;
+        }
+
+        if (line == null)
+            broken = true;
+        else if (listener != null)
+            listener.onLine(id, System.nanoTime(), line);
+
+        return line;
+    }
+
+    private void passOption(Option option, String value) {
+        sendCommand("setoption name " + option.getName() + " value " + value);
+    }
+
+    /**
+     * Take the values the options hold now, so that later changes to the shared {@link Option} constants do not
+     * reach engines started with them.
+     *
+     * @param options options with their values
+     * @return immutable values as sent in {@code setoption}, on/off options as true or false
+     */
+    static Map<Option, String> values(Option... options) {
+        Map<Option, String> values = new EnumMap<>(Option.class);
+        for (Option option : options)
+            values.put(option, option.getText() != null ? option.getText() : Profile.value(option, option.getValue()));
+
+        return Collections.unmodifiableMap(values);
     }
 
-    private String getPath(Variant variant, String override) {
+    static String getPath(Variant variant, String override) {
         StringBuilder path = new StringBuilder(override == null ? "assets/engines/stockfish_10_x64" : override + "stockfish_10_x64");
 
         if (System.getProperty("os.name").toLowerCase().contains("win"))
@@ -0,0 +1,68 @@
+/* Copyright 2018 David Cai Wang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.niflheim.stockfish.engine;
+
+/**
+ * Tap on the raw UCI traffic between the client and its Stockfish engines.
+ * <p>
+ * Listeners are called synchronously on the thread talking to the engine, so implementations must be
+ * fast and thread safe. When no listener is configured the engines skip the call entirely.
+ *
+ * @author Niflheim
+ * @see UciTrafficRecorder
+ * @since 3.1
+ */
+public interface UciListener {
+
+    /**
+     * @param engine   id of the engine the command was written to
+     * @param nanoTime {@link System#nanoTime()} when the command was written
+     * @param command  command without the trailing newline
+     */
+    void onCommand(int engine, long nanoTime, String command);
+
+    /**
+     * @param engine   id of the engine the line was read from
+     * @param nanoTime {@link System#nanoTime()} when the line was read
+     * @param line     line without the trailing newline, including lines the client skipped
+     */
+    void onLine(int engine, long nanoTime, String line);
+
+    /**
+     * @param first  listener to call first, may be {@code null}
+     * @param second listener to call second, may be {@code null}
+     * @return listener calling both, or the non-null one
+     */
+    static UciListener compose(UciListener first, UciListener second) {
+        if (first == null)
+            return second;
+        if (second == null)
+            return first;
+
+        return new UciListener() {
+            @Override
+            public void onCommand(int engine, long nanoTime, String command) {
+                first.onCommand(engine, nanoTime, command);
+                second.onCommand(engine, nanoTime, command);
+            }
+
+            @Override
+            public void onLine(int engine, long nanoTime, String line) {
+                first.onLine(engine, nanoTime, line);
+                second.onLine(engine, nanoTime, line);
+            }
+        };
+    }
+}
@@ -0,0 +1,192 @@
+/* Copyright 2018 David Cai Wang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.niflheim.stockfish.engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Option an engine declared in its answer to the {@code uci} command, e.g.
+ * {@code option name Hash type spin default 16 min 1 max 33554432}.
+ *
+ * @author Niflheim
+ * @since 3.1
+ */
+public class UciOption {
+
+    /**
+     * Type of a UCI option, deciding which values it accepts.
+     */
+    public enum Type {
+        /**
+         * On/off option taking {@code true} or {@code false}.
+         */
+        CHECK,
+        /**
+         * Integer option between a minimum and a maximum.
+         */
+        SPIN,
+        /**
+         * Option taking one of a fixed set of strings.
+         */
+        COMBO,
+        /**
+         * Command without a value, such as {@code Clear Hash}.
+         */
+        BUTTON,
+        /**
+         * Option taking any string, such as a path.
+         */
+        STRING
+    }
+
+    private final String name;
+    private final Type type;
+    private final String defaultValue;
+    private final long min;
+    private final long max;
+    private final List<String> vars;
+
+    private UciOption(String name, Type type, String defaultValue, long min, long max, List<String> vars) {
+        this.name = name;
+        this.type = type;
+        this.defaultValue = defaultValue;
+        this.min = min;
+        this.max = max;
+        this.vars = vars;
+    }
+
+    /**
+     * @param line {@code option} line of the engine
+     * @return the declared option
+     * @throws IllegalArgumentException if the line has no name or an unknown type
+     */
+    static UciOption parse(String line) throws IllegalArgumentException {
+        StringBuilder name = new StringBuilder(), type = new StringBuilder(), defaultValue = null, min = new StringBuilder(), max = new StringBuilder();
+        List<String> vars = new ArrayList<>();
+        StringBuilder current = null;
+
+        String[] tokens = line.trim().split(" ");
+        for (int i = 1; i < tokens.length; i++) {
+            switch (tokens[i]) {
+                case "name":
+                    current = name;
+                    continue;
+                case "type":
+                    current = type;
+                    continue;
+                case "default":
+                    current = defaultValue = new StringBuilder();
+                    continue;
+                case "min":
+                    current = min;
+                    continue;
+                case "max":
+                    current = max;
+                    continue;
+                case "var":
+                    vars.add("");
+                    current = null;
+                    continue;
+                default:
+                    if (current == null && !vars.isEmpty()) {
+                        int last = vars.size() - 1;
+                        vars.set(last, vars.get(last).isEmpty() ? tokens[i] : vars.get(last) + " " + tokens[i]);
+                    } else if (current != null) {
+                        if (current.length() > 0)
+                            current.append(' ');
+                        current.append(tokens[i]);
+                    }
+            }
+        }
+
+        if (name.length() == 0)
+            throw new IllegalArgumentException("UCI option without a name: " + line);
+
+        Type parsed;
+        try {
+            parsed = Type.valueOf(type.toString().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("UCI option " + name + " has an unknown type: " + line);
+        }
+
+        try {
+            return new UciOption(name.toString(), parsed, defaultValue == null ? null : defaultValue.toString(),
+                    min.length() == 0 ? Long.MIN_VALUE : Long.parseLong(min.toString()),
+                    max.length() == 0 ? Long.MAX_VALUE : Long.parseLong(max.toString()),
+                    Collections.unmodifiableList(vars));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("UCI option " + name + " has an invalid range: " + line);
+        }
+    }
+
+    /**
+     * @return name of the option as understood by the engine
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return type of the option
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return default value as declared by the engine, or {@code null} if none was declared
+     */
+    public String getDefault() {
+        return defaultValue;
+    }
+
+    /**
+     * @return smallest value of a {@code spin} option, {@link Long#MIN_VALUE} if no minimum was declared
+     */
+    public long getMin() {
+        return min;
+    }
+
+    /**
+     * @return largest value of a {@code spin} option, {@link Long#MAX_VALUE} if no maximum was declared
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * @return values a {@code combo} option accepts
+     */
+    public List<String> getVars() {
+        return vars;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder option = new StringBuilder("option name ").append(name).append(" type ").append(type.name().toLowerCase(Locale.ROOT));
+        if (defaultValue != null)
+            option.append(" default ").append(defaultValue);
+        if (min != Long.MIN_VALUE)
+            option.append(" min ").append(min);
+        if (max != Long.MAX_VALUE)
+            option.append(" max ").append(max);
+        for (String var : vars)
+            option.append(" var ").append(var);
+        return option.toString();
+    }
+}
@@ -0,0 +1,174 @@
+/* Copyright 2018 David Cai Wang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.niflheim.stockfish.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * {@link UciListener} keeping the most recent UCI traffic of all engines in a fixed size ring buffer.
+ * <p>
+ * Old entries are overwritten once the buffer is full, so memory use is bounded by the capacity.
+ * Use {@link #dump(long, TimeUnit)} to inspect the last seconds of traffic, e.g. after a slow or failed query.
+ *
+ * @author Niflheim
+ * @since 3.1
+ */
+public class UciTrafficRecorder implements UciListener {
+
+    private final AtomicReferenceArray<Entry> ring;
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * @param capacity number of lines to keep across all engines
+     */
+    public UciTrafficRecorder(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+
+        ring = new AtomicReferenceArray<>(capacity);
+    }
+
+    @Override
+    public void onCommand(int engine, long nanoTime, String command) {
+        record(new Entry(engine, nanoTime, true, command));
+    }
+
+    @Override
+    public void onLine(int engine, long nanoTime, String line) {
+        record(new Entry(engine, nanoTime, false, line));
+    }
+
+    /**
+     * @param window how far to look back
+     * @param unit   unit of {@code window}
+     * @return traffic of all engines within the window, oldest first
+     */
+    public List<Entry> getEntries(long window, TimeUnit unit) {
+        return getEntries(-1, System.nanoTime() - unit.toNanos(window));
+    }
+
+    /**
+     * @param engine   id of the engine, or -1 for all engines
+     * @param nanoTime {@link System#nanoTime()} of the oldest entry to return
+     * @return traffic of the engine since the given time, oldest first
+     */
+    public List<Entry> getEntries(int engine, long nanoTime) {
+        long last = sequence.get();
+        long first = Math.max(0, last - ring.length());
+        List<Entry> entries = new ArrayList<>();
+
+        for (long i = first; i < last; i++) {
+            Entry entry = ring.get((int) (i % ring.length()));
+            if (entry != null && entry.nanoTime - nanoTime >= 0 && (engine < 0 || entry.engine == engine))
+                entries.add(entry);
+        }
+
+        entries.sort((a, b) -> Long.compare(a.nanoTime, b.nanoTime));
+        return entries;
+    }
+
+    /**
+     * @param window how far to look back
+     * @param unit   unit of {@code window}
+     * @return traffic of all engines within the window, one line per entry
+     */
+    public String dump(long window, TimeUnit unit) {
+        return format(getEntries(window, unit));
+    }
+
+    /**
+     * @param engine   id of the engine
+     * @param nanoTime {@link System#nanoTime()} of the oldest entry to include
+     * @return traffic of the engine since the given time, one line per entry
+     */
+    public String dump(int engine, long nanoTime) {
+        return format(getEntries(engine, nanoTime));
+    }
+
+    /**
+     * Forget all recorded traffic.
+     */
+    public void clear() {
+        for (int i = 0; i < ring.length(); i++)
+            ring.set(i, null);
+    }
+
+    private void record(Entry entry) {
+        ring.set((int) (sequence.getAndIncrement() % ring.length()), entry);
+    }
+
+    private static String format(List<Entry> entries) {
+        long now = System.nanoTime();
+        StringBuilder dump = new StringBuilder();
+        for (Entry entry : entries)
+            dump.append(String.format("%10.3f ms  #%-3d %s %s%n",
+                    (entry.nanoTime - now) / 1e6, entry.engine, entry.outgoing ? ">>" : "<<", entry.text));
+        return dump.toString();
+    }
+
+    /**
+     * One line of UCI traffic.
+     */
+    public static final class Entry {
+        private final int engine;
+        private final long nanoTime;
+        private final boolean outgoing;
+        private final String text;
+
+        private Entry(int engine, long nanoTime, boolean outgoing, String text) {
+            this.engine = engine;
+            this.nanoTime = nanoTime;
+            this.outgoing = outgoing;
+            this.text = text;
+        }
+
+        /**
+         * @return id of the engine
+         */
+        public int getEngine() {
+            return engine;
+        }
+
+        /**
+         * @return {@link System#nanoTime()} when the line was written or read
+         */
+        public long getNanoTime() {
+            return nanoTime;
+        }
+
+        /**
+         * @return {@code true} for commands sent to the engine, {@code false} for lines read from it
+         */
+        public boolean isOutgoing() {
+            return outgoing;
+        }
+
+        /**
+         * @return the line itself
+         */
+        public String getText() {
+            return text;
+        }
+
+        @Override
+        public String toString() {
+            return "#" + engine + (outgoing ? " >> " : " << ") + text;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+/* Copyright 2018 David Cai Wang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.niflheim.stockfish.engine.enums;
+
+/**
+ * What an engine does with its hash table before a query unrelated to the previous one it ran. Queries tagged
+ * with the same game, see {@link Query.Builder#setGame(String)}, are related and always keep the hash.
+ *
+ * @author Niflheim
+ * @since 3.1
+ */
+public enum HashPolicy {
+    /**
+     * Keep the hash table, searches may profit from positions of earlier queries but depend on them
+     */
+    KEEP,
+    /**
+     * Send {@code ucinewgame}, which clears the hash table and the move ordering history, so the result of a
+     * fixed depth search does not depend on earlier queries
+     */
+    NEW_GAME,
+    /**
+     * Clear the hash table only, keeping the move ordering history
+     */
+    CLEAR
+}
@@ -44,7 +44,7 @@ public enum Option {
     /**
      * Let Stockfish ponder its next move while the opponent is thinking.
      */
-    Ponder("Ponder"),
+    Ponder("Ponder", true),
     /**
      * Output the N best lines (principal variations, PVs) when searching. Leave at 1 for best performance.
      */
@@ -70,21 +70,57 @@ public enum Option {
     Slow_Mover("Slow Mover"),
     /**
      * Tells the engine to use nodes searched instead of wall time to account for elapsed time.
-     * Useful for engine testing.
+     * Useful for engine testing. The value is the number of nodes per millisecond; queries with a movetime
+     * are then sent as {@code go nodes} with movetime times this value, so their cost no longer depends on the load.
      */
-    Nodestime("nodestime");
+    Nodestime("nodestime"),
+    /**
+     * Path to the folders/directories storing the Syzygy tablebase files. Multiple directories are to be
+     * separated by ";" on Windows and by ":" on Unix-based operating systems. Set with {@link #setValue(String)}.
+     */
+    SyzygyPath("SyzygyPath", "<empty>"),
+    /**
+     * Minimum remaining search depth for which a position is probed.
+     */
+    SyzygyProbeDepth("SyzygyProbeDepth"),
+    /**
+     * Disable to let fifty-move rule draws detected by Syzygy tablebase probes count as wins or losses.
+     * This is useful for ICCF correspondence games. Enabled unless set, as in Stockfish.
+     */
+    Syzygy50MoveRule("Syzygy50MoveRule", true, 1),
+    /**
+     * Limit Syzygy tablebase probing to positions with at most this many pieces left (including kings and pawns).
+     */
+    SyzygyProbeLimit("SyzygyProbeLimit");
 
     private String optionString;
+    private boolean check;
     private long value;
+    private String text;
 
     Option(String option) {
+        this(option, false);
+    }
+
+    Option(String option, boolean check) {
+        this(option, check, 0);
+    }
+
+    Option(String option, boolean check, long value) {
+        optionString = option;
+        this.check = check;
+        this.value = value;
+    }
+
+    Option(String option, String text) {
         optionString = option;
+        this.text = text;
     }
 
     /**
      * Setter for value to Stockfish option.
      *
-     * @param value option value
+     * @param value option value, for on/off options such as {@link #Ponder} 0 is off and anything else on
      * @return option for Stockfish
      */
     public Option setValue(long value) {
@@ -92,6 +128,49 @@ public enum Option {
         return this;
     }
 
+    /**
+     * Setter for value to Stockfish string option such as {@link #SyzygyPath}.
+     *
+     * @param value option value
+     * @return option for Stockfish
+     * @throws IllegalArgumentException if the option does not take a string
+     */
+    public Option setValue(String value) {
+        if (text == null)
+            throw new IllegalArgumentException("Option " + optionString + " does not take a string value");
+
+        text = value;
+        return this;
+    }
+
+    /**
+     * @return name of the option as understood by Stockfish
+     */
+    public String getName() {
+        return optionString;
+    }
+
+    /**
+     * @return value of the option
+     */
+    public long getValue() {
+        return value;
+    }
+
+    /**
+     * @return {@code true} for on/off options such as {@link #Ponder}, sent to Stockfish as true or false
+     */
+    public boolean isCheck() {
+        return check;
+    }
+
+    /**
+     * @return value of a string option, or {@code null} for numeric and on/off options
+     */
+    public String getText() {
+        return text;
+    }
+
     /**
      * Generate UCI command string to set option to Stockfish.
      *
@@ -99,6 +178,9 @@ public enum Option {
      */
     @Override
     public String toString() {
-        return "setoption name " + optionString + " value " + value;
+        if (text != null)
+            return "setoption name " + optionString + " value " + text;
+
+        return "setoption name " + optionString + " value " + (check ? String.valueOf(value != 0) : String.valueOf(value));
     }
 }
@@ -14,6 +14,9 @@
  */
 package xyz.niflheim.stockfish.engine.enums;
 
+import xyz.niflheim.stockfish.chess.FenValidator;
+import xyz.niflheim.stockfish.chess.PackedPosition;
+
 import java.util.regex.Pattern;
 
 /**
@@ -22,26 +25,33 @@ import java.util.regex.Pattern;
 public class Query {
     private QueryType type;
     private String fen, move;
+    private PackedPosition position;
     private int difficulty, depth;
-    private long movetime;
+    private long movetime, nodes;
+    private long wtime = -1, btime = -1, winc = -1, binc = -1;
+    private int movestogo = -1;
+    private String profile, game;
+    private HashPolicy hashPolicy;
 
     @SuppressWarnings("WeakerAccess")
     public Query(QueryType type, String fen, int difficulty, int depth, long movetime) {
-        this.type = type;
-        this.fen = fen;
-        this.difficulty = difficulty;
-        this.depth = depth;
-        this.movetime = movetime;
+        this(type, fen, null, difficulty, depth, movetime);
     }
 
     @SuppressWarnings("WeakerAccess")
     public Query(QueryType type, String fen, String move, int difficulty, int depth, long movetime) {
+        this(type, fen, move, difficulty, depth, movetime, -1);
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    public Query(QueryType type, String fen, String move, int difficulty, int depth, long movetime, long nodes) {
         this.type = type;
         this.fen = fen;
         this.move = move;
         this.difficulty = difficulty;
         this.depth = depth;
         this.movetime = movetime;
+        this.nodes = nodes;
     }
 
     /**
@@ -54,13 +64,22 @@ public class Query {
     }
 
     /**
-     * @return FEN chessboard position as string
+     * @return FEN chessboard position as string, for queries of a packed position built on the first call and kept
      * @see <a href="https://en.wikipedia.org/wiki/Forsyth%E2%80%93Edwards_Notation">Wiki FEN</a>
      */
     public String getFen() {
+        if (fen == null)
+            fen = position.toFen();
         return fen;
     }
 
+    /**
+     * @return packed position of a query built from one, otherwise {@code null}
+     */
+    public PackedPosition getPackedPosition() {
+        return position;
+    }
+
     /**
      * @return users move as string in USI
      * @see <a href="http://wbec-ridderkerk.nl/html/UCIProtocol.html">Univesal Chess Protocol Documentation</a>
@@ -93,6 +112,80 @@ public class Query {
         return movetime;
     }
 
+    /**
+     * @return the number of nodes after which Stockfish stops searching,
+     * if the number is less than 0, the search is not limited by nodes.
+     * With {@link Option#Nodestime} set, a movetime is also converted to nodes
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * @return time left on White's clock in milliseconds, if the number is less than 0, the query is not clock based
+     */
+    public long getWhiteTime() {
+        return wtime;
+    }
+
+    /**
+     * @return time left on Black's clock in milliseconds, if the number is less than 0, the query is not clock based
+     */
+    public long getBlackTime() {
+        return btime;
+    }
+
+    /**
+     * @return White's increment per move in milliseconds, if the number is less than 0, there is no increment
+     */
+    public long getWhiteIncrement() {
+        return winc;
+    }
+
+    /**
+     * @return Black's increment per move in milliseconds, if the number is less than 0, there is no increment
+     */
+    public long getBlackIncrement() {
+        return binc;
+    }
+
+    /**
+     * @return moves until the next time control, if the number is less than 1, the clock covers the rest of the game
+     */
+    public int getMovesToGo() {
+        return movestogo;
+    }
+
+    /**
+     * @return name of the engine profile the query runs with, or {@code null} for the options of the client
+     * @see xyz.niflheim.stockfish.engine.Profile
+     */
+    public String getProfile() {
+        return profile;
+    }
+
+    /**
+     * @return tag of the game the position belongs to, or {@code null} if the query is unrelated to others
+     */
+    public String getGame() {
+        return game;
+    }
+
+    /**
+     * @return what the engine does with its hash table if it last ran another game, or {@code null} for the
+     * policy of the profile or client
+     */
+    public HashPolicy getHashPolicy() {
+        return hashPolicy;
+    }
+
+    /**
+     * @return {@code true} if the query carries clocks, so Stockfish's time manager decides how long to think
+     */
+    public boolean isTimed() {
+        return wtime >= 0 || btime >= 0;
+    }
+
     /**
      * Standard Builder pattern to create {@link Query} instance.
      *
@@ -101,16 +194,18 @@ public class Query {
     public static class Builder {
         private static final String START_REGEX = "^";
         private static final String END_REGEX = "$";
-        private static final String FEN_REGEX = "(([rnbqkp1-8PRNBQK]{1,8}/){7}[rnbqkp1-8PRNBQK]{1,8})" +
-                "(\\s)([wb])(\\s[-kqKQ]{1,4}\\s)((-)|[a-h][1-8])(\\s)([0-9]+)(\\s)([0-9]+)";
         private static final String MOVE_REGEX = "([a-h][1-8]){2}";
 
-        private static final Pattern fenPattern = Pattern.compile(START_REGEX + FEN_REGEX + END_REGEX);
         private static final Pattern movePattern = Pattern.compile(START_REGEX + MOVE_REGEX + END_REGEX);
         private QueryType type;
         private String fen, move;
+        private PackedPosition position;
         private int difficulty = -1, depth = -1;
-        private long movetime = -1;
+        private long movetime = -1, nodes = -1;
+        private long wtime = -1, btime = -1, winc = -1, binc = -1;
+        private int movestogo = -1;
+        private String profile, game;
+        private HashPolicy hashPolicy;
 
         /**
          * @param type type of UCI query
@@ -124,6 +219,27 @@ public class Query {
             this.type = type;
         }
 
+        /**
+         * @param type type of UCI query, the position is then set with {@link #setPosition(PackedPosition)}
+         */
+        public Builder(QueryType type) {
+            this.type = type;
+        }
+
+        /**
+         * The query keeps the packed position and only converts it to FEN when it is sent to Stockfish, which
+         * saves memory for large batches.
+         *
+         * @param position packed chessboard position, replaces a FEN given to the constructor
+         * @return Builder
+         * @see PackedPosition
+         */
+        public Builder setPosition(PackedPosition position) {
+            this.position = position;
+            fen = null;
+            return this;
+        }
+
         /**
          * @param move users move in USI
          * @return Builder
@@ -167,28 +283,112 @@ public class Query {
             return this;
         }
 
+        /**
+         * @param nodes the number of nodes after which Stockfish stops searching,
+         *              if the number is less than 0, the search is not limited by nodes
+         * @return Builder
+         */
+        public Builder setNodes(long nodes) {
+            this.nodes = nodes;
+            return this;
+        }
+
+        /**
+         * Let Stockfish manage its time like in a real game instead of searching to a fixed depth or movetime.
+         *
+         * @param wtime time left on White's clock in milliseconds
+         * @param btime time left on Black's clock in milliseconds
+         * @param winc  White's increment per move in milliseconds
+         * @param binc  Black's increment per move in milliseconds
+         * @return Builder
+         */
+        public Builder setClock(long wtime, long btime, long winc, long binc) {
+            this.wtime = wtime;
+            this.btime = btime;
+            this.winc = winc;
+            this.binc = binc;
+            return this;
+        }
+
+        /**
+         * @param movestogo moves until the next time control, for classical time controls
+         * @return Builder
+         */
+        public Builder setMovesToGo(int movestogo) {
+            this.movestogo = movestogo;
+            return this;
+        }
+
+        /**
+         * Run the query on an engine set to a profile registered with the client, see
+         * {@link xyz.niflheim.stockfish.engine.StockfishClient.Builder#addProfile(xyz.niflheim.stockfish.engine.Profile)}.
+         * Queries with a profile the client does not know fail.
+         *
+         * @param profile name of the profile, or {@code null} for the options of the client
+         * @return Builder
+         */
+        public Builder setProfile(String profile) {
+            this.profile = profile;
+            return this;
+        }
+
+        /**
+         * Tag the query with the game its position belongs to. It is then sent to an idle engine that last ran
+         * the same game if there is one, whose hash table holds the positions searched before, and the hash
+         * policy is not applied between queries of the same game.
+         *
+         * @param game tag of the game, for example its id, or {@code null} for an unrelated query
+         * @return Builder
+         */
+        public Builder setGame(String game) {
+            this.game = game;
+            return this;
+        }
+
+        /**
+         * @param hashPolicy what the engine does with its hash table if it last ran another game,
+         *                   or {@code null} for the policy of the profile or client
+         * @return Builder
+         * @see xyz.niflheim.stockfish.engine.StockfishClient.Builder#setHashPolicy(HashPolicy)
+         */
+        public Builder setHashPolicy(HashPolicy hashPolicy) {
+            this.hashPolicy = hashPolicy;
+            return this;
+        }
+
         /**
          * Build Query.
          *
          * @return query to be converted to a UCI request to StockFish
-         * @throws IllegalArgumentException if the incoming line is not in FEN
-         * @throws IllegalStateException if QueryType or FEN is null
+         * @throws IllegalArgumentException if the incoming line is not in FEN or the FEN or packed position describes
+         *                                  an illegal position, see {@link FenValidator}
+         * @throws IllegalStateException if QueryType or FEN is null, or a Perft query has no depth
          */
         public Query build() throws IllegalArgumentException, IllegalStateException {
             if (type == null)
                 throw new IllegalStateException("Query type can not be null.");
 
-            if (fen == null)
+            if (fen == null && position == null)
                 throw new IllegalStateException("Query is missing FEN.");
 
-            if (!fenPattern.matcher(fen).matches()) {
-                throw new IllegalArgumentException("Incorrect FEN in Query: " + fen);
-            }
-            if (move != null) {
-                return new Query(type, fen, move, difficulty, depth, movetime);
-            }
+            String error = fen != null ? FenValidator.validate(fen) : FenValidator.validate(position);
+            if (error != null)
+                throw new IllegalArgumentException("Incorrect " + (fen != null ? "FEN in Query: " + fen : "packed position in Query: " + position)
+                        + " (" + error + ")");
 
-            return new Query(type, fen, difficulty, depth, movetime);
+            if (type == QueryType.Perft && depth < 1)
+                throw new IllegalStateException("Perft query needs a depth of at least 1.");
+            Query query = new Query(type, fen, move, difficulty, depth, movetime, nodes);
+            query.position = position;
+            query.wtime = wtime;
+            query.btime = btime;
+            query.winc = winc;
+            query.binc = binc;
+            query.movestogo = movestogo;
+            query.profile = profile;
+            query.game = game;
+            query.hashPolicy = hashPolicy;
+            return query;
         }
     }
 }
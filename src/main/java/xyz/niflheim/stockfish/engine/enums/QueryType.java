@@ -36,5 +36,10 @@ public enum QueryType {
     /**
      *
      */
-    Checkers
+    Checkers,
+    /**
+     * Count the leaf nodes of the move tree up to the query depth, divided by root move.
+     * A {@link xyz.niflheim.stockfish.engine.StockfishClient} splits the root moves across all of its engines.
+     */
+    Perft
 }
@@ -0,0 +1,153 @@
+/* Copyright 2018 David Cai Wang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.niflheim.stockfish.epd;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Test position in Extended Position Description: four FEN fields followed by operations such as
+ * {@code bm Nf3; am Qxb7; id "WAC.001";}.
+ *
+ * @author Niflheim
+ * @see <a href="https://www.chessprogramming.org/Extended_Position_Description">EPD</a>
+ * @since 3.1
+ */
+public class EpdPosition {
+    private final String fen;
+    private final Map<String, List<String>> operations;
+
+    private EpdPosition(String fen, Map<String, List<String>> operations) {
+        this.fen = fen;
+        this.operations = Collections.unmodifiableMap(operations);
+    }
+
+    /**
+     * @param line one EPD record
+     * @return parsed position
+     * @throws IllegalArgumentException if the record has less than four fields or an unterminated string
+     */
+    public static EpdPosition parse(String line) throws IllegalArgumentException {
+        String[] fields = line.trim().split("\\s+", 5);
+        if (fields.length < 4)
+            throw new IllegalArgumentException("Incorrect EPD: " + line);
+
+        Map<String, List<String>> operations = new LinkedHashMap<>();
+        if (fields.length == 5) {
+            List<String> operands = new ArrayList<>();
+            StringBuilder token = new StringBuilder();
+            boolean quoted = false;
+
+            for (char c : (fields[4] + ";").toCharArray()) {
+                if (quoted) {
+                    if (c == '"') {
+                        operands.add(token.toString());
+                        token.setLength(0);
+                        quoted = false;
+                    } else {
+                        token.append(c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ';' || Character.isWhitespace(c)) {
+                    if (token.length() > 0) {
+                        operands.add(token.toString());
+                        token.setLength(0);
+                    }
+                    if (c == ';' && !operands.isEmpty()) {
+                        operations.put(operands.get(0), Collections.unmodifiableList(new ArrayList<>(operands.subList(1, operands.size()))));
+                        operands.clear();
+                    }
+                } else {
+                    token.append(c);
+                }
+            }
+
+            if (quoted)
+                throw new IllegalArgumentException("Unterminated string in EPD: " + line);
+        }
+
+        String clocks = first(operations.get("hmvc"), "0") + " " + first(operations.get("fmvn"), "1");
+        return new EpdPosition(fields[0] + " " + fields[1] + " " + fields[2] + " " + fields[3] + " " + clocks, operations);
+    }
+
+    /**
+     * @param reader source of EPD records, one per line; blank lines and lines starting with {@code #} are skipped
+     * @return all positions of the source
+     * @throws IOException              if the source can not be read
+     * @throws IllegalArgumentException if a record is malformed
+     */
+    public static List<EpdPosition> parseAll(Reader reader) throws IOException, IllegalArgumentException {
+        List<EpdPosition> positions = new ArrayList<>();
+        BufferedReader lines = new BufferedReader(reader);
+        String line;
+        while ((line = lines.readLine()) != null)
+            if (!line.trim().isEmpty() && !line.startsWith("#"))
+                positions.add(parse(line));
+        return positions;
+    }
+
+    /**
+     * @return full FEN of the position, with move clocks from {@code hmvc} and {@code fmvn} or {@code 0 1}
+     */
+    public String getFen() {
+        return fen;
+    }
+
+    /**
+     * @return value of the {@code id} operation or {@code null}
+     */
+    public String getId() {
+        return first(operations.get("id"), null);
+    }
+
+    /**
+     * @return moves in SAN of the {@code bm} operation, the moves that solve the position
+     */
+    public List<String> getBestMoves() {
+        return operations.getOrDefault("bm", Collections.emptyList());
+    }
+
+    /**
+     * @return moves in SAN of the {@code am} operation, the moves to avoid
+     */
+    public List<String> getAvoidMoves() {
+        return operations.getOrDefault("am", Collections.emptyList());
+    }
+
+    /**
+     * @param opcode operation name, e.g. {@code c0}
+     * @return operands of the operation or {@code null} if the record has no such operation
+     */
+    public List<String> getOperation(String opcode) {
+        return operations.get(opcode);
+    }
+
+    @Override
+    public String toString() {
+        String id = getId();
+        return id != null ? id : fen;
+    }
+
+    private static String first(List<String> operands, String fallback) {
+        return operands == null || operands.isEmpty() ? fallback : operands.get(0);
+    }
+}
@@ -0,0 +1,89 @@
+/* Copyright 2018 David Cai Wang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.niflheim.stockfish.epd;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Summary of an {@link EpdRunner} run over a test suite.
+ *
+ * @author Niflheim
+ * @since 3.1
+ */
+public class EpdReport {
+    private final List<EpdResult> results;
+    private final long elapsedNanos;
+
+    EpdReport(List<EpdResult> results, long elapsedNanos) {
+        this.results = Collections.unmodifiableList(results);
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return result of every position in suite order
+     */
+    public List<EpdResult> getResults() {
+        return results;
+    }
+
+    /**
+     * @return number of positions in the suite
+     */
+    public int getTotal() {
+        return results.size();
+    }
+
+    /**
+     * @return number of solved positions
+     */
+    public int getSolved() {
+        return (int) results.stream().filter(EpdResult::isSolved).count();
+    }
+
+    /**
+     * @return number of positions that could not be tested, e.g. because of an illegal {@code bm} move
+     */
+    public int getFailed() {
+        return (int) results.stream().filter(result -> result.getError() != null).count();
+    }
+
+    /**
+     * @return sum of the times to solution of all solved positions in milliseconds
+     */
+    public long getTotalTimeToSolution() {
+        return results.stream().filter(EpdResult::isSolved).mapToLong(EpdResult::getTimeToSolution).sum();
+    }
+
+    /**
+     * @return wall clock time of the whole run in nanoseconds
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * @return positions tested per second of wall clock time across the pool
+     */
+    public double getPositionsPerSecond() {
+        return elapsedNanos == 0 ? 0 : results.size() * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Solved %d/%d, failed %d, total time to solution %d ms, %.2f positions/s",
+                getSolved(), getTotal(), getFailed(), getTotalTimeToSolution(), getPositionsPerSecond());
+    }
+}
@@ -0,0 +1,104 @@
+/* Copyright 2018 David Cai Wang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.niflheim.stockfish.epd;
+
+/**
+ * Outcome of one {@link EpdPosition} in an {@link EpdReport}.
+ *
+ * @author Niflheim
+ * @since 3.1
+ */
+public class EpdResult {
+    private final EpdPosition position;
+    private final String bestMove;
+    private final boolean solved;
+    private final long timeToSolution, time, nodes;
+    private final int depth;
+    private final Throwable error;
+
+    EpdResult(EpdPosition position, String bestMove, boolean solved, long timeToSolution, long time, long nodes, int depth, Throwable error) {
+        this.position = position;
+        this.bestMove = bestMove;
+        this.solved = solved;
+        this.timeToSolution = timeToSolution;
+        this.time = time;
+        this.nodes = nodes;
+        this.depth = depth;
+        this.error = error;
+    }
+
+    /**
+     * @return the tested position
+     */
+    public EpdPosition getPosition() {
+        return position;
+    }
+
+    /**
+     * @return move Stockfish played in UCI notation, {@code null} if the position failed
+     */
+    public String getBestMove() {
+        return bestMove;
+    }
+
+    /**
+     * @return {@code true} if the move is one of the {@code bm} moves and none of the {@code am} moves
+     */
+    public boolean isSolved() {
+        return solved;
+    }
+
+    /**
+     * @return search time in milliseconds after which Stockfish found the solution and kept it until the end, -1 if unsolved
+     */
+    public long getTimeToSolution() {
+        return timeToSolution;
+    }
+
+    /**
+     * @return total search time in milliseconds as reported by Stockfish
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * @return number of nodes searched
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * @return depth of the last completed iteration
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return exception that stopped the test of this position or {@code null}
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        if (error != null)
+            return position + ": " + error;
+        return position + ": " + bestMove + (solved ? " solved in " + timeToSolution + " ms" : " failed");
+    }
+}
@@ -0,0 +1,175 @@
+/* Copyright 2018 David Cai Wang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.niflheim.stockfish.epd;
+
+import xyz.niflheim.stockfish.chess.Position;
+import xyz.niflheim.stockfish.engine.BestMoveResult;
+import xyz.niflheim.stockfish.engine.StockfishClient;
+import xyz.niflheim.stockfish.engine.StockfishSession;
+import xyz.niflheim.stockfish.engine.enums.Query;
+import xyz.niflheim.stockfish.engine.enums.QueryType;
+import xyz.niflheim.stockfish.exceptions.StockfishEngineException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs EPD test suites across all engines of a {@link StockfishClient}.
+ * <p>
+ * Every engine of the pool is leased for the whole run and works through the suite position by position,
+ * starting each one with {@code ucinewgame} so results do not depend on which positions an engine saw before.
+ * A position counts as solved if the move Stockfish plays is one of its {@code bm} moves and none of its
+ * {@code am} moves. Time to solution is taken from the {@code info} lines: it is the search time after which
+ * every reported principal variation started with a solving move.
+ *
+ * @author Niflheim
+ * @since 3.1
+ */
+public class EpdRunner {
+    private final StockfishClient client;
+    private final long movetime, nodes;
+
+    private EpdRunner(Builder builder) {
+        client = builder.client;
+        movetime = builder.movetime;
+        nodes = builder.nodes;
+    }
+
+    /**
+     * Test every position of the suite, blocking until all are done.
+     *
+     * @param suite positions to test
+     * @return results in suite order together with the summary
+     * @throws InterruptedException if interrupted while waiting for the engines
+     */
+    public EpdReport run(List<EpdPosition> suite) throws InterruptedException {
+        EpdResult[] results = new EpdResult[suite.size()];
+        AtomicInteger next = new AtomicInteger();
+        int workers = Math.max(1, Math.min(client.getInstances(), suite.size()));
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+
+        long started = System.nanoTime();
+        try {
+            List<Future<?>> running = new ArrayList<>();
+            for (int i = 0; i < workers; i++)
+                running.add(executor.submit(() -> {
+                    try (StockfishSession session = client.openSession()) {
+                        int index;
+                        while ((index = next.getAndIncrement()) < results.length)
+                            results[index] = test(session, suite.get(index));
+                    }
+                    return null;
+                }));
+
+            for (Future<?> worker : running)
+                worker.get();
+        } catch (ExecutionException e) {
+            throw new StockfishEngineException("EPD run failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return new EpdReport(Arrays.asList(results), System.nanoTime() - started);
+    }
+
+    private EpdResult test(StockfishSession session, EpdPosition epd) {
+        try {
+            Position position = Position.fromFen(epd.getFen());
+            String fen = position.toFen();
+            List<String> legal = Arrays.asList(session.submit(new Query.Builder(QueryType.Legal_Moves, fen).build()).trim().split("\\s+"));
+
+            Set<String> best = new HashSet<>(), avoid = new HashSet<>();
+            for (String san : epd.getBestMoves())
+                best.add(position.toUci(san, legal));
+            for (String san : epd.getAvoidMoves())
+                avoid.add(position.toUci(san, legal));
+            if (best.isEmpty() && avoid.isEmpty())
+                throw new IllegalArgumentException("EPD has neither bm nor am: " + epd);
+
+            long[] solvedSince = {-1};
+            session.newGame();
+            BestMoveResult result = session.analyse(new Query.Builder(QueryType.Best_Move, fen)
+                    .setMovetime(movetime)
+                    .setNodes(nodes)
+                    .build(), line -> {
+                if (!solves(line.getBestMove(), best, avoid))
+                    solvedSince[0] = -1;
+                else if (solvedSince[0] < 0)
+                    solvedSince[0] = line.getTime();
+            });
+
+            boolean solved = solves(result.getBestMove(), best, avoid);
+            long timeToSolution = !solved ? -1 : solvedSince[0] >= 0 ? solvedSince[0] : result.getTime();
+            return new EpdResult(epd, result.getBestMove(), solved, timeToSolution, result.getTime(), result.getNodes(), result.getDepth(), null);
+        } catch (IllegalArgumentException | StockfishEngineException e) {
+            return new EpdResult(epd, null, false, -1, 0, 0, 0, e);
+        }
+    }
+
+    private static boolean solves(String move, Set<String> best, Set<String> avoid) {
+        return (best.isEmpty() || best.contains(move)) && !avoid.contains(move);
+    }
+
+    /**
+     * Standard Builder pattern to create {@link EpdRunner} instance.
+     */
+    public static class Builder {
+        private final StockfishClient client;
+        private long movetime = -1, nodes = -1;
+
+        /**
+         * @param client client whose engines run the suite
+         */
+        public Builder(StockfishClient client) {
+            this.client = client;
+        }
+
+        /**
+         * @param movetime search time per position in milliseconds
+         * @return Builder to continue creating EpdRunner
+         */
+        public final Builder setMovetime(long movetime) {
+            this.movetime = movetime;
+            return this;
+        }
+
+        /**
+         * @param nodes number of nodes searched per position, unlike movetime independent of the load of the machine
+         * @return Builder to continue creating EpdRunner
+         */
+        public final Builder setNodes(long nodes) {
+            this.nodes = nodes;
+            return this;
+        }
+
+        /**
+         * @return ready EpdRunner with fields set
+         */
+        public final EpdRunner build() {
+            if (movetime < 0 && nodes < 0)
+                throw new IllegalStateException("EPD runner needs a movetime or a nodes budget per position.");
+
+            return new EpdRunner(this);
+        }
+    }
+}
@@ -15,7 +15,7 @@
 package xyz.niflheim.stockfish.exceptions;
 
 /**
- * Never throws.
+ * Thrown when the engine pool of a {@link xyz.niflheim.stockfish.engine.StockfishClient} can not be changed.
  *
  * @author Niflheim
  * @since 1.0
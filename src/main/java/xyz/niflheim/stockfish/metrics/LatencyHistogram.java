@@ -0,0 +1,152 @@
+/* Copyright 2018 David Cai Wang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.niflheim.stockfish.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with log-linear buckets, in the spirit of HdrHistogram.
+ * <p>
+ * Values below 128 are recorded exactly, larger values land in one of 64 linear sub-buckets
+ * per power of two, so every percentile is reported with a relative error below 1.6%.
+ * Recording is wait-free apart from the max/min updates and never allocates.
+ *
+ * @author Niflheim
+ * @since 3.1
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 7;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int HALF_COUNT = SUB_COUNT >> 1;
+    private static final int BUCKETS = (64 - SUB_BITS) * HALF_COUNT + SUB_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+
+    /**
+     * Record a single value. Negative values are recorded as zero.
+     *
+     * @param value value to record, usually nanoseconds
+     */
+    public void record(long value) {
+        if (value < 0)
+            value = 0;
+
+        counts.incrementAndGet(indexOf(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) ;
+        while (value < (current = min.get()) && !min.compareAndSet(current, value)) ;
+    }
+
+    /**
+     * @return number of recorded values
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * @return sum of all recorded values
+     */
+    public long getSum() {
+        return sum.get();
+    }
+
+    /**
+     * @return largest recorded value, or 0 if nothing was recorded
+     */
+    public long getMax() {
+        long value = max.get();
+        return value == Long.MIN_VALUE ? 0 : value;
+    }
+
+    /**
+     * @return smallest recorded value, or 0 if nothing was recorded
+     */
+    public long getMin() {
+        long value = min.get();
+        return value == Long.MAX_VALUE ? 0 : value;
+    }
+
+    /**
+     * @return arithmetic mean of the recorded values, or 0 if nothing was recorded
+     */
+    public double getMean() {
+        long n = count.get();
+        return n == 0 ? 0 : (double) sum.get() / n;
+    }
+
+    /**
+     * @param percentile percentile in range [0, 100], e.g. 99.9
+     * @return highest value equivalent to the value at the given percentile, or 0 if nothing was recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = 0;
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++)
+            total += snapshot[i] = counts.get(i);
+
+        if (total == 0)
+            return 0;
+
+        long target = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= target)
+                return Math.min(highestEquivalentValue(i), getMax());
+        }
+
+        return getMax();
+    }
+
+    /**
+     * Clear all recorded values.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++)
+            counts.set(i, 0);
+
+        count.set(0);
+        sum.set(0);
+        max.set(Long.MIN_VALUE);
+        min.set(Long.MAX_VALUE);
+    }
+
+    private static int indexOf(long value) {
+        int msb = 63 - Long.numberOfLeadingZeros(value | 1);
+        if (msb < SUB_BITS)
+            return (int) value;
+
+        int shift = msb - SUB_BITS + 1;
+        return shift * HALF_COUNT + (int) (value >>> shift);
+    }
+
+    private static long highestEquivalentValue(int index) {
+        if (index < SUB_COUNT)
+            return index;
+
+        int shift = index / HALF_COUNT - 1;
+        long sub = index - shift * HALF_COUNT;
+        return ((sub + 1) << shift) - 1;
+    }
+}
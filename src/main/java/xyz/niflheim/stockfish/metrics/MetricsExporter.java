@@ -0,0 +1,56 @@
+/* Copyright 2018 David Cai Wang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.niflheim.stockfish.metrics;
+
+import java.util.Map;
+
+/**
+ * Service provider interface to bridge {@link StockfishMetrics} to an external monitoring system.
+ * <p>
+ * Implementations are called from a single thread, once per metric on every export run, followed by
+ * a call to {@link #flush()}. Metric names are dot separated and tags are never {@code null}.
+ *
+ * @author Niflheim
+ * @since 3.1
+ */
+public interface MetricsExporter {
+
+    /**
+     * @param name  metric name, e.g. {@code stockfish.queries.completed}
+     * @param tags  dimensions of the metric, e.g. {@code type=Best_Move}
+     * @param value monotonically increasing count
+     */
+    void counter(String name, Map<String, String> tags, long value);
+
+    /**
+     * @param name  metric name, e.g. {@code stockfish.queue.depth}
+     * @param tags  dimensions of the metric
+     * @param value current value
+     */
+    void gauge(String name, Map<String, String> tags, long value);
+
+    /**
+     * @param name      metric name, e.g. {@code stockfish.query.latency}
+     * @param tags      dimensions of the metric
+     * @param histogram live histogram of nanosecond values
+     */
+    void histogram(String name, Map<String, String> tags, LatencyHistogram histogram);
+
+    /**
+     * Called after all metrics of one export run were passed to the exporter.
+     */
+    default void flush() {
+    }
+}
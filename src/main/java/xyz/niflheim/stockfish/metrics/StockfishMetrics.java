@@ -0,0 +1,364 @@
+/* Copyright 2018 David Cai Wang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.niflheim.stockfish.metrics;
+
+import xyz.niflheim.stockfish.engine.enums.QueryType;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics registry of a {@link xyz.niflheim.stockfish.engine.StockfishClient}.
+ * <p>
+ * All counters and histograms are lock-free, so recording is cheap enough to stay enabled in production.
+ * Times are in nanoseconds. Use {@link #exportTo(MetricsExporter)} to push the current state to a
+ * monitoring system.
+ *
+ * @author Niflheim
+ * @since 3.1
+ */
+public class StockfishMetrics {
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder crashed = new LongAdder();
+    private final LongAdder nodes = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder storeHits = new LongAdder();
+    private final LongAdder bookHits = new LongAdder();
+    private final LongAdder speculationHits = new LongAdder();
+    private final LongAdder speculationCancelled = new LongAdder();
+    private final LongAdder profileSwitches = new LongAdder();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger busy = new AtomicInteger();
+
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+    private final Map<QueryType, LongAdder> failed = new EnumMap<>(QueryType.class);
+    private final Map<QueryType, LatencyHistogram> latency = new EnumMap<>(QueryType.class);
+    private final ConcurrentMap<Integer, LatencyHistogram> engineTime = new ConcurrentHashMap<>();
+
+    public StockfishMetrics() {
+        for (QueryType type : QueryType.values()) {
+            failed.put(type, new LongAdder());
+            latency.put(type, new LatencyHistogram());
+        }
+    }
+
+    /**
+     * Record a query entering the queue.
+     */
+    public void querySubmitted() {
+        submitted.increment();
+        queued.incrementAndGet();
+    }
+
+    /**
+     * Record a query leaving the queue because an engine was assigned to it.
+     *
+     * @param waitNanos time the query spent waiting for an engine
+     */
+    public void queryStarted(long waitNanos) {
+        queued.decrementAndGet();
+        busy.incrementAndGet();
+        queueWait.record(waitNanos);
+    }
+
+    /**
+     * Record a query that produced a result.
+     *
+     * @param type         type of the query
+     * @param engine       id of the engine that ran the query
+     * @param engineNanos  time spent in the engine
+     * @param latencyNanos time since the query was submitted
+     */
+    public void queryCompleted(QueryType type, int engine, long engineNanos, long latencyNanos) {
+        busy.decrementAndGet();
+        completed.increment();
+        engineTime(engine).record(engineNanos);
+        latency.get(type).record(latencyNanos);
+    }
+
+    /**
+     * Record a query that failed with an exception.
+     *
+     * @param type        type of the query
+     * @param engine      id of the engine that ran the query
+     * @param engineNanos time spent in the engine
+     * @param crash       whether the engine process died
+     */
+    public void queryFailed(QueryType type, int engine, long engineNanos, boolean crash) {
+        busy.decrementAndGet();
+        failed.get(type).increment();
+        engineTime(engine).record(engineNanos);
+        if (crash)
+            crashed.increment();
+    }
+
+    /**
+     * Record nodes searched by a query, reported by Stockfish at the end of the search.
+     *
+     * @param count number of nodes
+     */
+    public void nodesSearched(long count) {
+        nodes.add(count);
+    }
+
+    /**
+     * Record a query that joined an identical query in flight instead of taking an engine.
+     */
+    public void queryCoalesced() {
+        coalesced.increment();
+    }
+
+    /**
+     * Record a query answered from the opening book without using an engine.
+     */
+    public void bookHit() {
+        bookHits.increment();
+    }
+
+    /**
+     * Record a query answered from the result store without using an engine.
+     */
+    public void storeHit() {
+        storeHits.increment();
+    }
+
+    /**
+     * Record a query answered from a speculative search without using an engine.
+     */
+    public void speculationHit() {
+        speculationHits.increment();
+    }
+
+    /**
+     * Record a speculative search stopped because real work arrived.
+     */
+    public void speculationCancelled() {
+        speculationCancelled.increment();
+    }
+
+    /**
+     * Record an engine changing its options from one profile to another before running a query.
+     */
+    public void profileSwitched() {
+        profileSwitches.increment();
+    }
+
+    /**
+     * Record a query that was dropped before an engine was assigned to it.
+     */
+    public void queryDropped() {
+        queued.decrementAndGet();
+    }
+
+    /**
+     * @return number of queries waiting for an engine
+     */
+    public int getQueueDepth() {
+        return queued.get();
+    }
+
+    /**
+     * @return number of engines currently running a query
+     */
+    public int getBusyEngines() {
+        return busy.get();
+    }
+
+    /**
+     * @return total number of submitted queries
+     */
+    public long getSubmitted() {
+        return submitted.sum();
+    }
+
+    /**
+     * @return total number of queries that produced a result
+     */
+    public long getCompleted() {
+        return completed.sum();
+    }
+
+    /**
+     * @return total number of queries that failed with an exception
+     */
+    public long getFailed() {
+        return failed.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    /**
+     * @param type type of query
+     * @return number of failed queries of the given type
+     */
+    public long getFailed(QueryType type) {
+        return failed.get(type).sum();
+    }
+
+    /**
+     * @return number of failed queries after which the engine process was no longer alive
+     */
+    public long getCrashed() {
+        return crashed.sum();
+    }
+
+    /**
+     * @return total number of nodes searched
+     */
+    public long getNodes() {
+        return nodes.sum();
+    }
+
+    /**
+     * @return nodes searched per second of engine time, the speed of a single busy engine
+     */
+    public double getNodesPerSecond() {
+        long busy = getEngineBusyNanos();
+        return busy == 0 ? 0 : getNodes() * 1e9 / busy;
+    }
+
+    /**
+     * @return number of queries that received the result of an identical query in flight
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    /**
+     * @return number of queries answered from the opening book
+     */
+    public long getBookHits() {
+        return bookHits.sum();
+    }
+
+    /**
+     * @return number of queries answered from stored searches at least as deep
+     */
+    public long getStoreHits() {
+        return storeHits.sum();
+    }
+
+    /**
+     * @return number of queries answered from speculative searches
+     */
+    public long getSpeculationHits() {
+        return speculationHits.sum();
+    }
+
+    /**
+     * @return number of speculative searches stopped because real work arrived
+     */
+    public long getSpeculationCancelled() {
+        return speculationCancelled.sum();
+    }
+
+    /**
+     * @return number of times an engine changed its options to another profile
+     */
+    public long getProfileSwitches() {
+        return profileSwitches.sum();
+    }
+
+    /**
+     * @return time queries waited for an engine
+     */
+    public LatencyHistogram getQueueWait() {
+        return queueWait;
+    }
+
+    /**
+     * @param type type of query
+     * @return time from submission to result for queries of the given type
+     */
+    public LatencyHistogram getLatency(QueryType type) {
+        return latency.get(type);
+    }
+
+    /**
+     * @return busy time per engine id
+     */
+    public Map<Integer, LatencyHistogram> getEngineTime() {
+        return Collections.unmodifiableMap(engineTime);
+    }
+
+    /**
+     * @return total time all engines spent running queries
+     */
+    public long getEngineBusyNanos() {
+        return engineTime.values().stream().mapToLong(LatencyHistogram::getSum).sum();
+    }
+
+    /**
+     * Clear counters and histograms. Gauges such as queue depth are kept.
+     */
+    public void reset() {
+        submitted.reset();
+        completed.reset();
+        crashed.reset();
+        nodes.reset();
+        coalesced.reset();
+        storeHits.reset();
+        bookHits.reset();
+        speculationHits.reset();
+        speculationCancelled.reset();
+        profileSwitches.reset();
+        queueWait.reset();
+        failed.values().forEach(LongAdder::reset);
+        latency.values().forEach(LatencyHistogram::reset);
+        engineTime.values().forEach(LatencyHistogram::reset);
+    }
+
+    /**
+     * Pass the current state of every metric to the exporter.
+     *
+     * @param exporter exporter to receive the metrics
+     */
+    public void exportTo(MetricsExporter exporter) {
+        Map<String, String> none = Collections.emptyMap();
+
+        exporter.counter("stockfish.queries.submitted", none, getSubmitted());
+        exporter.counter("stockfish.queries.completed", none, getCompleted());
+        exporter.counter("stockfish.engines.crashed", none, getCrashed());
+        exporter.counter("stockfish.nodes.searched", none, getNodes());
+        exporter.counter("stockfish.queries.coalesced", none, getCoalesced());
+        exporter.counter("stockfish.store.hits", none, getStoreHits());
+        exporter.counter("stockfish.book.hits", none, getBookHits());
+        exporter.counter("stockfish.speculation.hits", none, getSpeculationHits());
+        exporter.counter("stockfish.speculation.cancelled", none, getSpeculationCancelled());
+        exporter.counter("stockfish.profile.switches", none, getProfileSwitches());
+        exporter.gauge("stockfish.queue.depth", none, getQueueDepth());
+        exporter.gauge("stockfish.engines.busy", none, getBusyEngines());
+        exporter.histogram("stockfish.queue.wait", none, queueWait);
+
+        for (QueryType type : QueryType.values()) {
+            Map<String, String> tags = Collections.singletonMap("type", type.name());
+            exporter.counter("stockfish.queries.failed", tags, failed.get(type).sum());
+            exporter.histogram("stockfish.query.latency", tags, latency.get(type));
+        }
+
+        engineTime.forEach((engine, histogram) ->
+                exporter.histogram("stockfish.engine.time", Collections.singletonMap("engine", engine.toString()), histogram));
+
+        exporter.flush();
+    }
+
+    private LatencyHistogram engineTime(int engine) {
+        return engineTime.computeIfAbsent(engine, e -> new LatencyHistogram());
+    }
+}
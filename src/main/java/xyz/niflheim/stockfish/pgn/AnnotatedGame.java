@@ -0,0 +1,110 @@
+/* Copyright 2018 David Cai Wang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.niflheim.stockfish.pgn;
+
+import xyz.niflheim.stockfish.chess.Position;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result of annotating a {@link PgnGame}: one {@link AnnotatedMove} per ply, or the error that stopped the annotation.
+ *
+ * @author Niflheim
+ * @see GameAnnotator
+ * @since 3.1
+ */
+public class AnnotatedGame {
+    private final PgnGame game;
+    private final List<AnnotatedMove> moves;
+    private final int engine;
+    private final Throwable error;
+
+    AnnotatedGame(PgnGame game, List<AnnotatedMove> moves, int engine, Throwable error) {
+        this.game = game;
+        this.moves = Collections.unmodifiableList(moves);
+        this.engine = engine;
+        this.error = error;
+    }
+
+    /**
+     * @return the annotated game
+     */
+    public PgnGame getGame() {
+        return game;
+    }
+
+    /**
+     * @return annotated moves in game order, empty if the annotation failed
+     */
+    public List<AnnotatedMove> getMoves() {
+        return moves;
+    }
+
+    /**
+     * @return id of the engine that analysed every position of the game, -1 if none was assigned
+     */
+    public int getEngineId() {
+        return engine;
+    }
+
+    /**
+     * @return exception that stopped the annotation or {@code null}
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    /**
+     * @return {@code true} if every move was annotated
+     */
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    /**
+     * @param classification quality of move
+     * @return number of moves of that quality
+     */
+    public long count(MoveClassification classification) {
+        return moves.stream().filter(move -> move.getClassification() == classification).count();
+    }
+
+    /**
+     * @return the game as PGN with a move suffix annotation and an evaluation comment after every move
+     */
+    public String toPgn() {
+        StringBuilder pgn = new StringBuilder();
+        for (Map.Entry<String, String> tag : game.getTags().entrySet())
+            pgn.append('[').append(tag.getKey()).append(" \"")
+                    .append(tag.getValue().replace("\\", "\\\\").replace("\"", "\\\"")).append("\"]\n");
+        if (!game.getTags().isEmpty())
+            pgn.append('\n');
+
+        Position start = Position.fromFen(game.getStartFen());
+        int offset = start.isWhiteToMove() ? 0 : 1;
+        for (AnnotatedMove move : moves) {
+            boolean white = (move.getPly() + offset) % 2 == 0;
+            if (white || move.getPly() == 0)
+                pgn.append(start.getFullmoveNumber() + (move.getPly() + offset) / 2).append(white ? ". " : "... ");
+
+            pgn.append(move.getSan().replaceAll("[!?]", "")).append(move.getClassification().getSuffix())
+                    .append(" {").append(move.getEvaluation()).append("} ");
+        }
+
+        return pgn.append(game.getResult()).append('\n').toString();
+    }
+}
@@ -0,0 +1,103 @@
+/* Copyright 2018 David Cai Wang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.niflheim.stockfish.pgn;
+
+import xyz.niflheim.stockfish.engine.Evaluation;
+
+/**
+ * One move of an {@link AnnotatedGame} with the engine's verdict.
+ *
+ * @author Niflheim
+ * @since 3.1
+ */
+public class AnnotatedMove {
+    private final int ply;
+    private final String san, move, fen, bestMove;
+    private final Evaluation evaluation;
+    private final int loss;
+    private final MoveClassification classification;
+
+    AnnotatedMove(int ply, String san, String move, String fen, String bestMove, Evaluation evaluation, int loss, MoveClassification classification) {
+        this.ply = ply;
+        this.san = san;
+        this.move = move;
+        this.fen = fen;
+        this.bestMove = bestMove;
+        this.evaluation = evaluation;
+        this.loss = loss;
+        this.classification = classification;
+    }
+
+    /**
+     * @return half-move index in the game, starting at 0
+     */
+    public int getPly() {
+        return ply;
+    }
+
+    /**
+     * @return move as written in the PGN
+     */
+    public String getSan() {
+        return san;
+    }
+
+    /**
+     * @return move in UCI notation
+     */
+    public String getMove() {
+        return move;
+    }
+
+    /**
+     * @return FEN of the position before the move
+     */
+    public String getFen() {
+        return fen;
+    }
+
+    /**
+     * @return move Stockfish prefers in the position before the move, in UCI notation
+     */
+    public String getBestMove() {
+        return bestMove;
+    }
+
+    /**
+     * @return evaluation of the position after the move from White's point of view
+     */
+    public Evaluation getEvaluation() {
+        return evaluation;
+    }
+
+    /**
+     * @return centipawns the move loses against the best move from the mover's point of view, never negative
+     */
+    public int getLoss() {
+        return loss;
+    }
+
+    /**
+     * @return quality of the move
+     */
+    public MoveClassification getClassification() {
+        return classification;
+    }
+
+    @Override
+    public String toString() {
+        return san + classification.getSuffix() + " " + evaluation;
+    }
+}
@@ -0,0 +1,291 @@
+/* Copyright 2018 David Cai Wang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.niflheim.stockfish.pgn;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import xyz.niflheim.stockfish.chess.Position;
+import xyz.niflheim.stockfish.engine.BestMoveResult;
+import xyz.niflheim.stockfish.engine.Evaluation;
+import xyz.niflheim.stockfish.engine.StockfishClient;
+import xyz.niflheim.stockfish.engine.StockfishSession;
+import xyz.niflheim.stockfish.engine.enums.Query;
+import xyz.niflheim.stockfish.engine.enums.QueryType;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Annotates whole games with evaluations and mistake classification.
+ * <p>
+ * Every game is analysed on a single engine leased through a {@link StockfishSession}, so each search
+ * starts with the hash table of the neighbouring plies. Analysing backward, from the final position to
+ * the first, lets the transposition table carry knowledge of how the game continued into earlier
+ * positions and usually gives more accurate results at the same depth. Different games run in
+ * parallel on different engines of the pool.
+ * <p>
+ * A move loses the difference between the evaluation of the best move and the evaluation after the move,
+ * both seen from the mover and clamped to {@code ±}{@link #CLAMP} centipawns so that one side converting
+ * a won position differently is not reported as a blunder.
+ *
+ * @author Niflheim
+ * @since 3.1
+ */
+public class GameAnnotator {
+
+    private static final Log log = LogFactory.getLog(GameAnnotator.class);
+
+    /**
+     * Evaluations are clamped to this many centipawns before losses are computed.
+     */
+    public static final int CLAMP = 1000;
+
+    private final StockfishClient client;
+    private final int depth;
+    private final long movetime;
+    private final boolean backward;
+    private final int inaccuracy, mistake, blunder;
+    private final int parallelism;
+    private final ExecutorService executor;
+
+    private GameAnnotator(Builder builder) {
+        client = builder.client;
+        depth = builder.depth;
+        movetime = builder.movetime;
+        backward = builder.backward;
+        inaccuracy = builder.inaccuracy;
+        mistake = builder.mistake;
+        blunder = builder.blunder;
+        parallelism = builder.parallelism > 0 ? builder.parallelism : client.getInstances();
+        executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "stockfish-annotator");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Annotate one game on the calling thread, waiting for an idle engine first.
+     *
+     * @param game game to annotate
+     * @return annotated game
+     * @throws InterruptedException     if interrupted while waiting for an engine
+     * @throws IllegalArgumentException if the game contains an illegal or ambiguous move
+     * @throws xyz.niflheim.stockfish.exceptions.StockfishEngineException if the engine fails
+     */
+    public AnnotatedGame annotate(PgnGame game) throws InterruptedException {
+        try (StockfishSession session = client.openSession()) {
+            return annotate(game, session);
+        }
+    }
+
+    /**
+     * Annotate many games in parallel and stream them in input order.
+     * <p>
+     * Games are pulled from {@code games} only as results are consumed, with at most one game per engine
+     * in flight. A game that can not be annotated is streamed with its error, see {@link AnnotatedGame#getError()}.
+     *
+     * @param games games to annotate, consumed lazily
+     * @return annotated games in the order of {@code games}
+     */
+    public Stream<AnnotatedGame> annotateAll(Iterable<PgnGame> games) {
+        Iterator<PgnGame> source = games.iterator();
+        Deque<CompletableFuture<AnnotatedGame>> pending = new ArrayDeque<>();
+
+        Iterator<AnnotatedGame> results = new Iterator<AnnotatedGame>() {
+            @Override
+            public boolean hasNext() {
+                return !pending.isEmpty() || source.hasNext();
+            }
+
+            @Override
+            public AnnotatedGame next() {
+                while (pending.size() < parallelism && source.hasNext()) {
+                    PgnGame game = source.next();
+                    pending.addLast(CompletableFuture.supplyAsync(() -> annotateOrFail(game), executor));
+                }
+                if (pending.isEmpty())
+                    throw new NoSuchElementException();
+
+                return pending.pollFirst().join();
+            }
+        };
+
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(results, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    private AnnotatedGame annotateOrFail(PgnGame game) {
+        try {
+            return annotate(game);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new AnnotatedGame(game, Collections.emptyList(), -1, e);
+        } catch (RuntimeException e) {
+            log.warn("Can not annotate " + game, e);
+            return new AnnotatedGame(game, Collections.emptyList(), -1, e);
+        }
+    }
+
+    private AnnotatedGame annotate(PgnGame game, StockfishSession session) {
+        session.newGame();
+
+        List<String> sans = game.getMoves();
+        List<Position> positions = new ArrayList<>(sans.size() + 1);
+        List<String> moves = new ArrayList<>(sans.size());
+
+        Position position = Position.fromFen(game.getStartFen());
+        positions.add(position);
+        for (String san : sans) {
+            String legal = session.submit(new Query.Builder(QueryType.Legal_Moves, position.toFen()).build());
+            String move = position.toUci(san, Arrays.asList(legal.trim().split("\\s+")));
+            position = position.play(move);
+            moves.add(move);
+            positions.add(position);
+        }
+
+        BestMoveResult[] results = new BestMoveResult[positions.size()];
+        for (int i = 0; i < results.length; i++) {
+            int ply = backward ? results.length - 1 - i : i;
+            results[ply] = session.analyse(new Query.Builder(QueryType.Best_Move, positions.get(ply).toFen())
+                    .setDepth(depth)
+                    .setMovetime(movetime)
+                    .build());
+        }
+
+        List<AnnotatedMove> annotated = new ArrayList<>(moves.size());
+        for (int ply = 0; ply < moves.size(); ply++) {
+            Evaluation after = results[ply + 1].getEvaluation();
+            int best = clamp(results[ply].getEvaluation().toCentipawns());
+            int played = clamp(-after.toCentipawns());
+
+            boolean isBest = moves.get(ply).equals(results[ply].getBestMove());
+            int loss = isBest ? 0 : Math.max(0, best - played);
+
+            annotated.add(new AnnotatedMove(ply, sans.get(ply), moves.get(ply), positions.get(ply).toFen(),
+                    results[ply].getBestMove(), positions.get(ply + 1).isWhiteToMove() ? after : after.negate(),
+                    loss, isBest ? MoveClassification.BEST : classify(loss)));
+        }
+
+        return new AnnotatedGame(game, annotated, session.getEngineId(), null);
+    }
+
+    private MoveClassification classify(int loss) {
+        if (loss >= blunder)
+            return MoveClassification.BLUNDER;
+        if (loss >= mistake)
+            return MoveClassification.MISTAKE;
+        if (loss >= inaccuracy)
+            return MoveClassification.INACCURACY;
+        return MoveClassification.GOOD;
+    }
+
+    private static int clamp(int centipawns) {
+        return Math.max(-CLAMP, Math.min(CLAMP, centipawns));
+    }
+
+    /**
+     * Standard Builder pattern to create {@link GameAnnotator} instance.
+     */
+    public static class Builder {
+        private final StockfishClient client;
+        private int depth = -1;
+        private long movetime = -1;
+        private boolean backward = false;
+        private int inaccuracy = 50, mistake = 100, blunder = 300;
+        private int parallelism = 0;
+
+        /**
+         * @param client client whose engines analyse the games
+         */
+        public Builder(StockfishClient client) {
+            this.client = client;
+        }
+
+        /**
+         * @param depth search depth per position
+         * @return Builder to continue creating GameAnnotator
+         */
+        public final Builder setDepth(int depth) {
+            this.depth = depth;
+            return this;
+        }
+
+        /**
+         * @param movetime search time per position in milliseconds
+         * @return Builder to continue creating GameAnnotator
+         */
+        public final Builder setMovetime(long movetime) {
+            this.movetime = movetime;
+            return this;
+        }
+
+        /**
+         * @param backward whether to analyse from the last position to the first (default false)
+         * @return Builder to continue creating GameAnnotator
+         */
+        public final Builder setBackward(boolean backward) {
+            this.backward = backward;
+            return this;
+        }
+
+        /**
+         * @param inaccuracy minimum loss in centipawns of an inaccuracy (default 50)
+         * @param mistake    minimum loss in centipawns of a mistake (default 100)
+         * @param blunder    minimum loss in centipawns of a blunder (default 300)
+         * @return Builder to continue creating GameAnnotator
+         */
+        public final Builder setThresholds(int inaccuracy, int mistake, int blunder) {
+            if (inaccuracy <= 0 || mistake < inaccuracy || blunder < mistake)
+                throw new IllegalArgumentException("Thresholds must be positive and ascending: " + inaccuracy + ", " + mistake + ", " + blunder);
+
+            this.inaccuracy = inaccuracy;
+            this.mistake = mistake;
+            this.blunder = blunder;
+            return this;
+        }
+
+        /**
+         * @param games maximum number of games annotated at once by {@link GameAnnotator#annotateAll(Iterable)} (default number of engines)
+         * @return Builder to continue creating GameAnnotator
+         */
+        public final Builder setParallelism(int games) {
+            this.parallelism = games;
+            return this;
+        }
+
+        /**
+         * @return ready GameAnnotator with fields set
+         */
+        public final GameAnnotator build() {
+            if (depth < 0 && movetime < 0)
+                throw new IllegalStateException("Annotation needs a depth or a movetime per position.");
+
+            return new GameAnnotator(this);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/* Copyright 2018 David Cai Wang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.niflheim.stockfish.pgn;
+
+/**
+ * Quality of a move judged by how many centipawns it loses against the engine's best move.
+ *
+ * @author Niflheim
+ * @see GameAnnotator.Builder#setThresholds(int, int, int)
+ * @since 3.1
+ */
+public enum MoveClassification {
+    /**
+     * The move Stockfish would have played.
+     */
+    BEST(""),
+    /**
+     * A different move that keeps the evaluation within the inaccuracy threshold.
+     */
+    GOOD(""),
+    /**
+     * Loses at least the inaccuracy threshold, {@code ?!} in PGN.
+     */
+    INACCURACY("?!"),
+    /**
+     * Loses at least the mistake threshold, {@code ?} in PGN.
+     */
+    MISTAKE("?"),
+    /**
+     * Loses at least the blunder threshold, {@code ??} in PGN.
+     */
+    BLUNDER("??");
+
+    private final String suffix;
+
+    MoveClassification(String suffix) {
+        this.suffix = suffix;
+    }
+
+    /**
+     * @return move suffix annotation used in PGN, empty for good moves
+     */
+    public String getSuffix() {
+        return suffix;
+    }
+}
@@ -0,0 +1,89 @@
+/* Copyright 2018 David Cai Wang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.niflheim.stockfish.pgn;
+
+import xyz.niflheim.stockfish.chess.Position;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Chess game read from PGN: its tag pairs, the moves of the main line in SAN and the result.
+ *
+ * @author Niflheim
+ * @see PgnReader
+ * @since 3.1
+ */
+public class PgnGame {
+    private final Map<String, String> tags;
+    private final List<String> moves;
+    private final String result;
+
+    /**
+     * @param tags   tag pairs in order of appearance, e.g. {@code Event} or {@code FEN}
+     * @param moves  moves of the main line in SAN
+     * @param result game termination marker, {@code 1-0}, {@code 0-1}, {@code 1/2-1/2} or {@code *}
+     */
+    public PgnGame(Map<String, String> tags, List<String> moves, String result) {
+        this.tags = Collections.unmodifiableMap(new LinkedHashMap<>(tags));
+        this.moves = Collections.unmodifiableList(new ArrayList<>(moves));
+        this.result = result;
+    }
+
+    /**
+     * @param name tag name, e.g. {@code White}
+     * @return tag value or {@code null} if the game has no such tag
+     */
+    public String getTag(String name) {
+        return tags.get(name);
+    }
+
+    /**
+     * @return all tag pairs in order of appearance
+     */
+    public Map<String, String> getTags() {
+        return tags;
+    }
+
+    /**
+     * @return moves of the main line in SAN, without move numbers, comments or variations
+     */
+    public List<String> getMoves() {
+        return moves;
+    }
+
+    /**
+     * @return game termination marker, {@code *} if the game is unfinished or the marker was missing
+     */
+    public String getResult() {
+        return result;
+    }
+
+    /**
+     * @return FEN of the {@code FEN} tag, or of the standard starting position
+     */
+    public String getStartFen() {
+        String fen = tags.get("FEN");
+        return fen != null ? fen : Position.START_FEN;
+    }
+
+    @Override
+    public String toString() {
+        return tags.getOrDefault("White", "?") + " - " + tags.getOrDefault("Black", "?") + " " + result + " (" + moves.size() + " plies)";
+    }
+}
@@ -0,0 +1,188 @@
+/* Copyright 2018 David Cai Wang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.niflheim.stockfish.pgn;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streaming reader of PGN files with any number of games.
+ * <p>
+ * Only the main line is kept: comments, recursive variations, numeric annotation glyphs and move
+ * numbers are skipped. Moves are not validated, see {@link xyz.niflheim.stockfish.chess.Position#toUci}.
+ *
+ * @author Niflheim
+ * @see <a href="https://www.chessclub.com/help/PGN-spec">PGN specification</a>
+ * @since 3.1
+ */
+public class PgnReader implements Closeable {
+    private static final String DELIMITERS = "[]{}();";
+
+    private final PushbackReader reader;
+
+    /**
+     * @param reader source of the PGN text, read lazily game by game
+     */
+    public PgnReader(Reader reader) {
+        this.reader = new PushbackReader(reader);
+    }
+
+    /**
+     * @param pgn PGN text
+     * @return all games of the text
+     * @throws IllegalArgumentException if a tag pair is malformed
+     */
+    public static List<PgnGame> parse(String pgn) throws IllegalArgumentException {
+        List<PgnGame> games = new ArrayList<>();
+        try (PgnReader reader = new PgnReader(new StringReader(pgn))) {
+            PgnGame game;
+            while ((game = reader.readGame()) != null)
+                games.add(game);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return games;
+    }
+
+    /**
+     * @return next game, or {@code null} at the end of the input
+     * @throws IOException              if the input can not be read
+     * @throws IllegalArgumentException if a tag pair is malformed
+     */
+    public PgnGame readGame() throws IOException, IllegalArgumentException {
+        Map<String, String> tags = new LinkedHashMap<>();
+        List<String> moves = new ArrayList<>();
+
+        int c;
+        while ((c = reader.read()) != -1) {
+            if (Character.isWhitespace(c))
+                continue;
+
+            switch (c) {
+                case '[':
+                    if (!moves.isEmpty()) {
+                        reader.unread(c);
+                        return new PgnGame(tags, moves, "*");
+                    }
+                    readTag(tags);
+                    break;
+                case '{':
+                    skipUntil('}');
+                    break;
+                case ';':
+                case '%':
+                    skipUntil('\n');
+                    break;
+                case '(':
+                    skipVariation();
+                    break;
+                default:
+                    String token = readToken(c);
+                    if (isResult(token))
+                        return new PgnGame(tags, moves, token);
+
+                    String move = stripMoveNumber(token);
+                    if (!move.isEmpty() && move.charAt(0) != '$')
+                        moves.add(move);
+            }
+        }
+
+        return tags.isEmpty() && moves.isEmpty() ? null : new PgnGame(tags, moves, "*");
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private void readTag(Map<String, String> tags) throws IOException {
+        StringBuilder name = new StringBuilder();
+        int c;
+        while ((c = reader.read()) != -1 && c != '"' && c != ']')
+            if (!Character.isWhitespace(c))
+                name.append((char) c);
+
+        if (c != '"')
+            throw new IllegalArgumentException("Incorrect PGN tag pair: " + name);
+
+        StringBuilder value = new StringBuilder();
+        while ((c = reader.read()) != -1 && c != '"') {
+            if (c == '\\')
+                c = reader.read();
+            if (c != -1)
+                value.append((char) c);
+        }
+        skipUntil(']');
+
+        tags.put(name.toString(), value.toString());
+    }
+
+    private String readToken(int first) throws IOException {
+        StringBuilder token = new StringBuilder().append((char) first);
+        int c;
+        while ((c = reader.read()) != -1) {
+            if (Character.isWhitespace(c))
+                break;
+            if (DELIMITERS.indexOf(c) >= 0) {
+                reader.unread(c);
+                break;
+            }
+            token.append((char) c);
+        }
+        return token.toString();
+    }
+
+    private void skipVariation() throws IOException {
+        int depth = 1, c;
+        while (depth > 0 && (c = reader.read()) != -1) {
+            if (c == '(')
+                depth++;
+            else if (c == ')')
+                depth--;
+            else if (c == '{')
+                skipUntil('}');
+            else if (c == ';')
+                skipUntil('\n');
+        }
+    }
+
+    private void skipUntil(char end) throws IOException {
+        int c;
+        do {
+            c = reader.read();
+        } while (c != -1 && c != end);
+    }
+
+    private static boolean isResult(String token) {
+        return token.equals("1-0") || token.equals("0-1") || token.equals("1/2-1/2") || token.equals("*");
+    }
+
+    private static String stripMoveNumber(String token) {
+        int i = 0;
+        while (i < token.length() && Character.isDigit(token.charAt(i)))
+            i++;
+        int digits = i;
+        while (i < token.length() && token.charAt(i) == '.')
+            i++;
+        return digits == token.length() || i > digits ? token.substring(i) : token;
+    }
+}
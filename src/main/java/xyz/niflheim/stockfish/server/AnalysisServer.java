@@ -0,0 +1,489 @@
+/* Copyright 2018 David Cai Wang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.niflheim.stockfish.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import xyz.niflheim.stockfish.engine.BestMoveResult;
+import xyz.niflheim.stockfish.engine.QueryResult;
+import xyz.niflheim.stockfish.engine.StockfishClient;
+import xyz.niflheim.stockfish.engine.StockfishSession;
+import xyz.niflheim.stockfish.engine.enums.HashPolicy;
+import xyz.niflheim.stockfish.engine.enums.Query;
+import xyz.niflheim.stockfish.engine.enums.QueryType;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * HTTP front end of a {@link StockfishClient}, built on the HTTP server of the JDK.
+ * <p>
+ * Every {@link QueryType} has a {@code GET} endpoint named after it, such as {@code /best_move?fen=...&depth=12},
+ * answered with a JSON object once the query completes. Handler threads never wait for an engine: the query
+ * is submitted through {@link StockfishClient#submitAsync(Query)}, so the opening book, result store and
+ * coalescing of the client apply, and the response is written when the future completes.
+ * <p>
+ * Two endpoints stream their results:
+ * <ul>
+ * <li>{@code GET /analyse} searches one position on a leased engine and sends every principal variation as a
+ * server-sent {@code info} event, followed by a {@code bestmove} event.</li>
+ * <li>{@code POST /batch} takes one FEN per line and sends one JSON line per result in a chunked response,
+ * using {@link StockfishClient#analyzeAll(Iterable, boolean)} to bound the queries in flight.</li>
+ * </ul>
+ * Queries are refused with status 503 while the queue of the client is full or all streams are in use.
+ *
+ * @author Niflheim
+ * @since 3.1
+ */
+public class AnalysisServer implements Closeable {
+
+    private static final Log log = LogFactory.getLog(AnalysisServer.class);
+    private static final Map<String, QueryType> ENDPOINTS = new HashMap<>();
+
+    static {
+        for (QueryType type : QueryType.values())
+            ENDPOINTS.put("/" + type.name().toLowerCase(Locale.ROOT), type);
+    }
+
+    private final StockfishClient client;
+    private final HttpServer server;
+    private final ExecutorService handlers;
+    private final ExecutorService streams;
+    private final Semaphore streamPermits;
+    private final int maxQueue;
+    private final int maxBatch;
+
+    private AnalysisServer(Builder builder) throws IOException {
+        client = builder.client;
+        maxQueue = builder.maxQueue;
+        maxBatch = builder.maxBatch;
+        streamPermits = new Semaphore(builder.maxStreams);
+        handlers = Executors.newFixedThreadPool(builder.threads, threads("stockfish-http"));
+        streams = Executors.newCachedThreadPool(threads("stockfish-http-stream"));
+
+        server = HttpServer.create(new InetSocketAddress(builder.host, builder.port), builder.backlog);
+        server.createContext("/", this::handle);
+        server.setExecutor(handlers);
+        server.start();
+        log.info("Stockfish analysis server listening on " + server.getAddress());
+    }
+
+    /**
+     * @return address the server listens on
+     */
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    /**
+     * Stop accepting requests, waiting up to a second for running exchanges to finish.
+     * The {@link StockfishClient} is not closed.
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        handlers.shutdownNow();
+        streams.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        try {
+            Map<String, String> parameters = parameters(exchange.getRequestURI().getRawQuery());
+
+            if (path.equals("/analyse")) {
+                requireMethod(exchange, "GET");
+                analyse(exchange, query(QueryType.Best_Move, parameters.get("fen"), parameters));
+            } else if (path.equals("/batch")) {
+                requireMethod(exchange, "POST");
+                batch(exchange, parameters);
+            } else if (ENDPOINTS.containsKey(path)) {
+                requireMethod(exchange, "GET");
+                submit(exchange, query(ENDPOINTS.get(path), parameters.get("fen"), parameters));
+            } else {
+                send(exchange, 404, error("Unknown endpoint: " + path));
+            }
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            send(exchange, 400, error(e.getMessage()));
+        } catch (UnsupportedOperationException e) {
+            send(exchange, 405, error(e.getMessage()));
+        } catch (RejectedExecutionException e) {
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            send(exchange, 503, error(e.getMessage()));
+        }
+    }
+
+    private void submit(HttpExchange exchange, Query query) {
+        checkQueue();
+        client.submitAsync(query).whenCompleteAsync((output, error) -> {
+            if (error == null)
+                send(exchange, 200, result(query, output).toString());
+            else
+                send(exchange, 500, error(cause(error).getMessage()));
+        }, handlers);
+    }
+
+    private void analyse(HttpExchange exchange, Query query) {
+        stream(exchange, () -> {
+            StockfishSession session;
+            try {
+                session = client.openSession(query.getProfile());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                send(exchange, 503, error("Server is stopping"));
+                return;
+            } catch (Exception e) {
+                log.error("Can not open a session for streaming analysis", e);
+                send(exchange, 500, error(e.getMessage()));
+                return;
+            }
+
+            try (StockfishSession leased = session; OutputStream body = exchange.getResponseBody()) {
+                exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+                exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+                exchange.sendResponseHeaders(200, 0);
+
+                EventWriter events = new EventWriter(body);
+                try {
+                    BestMoveResult result = leased.analyse(query, progress -> events.send("info", info(progress)));
+                    events.send("bestmove", new Json().put("bestmove", result.getBestMove()).put("ponder", result.getPonder())
+                            .put("depth", result.getDepth()).put("score", result.getEvaluation().toString()).toString());
+                } catch (RuntimeException e) {
+                    log.error("Streaming analysis failed", e);
+                    events.send("error", error(e.getMessage()));
+                }
+            } catch (IOException e) {
+                log.debug("Analysis stream closed by the client", e);
+            }
+        });
+    }
+
+    private void batch(HttpExchange exchange, Map<String, String> parameters) throws IOException {
+        QueryType type = parameters.containsKey("type") ? endpoint(parameters.get("type")) : QueryType.Best_Move;
+        boolean ordered = !"false".equals(parameters.get("ordered"));
+
+        List<Query> queries = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty())
+                    continue;
+                if (queries.size() == maxBatch)
+                    throw new IllegalArgumentException("Batch is limited to " + maxBatch + " positions");
+                queries.add(query(type, line.trim(), parameters));
+            }
+        }
+
+        stream(exchange, () -> {
+            try (Writer body = new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8);
+                 Stream<QueryResult> results = client.analyzeAll(queries, ordered)) {
+                exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+                exchange.sendResponseHeaders(200, 0);
+
+                Iterator<QueryResult> iterator = results.iterator();
+                while (iterator.hasNext()) {
+                    QueryResult result = iterator.next();
+                    Json line = result.isSuccess() ? result(result.getQuery(), result.getOutput())
+                            : new Json().put("fen", result.getQuery().getFen()).put("error", cause(result.getError()).getMessage());
+                    body.write(line.put("index", result.getIndex()) + "\n");
+                    body.flush();
+                }
+            } catch (IOException e) {
+                log.debug("Batch stream closed by the client", e);
+            }
+        });
+    }
+
+    /**
+     * Run a streaming response on its own thread, holding one of the stream permits until it ends.
+     *
+     * @param exchange exchange answered by the task, closed when the task ends
+     * @param task     task sending the response headers once it can serve the stream
+     * @throws RejectedExecutionException if all streams are in use or the server is stopping
+     */
+    private void stream(HttpExchange exchange, Runnable task) {
+        acquireStream();
+        try {
+            streams.submit(() -> {
+                try {
+                    task.run();
+                } finally {
+                    streamPermits.release();
+                    exchange.close();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            streamPermits.release();
+            throw e;
+        }
+    }
+
+    private Query query(QueryType type, String fen, Map<String, String> parameters) {
+        if (fen == null)
+            throw new IllegalArgumentException("Missing parameter fen");
+
+        Query.Builder builder = new Query.Builder(type, fen);
+        if (parameters.containsKey("move"))
+            builder.setMove(parameters.get("move"));
+        if (parameters.containsKey("depth"))
+            builder.setDepth((int) number(parameters, "depth"));
+        if (parameters.containsKey("movetime"))
+            builder.setMovetime(number(parameters, "movetime"));
+        if (parameters.containsKey("nodes"))
+            builder.setNodes(number(parameters, "nodes"));
+        if (parameters.containsKey("difficulty"))
+            builder.setDifficulty((int) number(parameters, "difficulty"));
+        if (parameters.containsKey("wtime") || parameters.containsKey("btime"))
+            builder.setClock(number(parameters, "wtime"), number(parameters, "btime"),
+                    parameters.containsKey("winc") ? number(parameters, "winc") : 0,
+                    parameters.containsKey("binc") ? number(parameters, "binc") : 0);
+        if (parameters.containsKey("movestogo"))
+            builder.setMovesToGo((int) number(parameters, "movestogo"));
+        if (parameters.containsKey("profile")) {
+            if (!client.getProfiles().containsKey(parameters.get("profile")))
+                throw new IllegalArgumentException("Unknown profile: " + parameters.get("profile"));
+            builder.setProfile(parameters.get("profile"));
+        }
+        if (parameters.containsKey("game"))
+            builder.setGame(parameters.get("game"));
+        if (parameters.containsKey("hash"))
+            builder.setHashPolicy(hashPolicy(parameters.get("hash")));
+
+        Query query = builder.build();
+        if (type == QueryType.Best_Move && query.getDepth() < 0 && query.getMovetime() < 0 && query.getNodes() < 0 && !query.isTimed())
+            throw new IllegalArgumentException("Search needs a depth, movetime, nodes or clock limit");
+        return query;
+    }
+
+    private static HashPolicy hashPolicy(String name) {
+        try {
+            return HashPolicy.valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown hash policy: " + name);
+        }
+    }
+
+    private static QueryType endpoint(String name) {
+        QueryType type = ENDPOINTS.get("/" + name.toLowerCase(Locale.ROOT));
+        if (type == null)
+            throw new IllegalArgumentException("Unknown query type: " + name);
+        return type;
+    }
+
+    private static long number(Map<String, String> parameters, String name) {
+        String value = parameters.get(name);
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Parameter " + name + " is not a number: " + value);
+        }
+    }
+
+    private static Json result(Query query, String output) {
+        Json json = new Json().put("type", query.getType().name()).put("fen", query.getFen()).put("result", output);
+        if (query.getType() == QueryType.Legal_Moves || query.getType() == QueryType.Checkers) {
+            List<String> squares = output.trim().isEmpty() ? Collections.emptyList() : Arrays.asList(output.trim().split("\\s+"));
+            json.put(query.getType() == QueryType.Legal_Moves ? "moves" : "checkers", squares);
+        }
+        return json;
+    }
+
+    private static String info(BestMoveResult progress) {
+        return new Json().put("depth", progress.getDepth()).put("score", progress.getEvaluation().toString())
+                .put("nodes", progress.getNodes()).put("time", progress.getTime()).put("pv", progress.getPv()).toString();
+    }
+
+    private static String error(String message) {
+        return new Json().put("error", message == null ? "Internal error" : message).toString();
+    }
+
+    private static Throwable cause(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    private void checkQueue() {
+        if (client.getQueueLength() >= maxQueue)
+            throw new RejectedExecutionException("Queue is full, " + client.getQueueLength() + " queries are waiting");
+    }
+
+    private void acquireStream() {
+        if (!streamPermits.tryAcquire())
+            throw new RejectedExecutionException("All streams are in use");
+    }
+
+    private static void requireMethod(HttpExchange exchange, String method) {
+        if (!exchange.getRequestMethod().equals(method))
+            throw new UnsupportedOperationException(exchange.getRequestURI().getPath() + " only supports " + method);
+    }
+
+    private static Map<String, String> parameters(String query) {
+        Map<String, String> parameters = new HashMap<>();
+        if (query == null)
+            return parameters;
+
+        for (String pair : query.split("&")) {
+            if (pair.isEmpty())
+                continue;
+            int split = pair.indexOf('=');
+            parameters.put(decode(split < 0 ? pair : pair.substring(0, split)), split < 0 ? "" : decode(pair.substring(split + 1)));
+        }
+        return parameters;
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String json) {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        try (OutputStream out = exchange.getResponseBody()) {
+            exchange.sendResponseHeaders(status, body.length);
+            out.write(body);
+        } catch (IOException e) {
+            log.debug("Can not send response to " + exchange.getRemoteAddress(), e);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static ThreadFactory threads(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Writes server-sent events, dropping them silently once the client went away so a running search is not
+     * interrupted midway and the engine goes back to the pool in a clean state.
+     */
+    private static class EventWriter {
+        private final Writer out;
+        private boolean disconnected;
+
+        EventWriter(OutputStream out) {
+            this.out = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        }
+
+        void send(String event, String data) {
+            if (disconnected)
+                return;
+
+            try {
+                out.write("event: " + event + "\ndata: " + data + "\n\n");
+                out.flush();
+            } catch (IOException e) {
+                disconnected = true;
+            }
+        }
+    }
+
+    /**
+     * Standard Builder pattern to create {@link AnalysisServer} instance.
+     */
+    public static class Builder {
+        private final StockfishClient client;
+        private String host = "127.0.0.1";
+        private int port = 8080;
+        private int backlog = 0;
+        private int threads = 4;
+        private int maxQueue = 256;
+        private int maxStreams = 1;
+        private int maxBatch = 10_000;
+
+        /**
+         * @param client client running the queries, it stays owned by the caller
+         */
+        public Builder(StockfishClient client) {
+            this.client = client;
+        }
+
+        /**
+         * @param host address to listen on, "0.0.0.0" for all addresses (default the loopback address 127.0.0.1)
+         * @param port port to listen on, 0 for any free port (default 8080)
+         * @return Builder to continue creating AnalysisServer
+         */
+        public final Builder setAddress(String host, int port) {
+            this.host = host;
+            this.port = port;
+            return this;
+        }
+
+        /**
+         * @param threads number of threads parsing requests and writing responses (default 4)
+         * @return Builder to continue creating AnalysisServer
+         */
+        public final Builder setThreads(int threads) {
+            if (threads < 1)
+                throw new IllegalArgumentException("Server needs at least one thread: " + threads);
+
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * @param maxQueue number of queries waiting for an engine above which new queries are refused (default 256)
+         * @return Builder to continue creating AnalysisServer
+         */
+        public final Builder setMaxQueue(int maxQueue) {
+            this.maxQueue = maxQueue;
+            return this;
+        }
+
+        /**
+         * Limit the streaming requests running at the same time. Every {@code /analyse} stream leases an engine
+         * for the whole search, so keep this below the number of engines of the client.
+         *
+         * @param maxStreams number of {@code /analyse} and {@code /batch} requests served at the same time (default 1)
+         * @return Builder to continue creating AnalysisServer
+         */
+        public final Builder setMaxStreams(int maxStreams) {
+            this.maxStreams = maxStreams;
+            return this;
+        }
+
+        /**
+         * @param maxBatch maximum number of positions of one {@code /batch} request (default 10000)
+         * @return Builder to continue creating AnalysisServer
+         */
+        public final Builder setMaxBatch(int maxBatch) {
+            this.maxBatch = maxBatch;
+            return this;
+        }
+
+        /**
+         * @return started AnalysisServer
+         * @throws IOException if the address can not be bound
+         */
+        public final AnalysisServer build() throws IOException {
+            return new AnalysisServer(this);
+        }
+    }
+}
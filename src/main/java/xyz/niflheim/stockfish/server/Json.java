@@ -0,0 +1,93 @@
+/* Copyright 2018 David Cai Wang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.niflheim.stockfish.server;
+
+/**
+ * Minimal writer for the flat JSON objects sent by {@link AnalysisServer}.
+ */
+class Json {
+    private final StringBuilder json = new StringBuilder("{");
+
+    Json put(String name, String value) {
+        if (value == null)
+            return this;
+
+        name(name);
+        quote(value);
+        return this;
+    }
+
+    Json put(String name, long value) {
+        name(name);
+        json.append(value);
+        return this;
+    }
+
+    Json put(String name, Iterable<String> values) {
+        name(name);
+        json.append('[');
+        boolean first = true;
+        for (String value : values) {
+            if (!first)
+                json.append(',');
+            quote(value);
+            first = false;
+        }
+        json.append(']');
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return json + "}";
+    }
+
+    private void name(String name) {
+        if (json.length() > 1)
+            json.append(',');
+        quote(name);
+        json.append(':');
+    }
+
+    private void quote(String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20)
+                        json.append(String.format("\\u%04x", (int) c));
+                    else
+                        json.append(c);
+            }
+        }
+        json.append('"');
+    }
+}
@@ -0,0 +1,148 @@
+package xyz.niflheim.stockfish.book;
+
+import org.junit.jupiter.api.Test;
+import xyz.niflheim.stockfish.chess.Position;
+import xyz.niflheim.stockfish.engine.StockfishClient;
+import xyz.niflheim.stockfish.engine.enums.Query;
+import xyz.niflheim.stockfish.engine.enums.QueryType;
+import xyz.niflheim.stockfish.util.OSValidator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PolyglotBookTest {
+
+    private static final String CASTLING_FEN = "r3k2r/pppppppp/8/8/8/8/PPPPPPPP/R3K2R w KQkq - 0 1";
+
+    @Test
+    void keys() {
+        Position position = Position.start();
+        assertEquals(0x463b96181691fc9cL, PolyglotBook.key(position));
+        position = position.play("e2e4");
+        assertEquals(0x823c9b50fd114196L, PolyglotBook.key(position));
+        position = position.play("d7d5");
+        assertEquals(0x0756b94461c50fb0L, PolyglotBook.key(position));
+        position = position.play("e4e5");
+        assertEquals(0x662fafb965db29d4L, PolyglotBook.key(position));
+        position = position.play("f7f5");
+        assertEquals(0x22a48b5a8e47ff78L, PolyglotBook.key(position));
+        position = position.play("e1e2");
+        assertEquals(0x652a607ca3f242c1L, PolyglotBook.key(position));
+        position = position.play("e8f7");
+        assertEquals(0x00fdd303c946bdd9L, PolyglotBook.key(position));
+
+        position = Position.start().play("a2a4").play("b7b5").play("h2h4").play("b5b4").play("c2c4");
+        assertEquals(0x3c8123ea7b067637L, PolyglotBook.key(position));
+        position = position.play("b4c3").play("a1a3");
+        assertEquals(0x5c3f9b829b279560L, PolyglotBook.key(position));
+
+        assertEquals(PolyglotBook.key(Position.fromFen("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1")),
+                PolyglotBook.key(Position.start().play("e2e4")));
+    }
+
+    @Test
+    void lookup() throws IOException {
+        Path file = writeBook(
+                entry(Position.start(), "e2e4", 30),
+                entry(Position.start(), "d2d4", 20),
+                entry(Position.start(), "g1f3", 0),
+                entry(Position.start().play("e2e4"), "c7c5", 10),
+                entry(Position.fromFen(CASTLING_FEN), "e1h1", 5),
+                entry(Position.fromFen(CASTLING_FEN), "e1a1", 1));
+        try {
+            PolyglotBook book = PolyglotBook.open(file);
+            assertEquals(6, book.size());
+
+            List<BookMove> moves = book.getMoves(Position.start());
+            assertEquals(Arrays.asList("e2e4", "d2d4", "g1f3"), moves.stream().map(BookMove::getMove).collect(Collectors.toList()));
+            assertEquals(30, moves.get(0).getWeight());
+            assertEquals("e2e4", book.getBestMove(Position.start()));
+            assertEquals("c7c5", book.getBestMove(Position.start().play("e2e4")));
+            assertEquals(Arrays.asList("e1g1", "e1c1"),
+                    book.getMoves(Position.fromFen(CASTLING_FEN)).stream().map(BookMove::getMove).collect(Collectors.toList()));
+
+            Random random = new Random(42);
+            int e4 = 0;
+            for (int i = 0; i < 1000; i++) {
+                String move = book.getWeightedMove(Position.start(), random);
+                assertNotEquals("g1f3", move);
+                if (move.equals("e2e4"))
+                    e4++;
+            }
+            assertTrue(e4 > 500 && e4 < 700, "e2e4 picked " + e4 + " times");
+
+            Position missing = Position.start().play("d2d4");
+            assertTrue(book.getMoves(missing).isEmpty());
+            assertNull(book.getBestMove(missing));
+            assertNull(book.getWeightedMove(missing, random));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void invalidFile() throws IOException {
+        Path file = Files.createTempFile("book", ".bin");
+        try {
+            Files.write(file, new byte[17]);
+            assertThrows(IOException.class, () -> PolyglotBook.open(file));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void clientAnswersFromBook() throws Exception {
+        if (!OSValidator.isUnix())
+            return;
+
+        Path file = writeBook(entry(Position.start(), "b1c3", 1));
+        StockfishClient client = new StockfishClient.Builder()
+                .setOpeningBook(PolyglotBook.open(file), false)
+                .setJmxEnabled(false)
+                .build();
+        try {
+            assertEquals("b1c3", client.submitAsync(new Query.Builder(QueryType.Best_Move, Position.START_FEN).setDepth(10).build()).get());
+            assertEquals(1, client.getMetrics().getBookHits());
+            assertEquals(0, client.getMetrics().getSubmitted());
+
+            String fen = Position.start().play("e2e4").toFen();
+            assertNotNull(client.submitAsync(new Query.Builder(QueryType.Best_Move, fen).setDepth(5).build()).get());
+            assertEquals(1, client.getMetrics().getCompleted());
+        } finally {
+            client.close();
+            Files.delete(file);
+        }
+    }
+
+    private static byte[] entry(Position position, String move, int weight) {
+        int from = Position.square(move.substring(0, 2));
+        int to = Position.square(move.substring(2, 4));
+        return ByteBuffer.allocate(16)
+                .putLong(PolyglotBook.key(position))
+                .putShort((short) (from << 6 | to))
+                .putShort((short) weight)
+                .putInt(0)
+                .array();
+    }
+
+    private static Path writeBook(byte[]... entries) throws IOException {
+        Arrays.sort(entries, Comparator.comparing(e -> ByteBuffer.wrap(e).getLong(), Long::compareUnsigned));
+        ByteBuffer book = ByteBuffer.allocate(entries.length * 16);
+        for (byte[] entry : entries)
+            book.put(entry);
+
+        Path file = Files.createTempFile("book", ".bin");
+        Files.write(file, book.array());
+        return file;
+    }
+}
@@ -0,0 +1,90 @@
+package xyz.niflheim.stockfish.chess;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FenValidatorTest {
+
+    @Test
+    void valid() {
+        assertNull(FenValidator.validate(Position.START_FEN));
+        assertTrue(FenValidator.isValid("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1"));
+        assertTrue(FenValidator.isValid("rnbqkb1r/ppp1pppp/5n2/3pP3/8/8/PPPP1PPP/RNBQKBNR w KQkq d6 0 3"));
+        assertTrue(FenValidator.isValid("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1"));
+        assertTrue(FenValidator.isValid("8/8/8/8/8/8/8/K6k w - - 120 300"));
+        assertTrue(FenValidator.isValid("4k3/8/8/8/8/8/4q3/4K3 w - - 0 1"));
+    }
+
+    @Test
+    void syntax() {
+        assertNotNull(FenValidator.validate((String) null));
+        assertNotNull(FenValidator.validate(""));
+        assertNotNull(FenValidator.validate("hello world"));
+        assertNotNull(FenValidator.validate("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq -"));
+        assertNotNull(FenValidator.validate("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1 "));
+        assertNotNull(FenValidator.validate("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR x KQkq - 0 1"));
+        assertNotNull(FenValidator.validate("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkk - 0 1"));
+        assertNotNull(FenValidator.validate("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq e9 0 1"));
+        assertNotNull(FenValidator.validate("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - a 1"));
+        assertNotNull(FenValidator.validate("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNX w KQkq - 0 1"));
+    }
+
+    @Test
+    void board() {
+        assertEquals("rank 7 covers 7 squares", FenValidator.validate("rnbqkbnr/ppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1"));
+        assertNotNull(FenValidator.validate("rnbqkbnr/ppppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1"));
+        assertNotNull(FenValidator.validate("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP w KQkq - 0 1"));
+        assertNotNull(FenValidator.validate("rnbqkbnr/pppppppp/8/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1"));
+        assertNotNull(FenValidator.validate("8/8/8/8/8/8/8/8 b - - 0 1"));
+        assertNotNull(FenValidator.validate("k7/8/8/8/8/8/8/KK6 w - - 0 1"));
+        assertNotNull(FenValidator.validate("k6P/8/8/8/8/8/8/K7 w - - 0 1"));
+        assertNotNull(FenValidator.validate("k7/8/8/8/8/8/8/Kp6 b - - 0 1"));
+        assertNotNull(FenValidator.validate("k7/pppppppp/p7/8/8/8/8/K7 w - - 0 1"));
+    }
+
+    @Test
+    void check() {
+        assertEquals("side not to move is in check", FenValidator.validate("k7/8/8/8/8/8/8/Q3K3 w - - 0 1"));
+        assertTrue(FenValidator.isValid("k7/8/8/8/8/8/8/Q3K3 b - - 0 1"));
+        assertNotNull(FenValidator.validate("4k3/4R3/8/8/8/8/8/4K3 w - - 0 1"));
+        assertNotNull(FenValidator.validate("4k3/3P4/8/8/8/8/8/4K3 w - - 0 1"));
+        assertNotNull(FenValidator.validate("4k3/8/5N2/8/8/8/8/4K3 w - - 0 1"));
+        assertNotNull(FenValidator.validate("4k3/8/8/8/B7/8/8/4K3 w - - 0 1"));
+        assertNotNull(FenValidator.validate("8/8/8/8/8/8/3k4/4K3 w - - 0 1"));
+        assertTrue(FenValidator.isValid("4k3/4p3/8/8/8/8/8/4R1K1 w - - 0 1"));
+        assertTrue(FenValidator.isValid("4k3/8/2P5/8/B7/8/8/4K3 w - - 0 1"));
+        assertTrue(FenValidator.isValid("4k3/8/8/8/8/8/4R3/4K3 b - - 0 1"));
+    }
+
+    @Test
+    void castlingAndEnPassant() {
+        assertNotNull(FenValidator.validate("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBN1 w KQkq - 0 1"));
+        assertNotNull(FenValidator.validate("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQ1BNRK w KQkq - 0 1"));
+        assertTrue(FenValidator.isValid("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBN1 w Qkq - 0 1"));
+        assertNotNull(FenValidator.validate("1nbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1"));
+
+        assertNotNull(FenValidator.validate("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq e3 0 1"));
+        assertNotNull(FenValidator.validate("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR w KQkq e3 0 1"));
+        assertNotNull(FenValidator.validate("rnbqkbnr/pppppppp/8/8/3P4/8/PPP1PPPP/RNBQKBNR b KQkq e3 0 1"));
+    }
+
+    @Test
+    void packed() {
+        String[] fens = {Position.START_FEN,
+                "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1",
+                "8/8/8/8/8/8/8/K6k w - - 120 300",
+                "k7/8/8/8/8/8/8/Q3K3 w - - 0 1",
+                "k6P/8/8/8/8/8/8/K7 w - - 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBN1 w KQkq - 0 1",
+                "rnbqkbnr/pppppppp/8/8/3P4/8/PPP1PPPP/RNBQKBNR b KQkq e3 0 1"};
+        for (String fen : fens)
+            assertEquals(FenValidator.validate(fen), FenValidator.validate(PackedPosition.fromFen(fen)), fen);
+
+        long[] data = new long[PackedPosition.LONGS];
+        PackedPosition.fromFen(Position.START_FEN).write(data, 0);
+        data[1] |= 0xF;
+        assertEquals("invalid piece code", FenValidator.validate(PackedPosition.read(data, 0)));
+        assertNotNull(FenValidator.validate((PackedPosition) null));
+    }
+}
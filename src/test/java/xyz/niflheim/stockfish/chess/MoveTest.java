@@ -0,0 +1,37 @@
+package xyz.niflheim.stockfish.chess;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoveTest {
+
+    @Test
+    void encode() {
+        int move = Move.parse("e2e4");
+        assertEquals(Position.square("e2"), Move.from(move));
+        assertEquals(Position.square("e4"), Move.to(move));
+        assertEquals(0, Move.promotion(move));
+        assertEquals("e2e4", Move.toUci(move));
+
+        int promotion = Move.parse("a7a8q");
+        assertEquals('q', Move.promotion(promotion));
+        assertEquals("a7a8q", Move.toUci(promotion));
+        assertEquals(promotion, Move.of(Position.square("a7"), Position.square("a8"), 'Q'));
+        assertNotEquals(promotion, Move.parse("a7a8n"));
+
+        assertEquals(Move.NONE, Move.parse("(none)"));
+        assertEquals(Move.NONE, Move.parse("0000"));
+        assertEquals("(none)", Move.toUci(Move.NONE));
+    }
+
+    @Test
+    void invalid() {
+        assertThrows(IllegalArgumentException.class, () -> Move.parse(null));
+        assertThrows(IllegalArgumentException.class, () -> Move.parse("e2"));
+        assertThrows(IllegalArgumentException.class, () -> Move.parse("e2e9"));
+        assertThrows(IllegalArgumentException.class, () -> Move.parse("e7e8k"));
+        assertThrows(IllegalArgumentException.class, () -> Move.parse("e2e2"));
+        assertThrows(IllegalArgumentException.class, () -> Move.of(-1, 4, (char) 0));
+    }
+}
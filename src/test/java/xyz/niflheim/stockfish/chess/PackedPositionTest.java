@@ -0,0 +1,73 @@
+package xyz.niflheim.stockfish.chess;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PackedPositionTest {
+
+    private static final String[] FENS = {
+            Position.START_FEN,
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "rnbqkb1r/ppp1pppp/5n2/3pP3/8/8/PPPP1PPP/RNBQKBNR w KQkq d6 0 3",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 b - - 99 255",
+            "8/8/8/8/8/8/8/K6k w - - 255 65535"
+    };
+
+    @Test
+    void roundTrip() {
+        for (String fen : FENS) {
+            PackedPosition packed = PackedPosition.fromFen(fen);
+            assertEquals(fen, packed.toFen());
+            assertEquals(Position.fromFen(fen), packed.toPosition());
+            assertEquals(packed, PackedPosition.of(Position.fromFen(fen)));
+        }
+
+        assertNotEquals(PackedPosition.fromFen(FENS[0]), PackedPosition.fromFen(FENS[1]));
+    }
+
+    @Test
+    void readWrite() {
+        long[] array = new long[FENS.length * PackedPosition.LONGS];
+        ByteBuffer buffer = ByteBuffer.allocateDirect(FENS.length * PackedPosition.BYTES);
+        for (int i = 0; i < FENS.length; i++) {
+            PackedPosition.fromFen(FENS[i]).write(array, i * PackedPosition.LONGS);
+            PackedPosition.fromFen(FENS[i]).write(buffer, i * PackedPosition.BYTES);
+        }
+
+        for (int i = 0; i < FENS.length; i++) {
+            assertEquals(FENS[i], PackedPosition.read(array, i * PackedPosition.LONGS).toFen());
+            assertEquals(FENS[i], PackedPosition.read(buffer, i * PackedPosition.BYTES).toFen());
+        }
+    }
+
+    @Test
+    void limits() {
+        assertThrows(IllegalArgumentException.class,
+                () -> PackedPosition.fromFen("rnbqkbnr/pppppppp/8/8/8/P7/PPPPPPPP/RNBQKBNR w KQkq - 0 1"));
+        assertThrows(IllegalArgumentException.class, () -> PackedPosition.fromFen("8/8/8/8/8/8/8/K6k w - - 256 1"));
+        assertThrows(IllegalArgumentException.class, () -> PackedPosition.fromFen("8/8/8/8/8/8/8/K6k w - - 0 65536"));
+    }
+
+    @Test
+    void positionArray() {
+        PositionArray heap = new PositionArray(FENS.length);
+        PositionArray direct = PositionArray.allocateDirect(FENS.length);
+        for (int i = 0; i < FENS.length; i++) {
+            assertEquals(i, heap.add(FENS[i]));
+            assertEquals(i, direct.add(Position.fromFen(FENS[i])));
+        }
+
+        assertEquals(FENS.length, heap.size());
+        for (int i = 0; i < FENS.length; i++) {
+            assertEquals(FENS[i], heap.getFen(i));
+            assertEquals(heap.get(i), direct.get(i));
+        }
+
+        assertThrows(IllegalStateException.class, () -> heap.add(Position.START_FEN));
+        assertThrows(IndexOutOfBoundsException.class, () -> new PositionArray(2).get(0));
+        assertThrows(IllegalArgumentException.class, () -> new PositionArray(-1));
+    }
+}
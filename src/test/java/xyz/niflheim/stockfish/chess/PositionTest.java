@@ -0,0 +1,76 @@
+package xyz.niflheim.stockfish.chess;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PositionTest {
+
+    @Test
+    void fenRoundTrip() {
+        assertEquals(Position.START_FEN, Position.start().toFen());
+
+        String fen = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+        assertEquals(fen, Position.fromFen(fen).toFen());
+        assertEquals("8/8/8/8/8/8/8/K6k b - - 0 1", Position.fromFen("8/8/8/8/8/8/8/K6k b - -").toFen());
+
+        assertThrows(IllegalArgumentException.class, () -> Position.fromFen("8/8/8 w - - 0 1"));
+        assertThrows(IllegalArgumentException.class, () -> Position.fromFen("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNX w KQkq - 0 1"));
+    }
+
+    @Test
+    void play() {
+        Position position = Position.start().play("e2e4");
+        assertEquals("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq - 0 1", position.toFen());
+
+        position = position.play("g8f6").play("e4e5").play("d7d5");
+        assertEquals("rnbqkb1r/ppp1pppp/5n2/3pP3/8/8/PPPP1PPP/RNBQKBNR w KQkq d6 0 3", position.toFen());
+
+        position = position.play("e5d6");
+        assertEquals(Position.EMPTY, position.pieceAt("d5"));
+        assertEquals('P', position.pieceAt("d6"));
+
+        Position castle = Position.fromFen("r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 3 10").play("e1g1");
+        assertEquals("r3k2r/8/8/8/8/8/8/R4RK1 b kq - 4 10", castle.toFen());
+        assertEquals("2kr3r/8/8/8/8/8/8/R4RK1 w - - 5 11", castle.play("e8c8").toFen());
+        assertEquals("r3k2R/8/8/8/8/8/8/R3K3 b Qq - 0 1",
+                Position.fromFen("r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 0 1").play("h1h8").toFen());
+
+        assertEquals('n', Position.fromFen("8/8/8/8/8/8/p7/K6k b - - 0 1").play("a2a1n").pieceAt("a1"));
+
+        assertThrows(IllegalArgumentException.class, () -> Position.start().play("e7e5"));
+        assertThrows(IllegalArgumentException.class, () -> Position.start().play("e2"));
+    }
+
+    @Test
+    void sanToUci() {
+        Position position = Position.fromFen("r3k2r/8/8/8/3P4/1N3N2/8/R3K2R w KQkq - 0 1");
+        List<String> legal = Arrays.asList("b3d2", "f3d2", "b3c5", "e1g1", "e1c1", "a1a8", "d4d5");
+
+        assertEquals("b3d2", position.toUci("Nbd2", legal));
+        assertEquals("f3d2", position.toUci("Nfd2+", legal));
+        assertEquals("b3c5", position.toUci("Nc5", legal));
+        assertEquals("e1g1", position.toUci("O-O", legal));
+        assertEquals("e1c1", position.toUci("0-0-0", legal));
+        assertEquals("a1a8", position.toUci("Rxa8+", legal));
+        assertEquals("d4d5", position.toUci("d5!?", legal));
+        assertThrows(IllegalArgumentException.class, () -> position.toUci("Nd2", legal));
+        assertThrows(IllegalArgumentException.class, () -> position.toUci("Qd1", legal));
+
+        Position promotion = Position.fromFen("1r5k/P7/8/8/8/8/8/K7 w - - 0 1");
+        List<String> moves = Arrays.asList("a7a8q", "a7a8n", "a7b8q", "a7b8n");
+        assertEquals("a7b8n", promotion.toUci("axb8=N", moves));
+        assertEquals("a7a8q", promotion.toUci("a8Q", moves));
+    }
+
+    @Test
+    void squares() {
+        assertEquals(0, Position.square("a1"));
+        assertEquals(63, Position.square("h8"));
+        assertEquals("e4", Position.squareName(Position.square("e4")));
+        assertThrows(IllegalArgumentException.class, () -> Position.square("i1"));
+    }
+}
@@ -0,0 +1,125 @@
+package xyz.niflheim.stockfish.engine;
+
+import org.junit.jupiter.api.Test;
+import xyz.niflheim.stockfish.engine.enums.Option;
+import xyz.niflheim.stockfish.engine.enums.Query;
+import xyz.niflheim.stockfish.engine.enums.QueryType;
+import xyz.niflheim.stockfish.engine.enums.Variant;
+import xyz.niflheim.stockfish.exceptions.StockfishInitException;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static xyz.niflheim.stockfish.util.StringUtil.*;
+
+class EngineHostTest {
+
+    @Test
+    void remoteEngine() {
+        try (EngineHost host = new EngineHost(0, 1, null, Variant.DEFAULT)) {
+            InetSocketAddress address = InetSocketAddress.createUnresolved("localhost", host.getPort());
+            Stockfish remote = new Stockfish(3, address, null, Collections.emptyMap());
+            assertTrue(remote.isAlive());
+            assertEquals(1, host.getConnections());
+
+            assertTrue(remote.getBestMove(new Query.Builder(QueryType.Best_Move, START_FEN).setDepth(8).build()).matches(MOVE_REGEX));
+            assertEquals(20, remote.legalMoves(new Query.Builder(QueryType.Legal_Moves, START_FEN).build()).size());
+
+            assertThrows(StockfishInitException.class, () -> new Stockfish(4, address, null, Collections.emptyMap()));
+
+            host.dropConnections();
+            assertThrows(RuntimeException.class, () -> remote.getBestMove(new Query.Builder(QueryType.Best_Move, START_FEN).setDepth(8).build()));
+            assertFalse(remote.isAlive());
+            remote.destroy();
+        } catch (Exception e) {
+            fail(e);
+        }
+    }
+
+    @Test
+    void refusedOptions() {
+        assertEquals("debug log file", EngineHost.optionName("  setoption name Debug  Log File value /tmp/uci.log"));
+        assertEquals("clear hash", EngineHost.optionName("setoption name Clear Hash"));
+        assertNull(EngineHost.optionName("position startpos"));
+        assertTrue(EngineHost.DEFAULT_OPTIONS.contains(Option.Hash.getName()));
+        assertFalse(EngineHost.DEFAULT_OPTIONS.contains(Option.SyzygyPath.getName()));
+
+        File log = new File(System.getProperty("java.io.tmpdir"), "engine-host-" + System.nanoTime() + ".log");
+        try (EngineHost host = new EngineHost(0, 1, null, Variant.DEFAULT);
+             Socket socket = new Socket("localhost", host.getPort())) {
+            OutputStream out = socket.getOutputStream();
+            out.write(("uci\nsetoption name Hash value 8\nsetoption name debug log file value " + log.getAbsolutePath() + "\nisready\n")
+                    .getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            List<String> lines = new ArrayList<>();
+            String line;
+            while ((line = in.readLine()) != null)
+                lines.add(line);
+            assertEquals(EngineHost.REFUSED + "debug log file", lines.get(lines.size() - 1));
+            assertFalse(lines.contains("readyok"));
+            assertFalse(log.exists());
+
+            InetSocketAddress address = InetSocketAddress.createUnresolved("localhost", host.getPort());
+            StockfishInitException refused = assertThrows(StockfishInitException.class,
+                    () -> new Stockfish(5, address, null, Collections.singletonMap(Option.SyzygyPath, "/tmp")));
+            assertTrue(refused.getMessage().contains("refused option syzygypath"));
+        } catch (Exception e) {
+            fail(e);
+        } finally {
+            log.delete();
+        }
+    }
+
+    @Test
+    void mixedPool() {
+        StockfishClient client = null;
+        try (EngineHost host = new EngineHost(0, 2, null, Variant.DEFAULT)) {
+            client = new StockfishClient.Builder()
+                    .setInstances(1)
+                    .addRemoteEngines("localhost", host.getPort(), 2)
+                    .setJmxEnabled(false)
+                    .build();
+            assertEquals(3, client.getInstances());
+            assertEquals(2, host.getConnections());
+
+            List<Query> queries = new ArrayList<>();
+            for (int i = 0; i < 12; i++)
+                queries.add(new Query.Builder(QueryType.Best_Move, START_FEN).setDepth(6 + i % 3).build());
+            List<String> moves = client.analyzeAll(queries).map(QueryResult::getOutput).collect(Collectors.toList());
+            assertEquals(12, moves.size());
+            moves.forEach(move -> assertTrue(move.matches(MOVE_REGEX)));
+            assertEquals(3, client.getMetrics().getEngineTime().size());
+
+            host.dropConnections();
+            List<CompletableFuture<String>> searches = new ArrayList<>();
+            for (int i = 0; i < 6; i++)
+                searches.add(client.submitAsync(new Query.Builder(QueryType.Best_Move, START_FEN).setDepth(12).build()));
+            long failed = searches.stream().filter(search -> search.handle((move, error) -> error != null).join()).count();
+            assertTrue(failed >= 1 && failed <= 2);
+            assertTrue(client.drain(10, TimeUnit.SECONDS));
+            assertEquals(3, client.getInstances());
+            assertEquals(2, host.getConnections());
+            for (int i = 0; i < 6; i++)
+                assertEquals(20, client.legalMovesAsync(new Query.Builder(QueryType.Legal_Moves, START_FEN).build()).get().size());
+        } catch (Exception e) {
+            fail(e);
+        } finally {
+            if (client != null)
+                client.close();
+        }
+    }
+}
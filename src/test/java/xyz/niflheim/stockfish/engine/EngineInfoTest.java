@@ -0,0 +1,85 @@
+package xyz.niflheim.stockfish.engine;
+
+import org.junit.jupiter.api.Test;
+import xyz.niflheim.stockfish.engine.enums.Option;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EngineInfoTest {
+
+    private static final EngineInfo MODERN = EngineInfo.parse(Arrays.asList(
+            "Stockfish 16 by the Stockfish developers (see AUTHORS file)",
+            "id name Stockfish 16",
+            "id author the Stockfish developers (see AUTHORS file)",
+            "",
+            "option name Debug Log File type string default ",
+            "option name Threads type spin default 1 min 1 max 1024",
+            "option name Hash type spin default 16 min 1 max 33554432",
+            "option name Clear Hash type button",
+            "option name Ponder type check default false",
+            "option name Skill Level type spin default 20 min 0 max 20",
+            "option name SyzygyPath type string default <empty>",
+            "option name Analysis Contempt type combo default Both var Off var White var Black var Both",
+            "option name EvalFile type string default nn-5af11540bbfe.nnue",
+            "uciok"));
+
+    @Test
+    void parse() {
+        assertEquals("Stockfish 16", MODERN.getName());
+        assertEquals("the Stockfish developers (see AUTHORS file)", MODERN.getAuthor());
+        assertEquals(9, MODERN.getOptions().size());
+
+        UciOption hash = MODERN.getOption("hash");
+        assertEquals("Hash", hash.getName());
+        assertEquals(UciOption.Type.SPIN, hash.getType());
+        assertEquals("16", hash.getDefault());
+        assertEquals(1, hash.getMin());
+        assertEquals(33554432, hash.getMax());
+
+        assertEquals(UciOption.Type.BUTTON, MODERN.getOption("Clear Hash").getType());
+        assertNull(MODERN.getOption("Clear Hash").getDefault());
+        assertEquals("", MODERN.getOption("Debug Log File").getDefault());
+        assertEquals("<empty>", MODERN.getOption("SyzygyPath").getDefault());
+        assertEquals(Arrays.asList("Off", "White", "Black", "Both"), MODERN.getOption("Analysis Contempt").getVars());
+        assertEquals("option name Analysis Contempt type combo default Both var Off var White var Black var Both",
+                MODERN.getOption("Analysis Contempt").toString());
+
+        assertTrue(MODERN.supports(Option.Skill_Level));
+        assertFalse(MODERN.supports(Option.Slow_Mover));
+
+        assertThrows(IllegalArgumentException.class, () -> UciOption.parse("option name Foo type slider default 1"));
+        assertThrows(IllegalArgumentException.class, () -> UciOption.parse("option type spin default 1"));
+        assertThrows(IllegalArgumentException.class, () -> UciOption.parse("option name Foo type spin default 1 min x max 2"));
+    }
+
+    @Test
+    void validate() {
+        MODERN.validate(Option.Ponder);
+        MODERN.validate(Option.Clear_Hash);
+        MODERN.validate(Option.SyzygyPath);
+        MODERN.validate(Option.Skill_Level);
+
+        IllegalArgumentException range = assertThrows(IllegalArgumentException.class, () -> MODERN.validate(Option.Threads));
+        assertEquals("Option Threads of Stockfish 16 must be between 1 and 1024: 0", range.getMessage());
+        IllegalArgumentException missing = assertThrows(IllegalArgumentException.class, () -> MODERN.validate(Option.Slow_Mover));
+        assertEquals("Stockfish 16 has no option Slow Mover", missing.getMessage());
+    }
+
+    @Test
+    void validateValue() {
+        MODERN.validate(Option.Threads, "1024");
+        MODERN.validate(Option.Hash, "65536");
+        MODERN.validate(Option.Skill_Level, "5");
+        MODERN.validate(Option.Ponder, "true");
+        MODERN.validate(Option.SyzygyPath, "/tb");
+
+        assertThrows(IllegalArgumentException.class, () -> MODERN.validate(Option.Threads, "0"));
+        assertThrows(IllegalArgumentException.class, () -> MODERN.validate(Option.Skill_Level, "weak"));
+        assertThrows(IllegalArgumentException.class, () -> MODERN.validate(Option.Ponder, "1"));
+        IllegalArgumentException range = assertThrows(IllegalArgumentException.class, () -> MODERN.validate(Option.Skill_Level, "25"));
+        assertEquals("Option Skill Level of Stockfish 16 must be between 0 and 20: 25", range.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> MODERN.validate(Option.Contempt, "10"));
+    }
+}
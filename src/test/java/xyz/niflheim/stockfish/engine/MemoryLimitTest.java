@@ -0,0 +1,53 @@
+package xyz.niflheim.stockfish.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MemoryLimitTest {
+
+    @Test
+    void detect() throws IOException {
+        Path mount = Files.createTempDirectory("cgroup");
+        Path groups = mount.resolve("self");
+        try {
+            assertEquals(MemoryLimit.UNLIMITED, MemoryLimit.detect(mount, groups));
+
+            write(groups, "0::/\n");
+            write(mount.resolve("memory.max"), "max\n");
+            assertEquals(MemoryLimit.UNLIMITED, MemoryLimit.detect(mount, groups));
+
+            write(mount.resolve("memory.max"), "2147483648\n");
+            assertEquals(2147483648L, MemoryLimit.detect(mount, groups));
+
+            write(groups, "0::/pods/engine\n");
+            write(mount.resolve("pods/engine/memory.max"), "1073741824\n");
+            assertEquals(1073741824L, MemoryLimit.detect(mount, groups));
+
+            Files.delete(mount.resolve("pods/engine/memory.max"));
+            Files.delete(mount.resolve("memory.max"));
+            write(groups, "4:memory:/docker/abc\n1:cpu,cpuacct:/docker/abc\n");
+            write(mount.resolve("memory/memory.limit_in_bytes"), "9223372036854771712\n");
+            assertEquals(MemoryLimit.UNLIMITED, MemoryLimit.detect(mount, groups));
+
+            write(mount.resolve("memory/docker/abc/memory.limit_in_bytes"), "536870912\n");
+            assertEquals(536870912L, MemoryLimit.detect(mount, groups));
+        } finally {
+            try (Stream<Path> files = Files.walk(mount)) {
+                files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+            }
+        }
+    }
+
+    private static void write(Path file, String content) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -3,16 +3,35 @@ package xyz.niflheim.stockfish.engine;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.junit.jupiter.api.Test;
+import xyz.niflheim.stockfish.chess.Position;
+import xyz.niflheim.stockfish.engine.enums.HashPolicy;
 import xyz.niflheim.stockfish.engine.enums.Option;
 import xyz.niflheim.stockfish.engine.enums.Query;
 import xyz.niflheim.stockfish.engine.enums.QueryType;
 import xyz.niflheim.stockfish.engine.enums.Variant;
 import xyz.niflheim.stockfish.exceptions.StockfishEngineException;
+import xyz.niflheim.stockfish.exceptions.StockfishInitException;
+import xyz.niflheim.stockfish.exceptions.StockfishPoolException;
+import xyz.niflheim.stockfish.metrics.StockfishMetrics;
 import xyz.niflheim.stockfish.util.OSValidator;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 import java.util.regex.Pattern;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -104,6 +123,563 @@ class StockfishClientTest {
         }
     }
 
+    /**
+     * Resize the pool and restart engines at runtime.
+     */
+    @Test
+    void resizeAndRestart() {
+        if (OSValidator.isUnix()) {
+            try {
+                StockfishClient client = new StockfishClient.Builder()
+                        .setInstances(2)
+                        .setVariant(Variant.DEFAULT)
+                        .build();
+                assertEquals(2, getProcessNumber());
+
+                client.resize(4);
+                assertEquals(4, client.getInstances());
+                assertEquals(4, getProcessNumber());
+
+                assertTrue(client.restartEngine(0));
+                assertFalse(client.restartEngine(42));
+                client.clearHash();
+                assertTrue(client.drain(1, TimeUnit.SECONDS));
+                assertEquals(4, getProcessNumber());
+
+                client.resize(1);
+                assertEquals(1, client.getInstances());
+                assertEquals(1, getProcessNumber());
+                assertThrows(IllegalArgumentException.class, () -> client.resize(0));
+
+                client.close();
+                assertEquals(0, getProcessNumber());
+            } catch (Exception e) {
+                fail(e);
+            }
+        }
+    }
+
+    @Test
+    void jmx() {
+        StockfishClient client = null;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("xyz.niflheim.stockfish:type=StockfishClient,name=\"jmx-test\"");
+            int registered = server.queryNames(new ObjectName("xyz.niflheim.stockfish:*"), null).size();
+            new StockfishClient.Builder().build().close();
+            assertEquals(registered, server.queryNames(new ObjectName("xyz.niflheim.stockfish:*"), null).size());
+
+            long heap = Runtime.getRuntime().maxMemory() >> 20;
+            client = new StockfishClient.Builder().setMemoryLimit(heap + 40).setJmxEnabled(true).setJmxName("jmx-test").build();
+            assertEquals(1, server.getAttribute(name, "Instances"));
+            StockfishClient managed = client;
+            StockfishPoolException refused = assertThrows(StockfishPoolException.class,
+                    () -> new StockfishClientManagement(managed).resize(4));
+            assertTrue(refused.getCause() instanceof StockfishInitException);
+            client.close();
+            client = null;
+            assertFalse(server.isRegistered(name));
+        } catch (Exception e) {
+            fail(e);
+        } finally {
+            if (client != null)
+                client.close();
+        }
+    }
+
+    /**
+     * Stream a batch of queries in input and completion order.
+     */
+    @Test
+    void analyzeAll() {
+        StockfishClient client = null;
+        try {
+            client = new StockfishClient.Builder().setInstances(2).build();
+            List<Query> queries = new ArrayList<>();
+            for (int i = 0; i < 50; i++)
+                queries.add(new Query.Builder(i % 2 == 0 ? QueryType.Legal_Moves : QueryType.Best_Move, START_FEN)
+                        .setDepth(1 + i % 5)
+                        .build());
+
+            List<QueryResult> ordered = client.analyzeAll(queries, true, 3).collect(Collectors.toList());
+            assertEquals(50, ordered.size());
+            for (int i = 0; i < ordered.size(); i++) {
+                assertEquals(i, ordered.get(i).getIndex());
+                assertSame(queries.get(i), ordered.get(i).getQuery());
+                assertTrue(ordered.get(i).isSuccess());
+            }
+
+            Set<Long> indices = client.analyzeAll(queries, false)
+                    .map(QueryResult::getIndex)
+                    .collect(Collectors.toSet());
+            assertEquals(50, indices.size());
+
+            assertEquals(0, client.analyzeAll(Collections.emptyList()).count());
+            assertTrue(client.submitAsync(queries.get(1)).get().matches(MOVE_REGEX));
+            assertTrue(client.getMetrics().getNodes() > 0);
+            assertTrue(client.estimateCapacity(10_000) > 0);
+        } catch (Exception e) {
+            fail(e);
+        } finally {
+            if (client != null) {
+                client.close();
+            }
+        }
+    }
+
+    @Test
+    void perft() {
+        StockfishClient client = null;
+        try {
+            client = new StockfishClient.Builder().setInstances(4).build();
+            String kiwipete = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+            String divide = client.submitAsync(new Query.Builder(QueryType.Perft, kiwipete).setDepth(3).build()).get();
+
+            assertEquals(97862, Stockfish.perftNodes(divide));
+            assertEquals(48, divide.split("\n").length - 3);
+            assertTrue(divide.contains("e1g1: 2059\n"));
+            assertEquals(48 + 1, client.getMetrics().getCompleted());
+
+            BlockingQueue<String> result = new ArrayBlockingQueue<>(1);
+            client.submit(new Query.Builder(QueryType.Perft, START_FEN).setDepth(4).build(), result::add);
+            assertEquals(197281, Stockfish.perftNodes(result.poll(30, TimeUnit.SECONDS)));
+
+            MoveList moves = client.legalMovesAsync(new Query.Builder(QueryType.Legal_Moves, kiwipete).build()).get();
+            assertEquals(48, moves.size());
+            assertTrue(moves.contains("e1g1"));
+            assertEquals(0L, (long) client.checkersAsync(new Query.Builder(QueryType.Checkers, kiwipete).build()).get());
+            assertEquals(1L << 39, (long) client.checkersAsync(new Query.Builder(QueryType.Checkers,
+                    "rnbqkbnr/ppppp2p/5p2/6pQ/4P3/8/PPPP1PPP/RNB1KBNR b KQkq - 1 3").build()).get());
+            StockfishClient typed = client;
+            assertThrows(IllegalArgumentException.class, () -> typed.legalMovesAsync(new Query.Builder(QueryType.Checkers, kiwipete).build()));
+            assertThrows(IllegalArgumentException.class, () -> typed.bestMoveAsync(new Query.Builder(QueryType.Checkers, kiwipete).build()));
+        } catch (Exception e) {
+            fail(e);
+        } finally {
+            if (client != null) {
+                client.close();
+            }
+        }
+    }
+
+    @Test
+    void engineDiscovery() {
+        Map<Integer, String> first = new ConcurrentHashMap<>();
+        UciListener listener = new UciListener() {
+            @Override
+            public void onCommand(int engine, long nanoTime, String command) {
+                first.putIfAbsent(engine, command);
+            }
+
+            @Override
+            public void onLine(int engine, long nanoTime, String line) {
+            }
+        };
+
+        StockfishClient client = null;
+        try {
+            client = new StockfishClient.Builder()
+                    .setEngine("assets/engines/stockfish_10_x64")
+                    .setInstances(3)
+                    .setOption(Option.Hash, 32)
+                    .setUciListener(listener)
+                    .setJmxEnabled(false)
+                    .build();
+            assertEquals(3, first.size());
+            assertTrue(first.values().stream().allMatch("uci"::equals));
+            EngineInfo info = client.getEngineInfo();
+            assertEquals("Stockfish 10 64", info.getName());
+            assertEquals(131072, info.getOption("Hash").getMax());
+            assertEquals(UciOption.Type.CHECK, info.getOption("Ponder").getType());
+            assertTrue(client.submitAsync(new Query.Builder(QueryType.Best_Move, START_FEN).setDepth(6).build()).get().matches(MOVE_REGEX));
+        } catch (Exception e) {
+            fail(e);
+        } finally {
+            if (client != null) {
+                client.close();
+            }
+        }
+
+        StockfishInitException rejected = assertThrows(StockfishInitException.class,
+                () -> new StockfishClient.Builder().setInstances(2).setOption(Option.Skill_Level, 25).setJmxEnabled(false).build());
+        assertTrue(rejected.getMessage().endsWith("Option Skill Level of Stockfish 10 64 must be between 0 and 20: 25"));
+        assertThrows(StockfishInitException.class, () -> new StockfishClient.Builder().setEngine("assets/engines/missing").build());
+    }
+
+    @Test
+    void reconfigure() {
+        StockfishClient client = null;
+        try {
+            client = new StockfishClient.Builder().setInstances(3).setOption(Option.Threads, 1).setJmxEnabled(false).build();
+            int[] ids = client.getEngineIds();
+
+            List<CompletableFuture<String>> searches = new ArrayList<>();
+            for (int i = 0; i < 24; i++)
+                searches.add(client.submitAsync(new Query.Builder(QueryType.Best_Move, START_FEN).setDepth(10 + i % 3).build()));
+
+            CompletableFuture<Void> rollout = client.reconfigure("assets/engines/stockfish_10_x64_modern", Collections.singletonMap(Option.Hash, "32"));
+            StockfishClient reconfiguring = client;
+            assertThrows(IllegalStateException.class, () -> reconfiguring.reconfigure(null));
+            rollout.get(60, TimeUnit.SECONDS);
+
+            for (CompletableFuture<String> search : searches)
+                assertTrue(search.get().matches(MOVE_REGEX));
+            assertEquals(0, client.getMetrics().getFailed());
+            assertArrayEquals(ids, client.getEngineIds());
+            assertEquals(3, client.getInstances());
+            assertTrue(Arrays.asList(client.getOptions()).containsAll(Arrays.asList(Option.Threads, Option.Hash)));
+
+            assertThrows(StockfishInitException.class, () -> reconfiguring.reconfigure(null, Collections.singletonMap(Option.Skill_Level, "30")));
+            assertThrows(StockfishInitException.class, () -> reconfiguring.reconfigure("assets/engines/missing"));
+            assertEquals(2, client.getOptions().length);
+            assertTrue(client.submitAsync(new Query.Builder(QueryType.Best_Move, START_FEN).setDepth(6).build()).get().matches(MOVE_REGEX));
+
+            assertThrows(StockfishInitException.class, () -> reconfiguring.reconfigure(null, Collections.singletonMap(Option.Threads, "1024")));
+            assertEquals("1", client.getOptionValues().get(Option.Threads));
+            assertEquals("32", client.getOptionValues().get(Option.Hash));
+            client.reconfigure(null).get(30, TimeUnit.SECONDS);
+            assertArrayEquals(new String[]{"Threads=1", "Hash=32"}, new StockfishClientManagement(client).getOptions());
+
+            StockfishClient unconfigured = new StockfishClient.Builder().setJmxEnabled(false).build();
+            try {
+                unconfigured.reconfigure(null, Collections.singletonMap(Option.Threads, "2")).get(30, TimeUnit.SECONDS);
+                assertEquals("2", unconfigured.getOptionValues().get(Option.Threads));
+            } finally {
+                unconfigured.close();
+            }
+        } catch (Exception e) {
+            fail(e);
+        } finally {
+            if (client != null) {
+                client.close();
+            }
+        }
+    }
+
+    @Test
+    void memoryBudget() {
+        Map<Integer, String> hash = new ConcurrentHashMap<>();
+        UciListener listener = new UciListener() {
+            @Override
+            public void onCommand(int engine, long nanoTime, String command) {
+                if (command.startsWith("setoption name Hash value "))
+                    hash.put(engine, command.substring(26));
+            }
+
+            @Override
+            public void onLine(int engine, long nanoTime, String line) {
+            }
+        };
+
+        StockfishClient client = null;
+        try {
+            client = new StockfishClient.Builder().setInstances(2).setMemoryBudget(64).setUciListener(listener).setJmxEnabled(false).build();
+            assertEquals(32, client.getHash());
+            assertEquals(Arrays.asList("32", "32"), new ArrayList<>(hash.values()));
+
+            client.resize(4);
+            assertEquals(16, client.getHash());
+            assertTrue(client.drain(10, TimeUnit.SECONDS));
+            assertEquals(4, hash.size());
+            assertTrue(hash.values().stream().allMatch("16"::equals));
+
+            client.resize(1);
+            assertTrue(client.drain(10, TimeUnit.SECONDS));
+            assertEquals(64, client.getHash());
+            assertEquals("64", hash.get(client.getEngineIds()[0]));
+            assertTrue(client.submitAsync(new Query.Builder(QueryType.Best_Move, START_FEN).setDepth(6).build()).get().matches(MOVE_REGEX));
+
+            StockfishClient budgeted = client;
+            assertThrows(IllegalArgumentException.class, () -> budgeted.reconfigure(null, Collections.singletonMap(Option.Hash, "128")));
+            assertThrows(StockfishInitException.class, () -> budgeted.resize(65));
+        } catch (Exception e) {
+            fail(e);
+        } finally {
+            if (client != null) {
+                client.close();
+            }
+        }
+
+        long heap = Runtime.getRuntime().maxMemory() >> 20;
+        StockfishInitException refused = assertThrows(StockfishInitException.class,
+                () -> new StockfishClient.Builder().setMemoryLimit(heap + 100).setMemoryBudget(200).setJmxEnabled(false).build());
+        assertTrue(refused.getMessage().endsWith("exceed the memory limit of " + (heap + 100) + " MB"));
+        assertThrows(StockfishInitException.class,
+                () -> new StockfishClient.Builder().setMemoryLimit(heap + 100).setInstances(2).setOption(Option.Hash, 64).setJmxEnabled(false).build());
+        assertThrows(IllegalArgumentException.class,
+                () -> new StockfishClient.Builder().setMemoryBudget(64).setOption(Option.Hash, 16).setJmxEnabled(false).build());
+    }
+
+    @Test
+    void profiles() {
+        List<String> commands = Collections.synchronizedList(new ArrayList<>());
+        UciListener listener = new UciListener() {
+            @Override
+            public void onCommand(int engine, long nanoTime, String command) {
+                if (command.startsWith("setoption name Skill Level") || command.startsWith("setoption name Contempt"))
+                    commands.add(engine + ": " + command.substring(15));
+            }
+
+            @Override
+            public void onLine(int engine, long nanoTime, String line) {
+            }
+        };
+
+        StockfishClient client = null;
+        try {
+            client = new StockfishClient.Builder()
+                    .setInstances(2)
+                    .addProfile(new Profile.Builder("weak").setOption(Option.Skill_Level, 1).build())
+                    .addProfile(new Profile.Builder("aggressive").setOption(Option.Contempt, 50).build())
+                    .setUciListener(listener)
+                    .setJmxEnabled(false)
+                    .build();
+            Query.Builder weak = new Query.Builder(QueryType.Best_Move, START_FEN).setDepth(4).setProfile("weak");
+            Query.Builder aggressive = new Query.Builder(QueryType.Best_Move, START_FEN).setDepth(4).setProfile("aggressive");
+
+            for (int i = 0; i < 5; i++)
+                assertTrue(client.submitAsync(weak.build()).get().matches(MOVE_REGEX));
+            for (int i = 0; i < 5; i++)
+                assertTrue(client.submitAsync(aggressive.build()).get().matches(MOVE_REGEX));
+            for (int i = 0; i < 6; i++)
+                assertTrue(client.submitAsync((i % 2 == 0 ? weak : aggressive).build()).get().matches(MOVE_REGEX));
+            assertEquals(2, client.getMetrics().getProfileSwitches());
+            assertEquals(2, commands.size());
+
+            assertTrue(client.submitAsync(weak.setDifficulty(10).build()).get().matches(MOVE_REGEX));
+            commands.clear();
+            assertTrue(client.submitAsync(weak.setDifficulty(-1).build()).get().matches(MOVE_REGEX));
+            assertEquals(1, commands.size());
+            assertTrue(commands.get(0).endsWith("Skill Level value 1"));
+
+            commands.clear();
+            try (StockfishSession session = client.openSession()) {
+                assertTrue(session.submit(new Query.Builder(QueryType.Best_Move, START_FEN).setDepth(4).build()).matches(MOVE_REGEX));
+            }
+            assertEquals(1, commands.size());
+            assertTrue(commands.get(0).endsWith("Skill Level value 20") || commands.get(0).endsWith("Contempt value 24"));
+
+            StockfishClient profiled = client;
+            ExecutionException unknown = assertThrows(ExecutionException.class,
+                    () -> profiled.submitAsync(new Query.Builder(QueryType.Best_Move, START_FEN).setDepth(4).setProfile("strong").build()).get());
+            assertTrue(unknown.getCause() instanceof IllegalArgumentException);
+            assertThrows(IllegalArgumentException.class, () -> profiled.openSession("strong"));
+        } catch (Exception e) {
+            fail(e);
+        } finally {
+            if (client != null) {
+                client.close();
+            }
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> new Profile.Builder("big").setOption(Option.Hash, 1024));
+        assertThrows(StockfishInitException.class, () -> new StockfishClient.Builder()
+                .addProfile(new Profile.Builder("impossible").setOption(Option.Skill_Level, 30).build()).setJmxEnabled(false).build());
+    }
+
+    @Test
+    void hashPolicy() {
+        List<String> resets = Collections.synchronizedList(new ArrayList<>());
+        List<Integer> searches = Collections.synchronizedList(new ArrayList<>());
+        UciListener listener = new UciListener() {
+            @Override
+            public void onCommand(int engine, long nanoTime, String command) {
+                if (command.equals("ucinewgame") || command.equals("setoption name Clear Hash"))
+                    resets.add(command);
+                else if (command.startsWith("go "))
+                    searches.add(engine);
+            }
+
+            @Override
+            public void onLine(int engine, long nanoTime, String line) {
+            }
+        };
+
+        StockfishClient client = null;
+        try {
+            client = new StockfishClient.Builder()
+                    .setInstances(2)
+                    .setHashPolicy(HashPolicy.NEW_GAME)
+                    .addProfile(new Profile.Builder("analysis").setHashPolicy(HashPolicy.KEEP).build())
+                    .setUciListener(listener)
+                    .setJmxEnabled(false)
+                    .build();
+            Query.Builder query = new Query.Builder(QueryType.Best_Move, START_FEN).setDepth(6);
+
+            client.submitAsync(query.setGame("a").build()).get();
+            client.submitAsync(query.setGame("a").build()).get();
+            client.submitAsync(query.setGame("b").build()).get();
+            assertEquals(searches.get(0), searches.get(1));
+            assertNotEquals(searches.get(0), searches.get(2));
+            client.submitAsync(query.setGame("a").build()).get();
+            client.submitAsync(query.setGame("b").build()).get();
+            assertEquals(searches.get(0), searches.get(3));
+            assertEquals(searches.get(2), searches.get(4));
+            assertTrue(resets.isEmpty());
+
+            client.submitAsync(query.setGame("c").build()).get();
+            assertEquals(Collections.singletonList("ucinewgame"), resets);
+            client.submitAsync(query.setGame(null).setHashPolicy(HashPolicy.CLEAR).build()).get();
+            assertEquals(Arrays.asList("ucinewgame", "setoption name Clear Hash"), resets);
+
+            resets.clear();
+            client.submitAsync(query.setHashPolicy(null).setProfile("analysis").build()).get();
+            client.submitAsync(query.setGame("d").build()).get();
+            assertTrue(resets.isEmpty());
+            assertEquals(0, client.getMetrics().getFailed());
+        } catch (Exception e) {
+            fail(e);
+        } finally {
+            if (client != null) {
+                client.close();
+            }
+        }
+    }
+
+    @Test
+    void ponder() {
+        StockfishClient client = null;
+        try {
+            client = new StockfishClient.Builder().setOption(Option.Ponder, 1).setJmxEnabled(false).build();
+            try (StockfishSession session = client.openSession()) {
+                Query.Builder clock = new Query.Builder(QueryType.Best_Move, START_FEN).setClock(10_000, 10_000, 100, 100);
+                BestMoveResult first = session.analyse(clock.build());
+                assertNotNull(first.getPonder());
+
+                String expected = Position.start().play(first.getBestMove()).play(first.getPonder()).toFen();
+                session.ponder(new Query.Builder(QueryType.Best_Move, expected).setClock(9_800, 10_000, 100, 100).build());
+                assertTrue(session.isPondering());
+                Thread.sleep(300);
+
+                long started = System.nanoTime();
+                BestMoveResult reply = session.ponderHit();
+                log.info("Reply after ponder hit in " + (System.nanoTime() - started) / 1_000_000 + " ms: " + reply);
+                assertFalse(session.isPondering());
+                assertTrue(reply.getBestMove().matches(MOVE_REGEX));
+                assertThrows(IllegalStateException.class, session::ponderHit);
+
+                session.ponder(new Query.Builder(QueryType.Best_Move, expected).setClock(9_800, 10_000, 100, 100).build());
+                assertTrue(session.submit(new Query.Builder(QueryType.Best_Move, START_FEN).setDepth(3).build()).matches(MOVE_REGEX));
+                assertFalse(session.isPondering());
+
+                session.ponder(new Query.Builder(QueryType.Best_Move, expected).build());
+            }
+            assertEquals(1, client.getIdleEngines());
+            assertTrue(client.submitAsync(new Query.Builder(QueryType.Best_Move, START_FEN).setDepth(3).build()).get().matches(MOVE_REGEX));
+        } catch (Exception e) {
+            fail(e);
+        } finally {
+            if (client != null) {
+                client.close();
+            }
+        }
+    }
+
+    @Test
+    void speculation() {
+        StockfishClient client = null;
+        try {
+            client = new StockfishClient.Builder().setSpeculation(true).setJmxEnabled(false).build();
+            StockfishMetrics metrics = client.getMetrics();
+
+            Query first = new Query.Builder(QueryType.Best_Move, START_FEN).setDepth(8).build();
+            Stockfish reference = new Stockfish(null, Variant.DEFAULT);
+            List<String> pv = reference.analyse(first, null).getPv();
+            reference.close();
+
+            client.submitAsync(first).get();
+            String predicted = Position.start().play(pv.get(0)).play(pv.get(1)).toFen();
+            Thread.sleep(500);
+
+            String reply = client.submitAsync(new Query.Builder(QueryType.Best_Move, predicted).setDepth(8).build()).get();
+            assertTrue(reply.matches(MOVE_REGEX));
+            assertEquals(1, metrics.getSpeculationHits());
+            assertEquals(1, metrics.getCompleted());
+
+            client.submitAsync(new Query.Builder(QueryType.Best_Move, START_FEN).setMovetime(1000).build()).get();
+            Thread.sleep(100);
+            long started = System.nanoTime();
+            client.submitAsync(new Query.Builder(QueryType.Legal_Moves, START_FEN).build()).get();
+            assertTrue(System.nanoTime() - started < TimeUnit.MILLISECONDS.toNanos(500));
+            assertTrue(metrics.getSpeculationCancelled() >= 1);
+
+            client.reconfigure(null).get(30, TimeUnit.SECONDS);
+            assertTrue(client.submitAsync(new Query.Builder(QueryType.Best_Move, predicted).setDepth(8).build()).get().matches(MOVE_REGEX));
+            assertEquals(1, metrics.getSpeculationHits());
+        } catch (Exception e) {
+            fail(e);
+        } finally {
+            if (client != null) {
+                client.close();
+            }
+        }
+    }
+
+    @Test
+    void coalescing() {
+        StockfishClient client = null;
+        try {
+            client = new StockfishClient.Builder().setCoalescing(true).setJmxEnabled(false).build();
+            Query popular = new Query.Builder(QueryType.Best_Move, START_FEN).setDepth(14).build();
+
+            List<CompletableFuture<String>> results = new ArrayList<>();
+            for (int i = 0; i < 20; i++)
+                results.add(client.submitAsync(new Query.Builder(QueryType.Best_Move, START_FEN).setDepth(14).build()));
+            CompletableFuture<String> other = client.submitAsync(new Query.Builder(QueryType.Best_Move, START_FEN).setDepth(13).build());
+
+            Set<String> moves = results.stream().map(CompletableFuture::join).collect(Collectors.toSet());
+            assertEquals(1, moves.size());
+            assertTrue(other.get().matches(MOVE_REGEX));
+            assertEquals(2, client.getMetrics().getCompleted());
+            assertEquals(19, client.getMetrics().getCoalesced());
+
+            assertTrue(client.submitAsync(popular).get().matches(MOVE_REGEX));
+            assertEquals(3, client.getMetrics().getCompleted());
+        } catch (Exception e) {
+            fail(e);
+        } finally {
+            if (client != null) {
+                client.close();
+            }
+        }
+    }
+
+    @Test
+    void resultStore() {
+        StockfishClient client = null;
+        try {
+            client = new StockfishClient.Builder().setInstances(2).setResultStore(16).setJmxEnabled(false).build();
+            String deep = client.submitAsync(new Query.Builder(QueryType.Best_Move, START_FEN).setDepth(16).build()).get();
+            assertEquals(1, client.getMetrics().getCompleted());
+
+            assertEquals(deep, client.submitAsync(new Query.Builder(QueryType.Best_Move, START_FEN.replace(" 0 1", " 0 7")).setDepth(12).build()).get());
+            BestMoveResult stored = client.bestMoveAsync(new Query.Builder(QueryType.Best_Move, START_FEN).setDepth(16).build()).get();
+            assertEquals(deep, stored.getBestMove());
+            assertTrue(stored.getDepth() >= 16);
+            assertNotNull(stored.getEvaluation());
+            assertEquals(1, client.getMetrics().getCompleted());
+            assertEquals(2, client.getMetrics().getStoreHits());
+
+            BestMoveResult searched = client.bestMoveAsync(new Query.Builder(QueryType.Best_Move, START_FEN).setDepth(17).build()).get();
+            assertTrue(searched.getBestMove().matches(MOVE_REGEX));
+            assertEquals(17, searched.getDepth());
+            assertEquals(searched.getBestMove(), searched.getPv().get(0));
+            assertTrue(client.submitAsync(new Query.Builder(QueryType.Best_Move, START_FEN).setDepth(12).setDifficulty(5).build()).get().matches(MOVE_REGEX));
+            assertTrue(client.submitAsync(new Query.Builder(QueryType.Best_Move, START_FEN).setDepth(12).setMovetime(50).build()).get().matches(MOVE_REGEX));
+            assertEquals(4, client.getMetrics().getCompleted());
+            assertEquals(2, client.getMetrics().getStoreHits());
+
+            client.submitAsync(new Query.Builder(QueryType.Best_Move, START_FEN).setDepth(17).build()).get();
+            assertEquals(3, client.getMetrics().getStoreHits());
+        } catch (Exception e) {
+            fail(e);
+        } finally {
+            if (client != null) {
+                client.close();
+            }
+        }
+    }
+
     @Test
     void submit() {
         StockfishClient client = null;
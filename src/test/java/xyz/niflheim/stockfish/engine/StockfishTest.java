@@ -6,6 +6,9 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.RepeatedTest;
 import org.junit.jupiter.api.Test;
+import xyz.niflheim.stockfish.chess.Move;
+import xyz.niflheim.stockfish.chess.Position;
+import xyz.niflheim.stockfish.engine.enums.Option;
 import xyz.niflheim.stockfish.engine.enums.Query;
 import xyz.niflheim.stockfish.engine.enums.QueryType;
 import xyz.niflheim.stockfish.engine.enums.Variant;
@@ -15,7 +18,11 @@ import xyz.niflheim.stockfish.exceptions.StockfishInitException;
 import java.io.*;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -62,7 +69,7 @@ class StockfishTest {
         try {
             String incorrectCommand = "incorrect command";
             stockfish.sendCommand(incorrectCommand);
-            assertArrayEquals(new String[]{GREETING_STOCKFISH, ERROR_STOCKFISH + incorrectCommand},
+            assertArrayEquals(new String[]{ERROR_STOCKFISH + incorrectCommand},
                     stockfish.readResponse(ERROR_STOCKFISH).toArray());
 
             incorrectCommand = "one more incorrect command";
@@ -174,8 +181,7 @@ class StockfishTest {
                     .build();
             assertEquals(START_FEN, stockfish.makeMove(makeMove));
             assertEquals(START_FEN, stockfish.makeMove(makeMove));
-            Query makeErrorMove = new Query.Builder(QueryType.Make_Move, "8/8/8/8/8/8/8/8 b KQkq - 0 1")
-                    .build();
+            Query makeErrorMove = new Query(QueryType.Make_Move, "8/8/8/8/8/8/8/8 b KQkq - 0 1", -1, -1, -1);
 
             assertThrows(StockfishEngineException.class, () -> stockfish.makeMove(makeErrorMove));
             assertThrows(StockfishEngineException.class, () -> stockfish.readLine(""));
@@ -187,14 +193,106 @@ class StockfishTest {
 
     }
 
+    @Test
+    void nodesBudget() {
+        try {
+            Query query = new Query.Builder(QueryType.Best_Move, START_FEN).setNodes(5000).build();
+            assertEquals("go nodes 5000 ", stockfish.goCommand(query));
+
+            BestMoveResult result = stockfish.analyse(query, null);
+            assertTrue(result.getNodes() >= 5000 && result.getNodes() < 10000);
+            assertEquals(result.getNodes(), stockfish.nodesSearched);
+
+            Stockfish testing = new Stockfish(0, null, Variant.DEFAULT, null, Collections.singletonMap(Option.Nodestime, "100"));
+            try {
+                assertEquals("go nodes 2000 ", testing.goCommand(new Query.Builder(QueryType.Best_Move, START_FEN).setMovetime(20).build()));
+                assertEquals("go nodes 1000 ", testing.goCommand(new Query.Builder(QueryType.Best_Move, START_FEN).setMovetime(20).setNodes(1000).build()));
+                assertEquals("go depth 5 ", testing.goCommand(new Query.Builder(QueryType.Best_Move, START_FEN).setDepth(5).build()));
+            } finally {
+                testing.close();
+            }
+        } catch (Exception e) {
+            fail(e);
+        }
+    }
+
+    @Test
+    void clocks() {
+        Query query = new Query.Builder(QueryType.Best_Move, START_FEN)
+                .setClock(60_000, 55_000, 1_000, 0)
+                .setMovesToGo(20)
+                .build();
+        assertTrue(query.isTimed());
+        assertEquals("go wtime 60000 btime 55000 winc 1000 binc 0 movestogo 20 ", stockfish.goCommand(query));
+        assertFalse(new Query.Builder(QueryType.Best_Move, START_FEN).build().isTimed());
+
+        Map<Option, String> options = new EnumMap<>(Option.class);
+        options.put(Option.Hash, Profile.value(Option.Hash, 16));
+        options.put(Option.Ponder, Profile.value(Option.Ponder, 1));
+        assertEquals(Arrays.asList("setoption name Hash value 16", "setoption name Ponder value true"), setoptions(options));
+        options.put(Option.Ponder, Profile.value(Option.Ponder, 0));
+        assertEquals(Arrays.asList("setoption name Hash value 16", "setoption name Ponder value false"), setoptions(options));
+    }
+
+    @Test
+    void syzygyOptions() {
+        assertEquals("setoption name SyzygyPath value <empty>", Option.SyzygyPath.toString());
+        assertEquals("setoption name Syzygy50MoveRule value true", Option.Syzygy50MoveRule.toString());
+        assertThrows(IllegalArgumentException.class, () -> Option.Hash.setValue("16"));
+
+        Map<Option, String> options = new EnumMap<>(Option.class);
+        options.put(Option.SyzygyPath, "/tb/wdl:/tb/dtz");
+        options.put(Option.SyzygyProbeDepth, Profile.value(Option.SyzygyProbeDepth, 4));
+        options.put(Option.Syzygy50MoveRule, Profile.value(Option.Syzygy50MoveRule, 0));
+        assertEquals(Arrays.asList("setoption name SyzygyPath value /tb/wdl:/tb/dtz", "setoption name SyzygyProbeDepth value 4",
+                "setoption name Syzygy50MoveRule value false"), setoptions(options));
+    }
+
+    private static List<String> setoptions(Map<Option, String> options) {
+        List<String> commands = new ArrayList<>();
+        UciListener listener = new UciListener() {
+            @Override
+            public void onCommand(int engine, long nanoTime, String command) {
+                if (command.startsWith("setoption"))
+                    commands.add(command);
+            }
+
+            @Override
+            public void onLine(int engine, long nanoTime, String line) {
+            }
+        };
+
+        try {
+            new Stockfish(0, null, Variant.DEFAULT, listener, options).close();
+        } catch (Exception e) {
+            fail(e);
+        }
+        return commands;
+    }
+
+    @Test
+    void perft() {
+        try {
+            String divide = stockfish.perft(new Query.Builder(QueryType.Perft, START_FEN).setDepth(3).build());
+            assertTrue(divide.startsWith("a2a3: 380\n"));
+            assertEquals(8902, Stockfish.perftNodes(divide));
+            assertTrue(divide.contains("\nNodes/second: "));
+
+            Query afterMove = new Query(QueryType.Perft, START_FEN, "e2e4", -1, 1, -1);
+            assertEquals(20, Stockfish.perftNodes(stockfish.perft(afterMove)));
+            assertThrows(IllegalStateException.class, () -> new Query.Builder(QueryType.Perft, START_FEN).build());
+        } catch (Exception e) {
+            fail(e);
+        }
+    }
+
     @Test
     void getCheckers() {
         try {
 //            Query checkersQuery = new Query.Builder(QueryType.Checkers, START_FEN).build();
 //            assertEquals("", stockfish.getCheckers(checkersQuery));
 
-            Query makeErrorMove = new Query.Builder(QueryType.Make_Move, "8/8/8/8/8/8/8/8 b KQkq - 0 1")
-                    .build();
+            Query makeErrorMove = new Query(QueryType.Make_Move, "8/8/8/8/8/8/8/8 b KQkq - 0 1", -1, -1, -1);
 
             assertThrows(StockfishEngineException.class, () -> stockfish.makeMove(makeErrorMove));
             assertThrows(StockfishEngineException.class, () -> stockfish.readLine(""));
@@ -233,8 +331,7 @@ class StockfishTest {
             log.info(bestMove);
             assertTrue(movePattern.matcher(bestMove).matches());
 
-            Query makeErrorMove = new Query.Builder(QueryType.Make_Move, "8/8/8/8/8/8/8/8 b KQkq - 0 1")
-                    .build();
+            Query makeErrorMove = new Query(QueryType.Make_Move, "8/8/8/8/8/8/8/8 b KQkq - 0 1", -1, -1, -1);
 
             assertThrows(StockfishEngineException.class, () -> stockfish.makeMove(makeErrorMove));
             assertThrows(StockfishEngineException.class, () -> stockfish.readLine(""));
@@ -272,8 +369,7 @@ class StockfishTest {
             log.info(legalMoves);
             assertTrue(movePattern.matcher(legalMoves).matches());
 
-            Query makeErrorMove = new Query.Builder(QueryType.Make_Move, "8/8/8/8/8/8/8/8 b KQkq - 0 1")
-                    .build();
+            Query makeErrorMove = new Query(QueryType.Make_Move, "8/8/8/8/8/8/8/8 b KQkq - 0 1", -1, -1, -1);
 
             assertThrows(StockfishEngineException.class, () -> stockfish.makeMove(makeErrorMove));
             assertThrows(StockfishEngineException.class, () -> stockfish.readLine(""));
@@ -284,6 +380,35 @@ class StockfishTest {
         }
     }
 
+    @Test
+    void typedResults() {
+        try {
+            MoveList legal = stockfish.legalMoves(new Query.Builder(QueryType.Legal_Moves, START_FEN).build());
+            assertEquals(20, legal.size());
+            assertTrue(legal.contains("e2e4"));
+            assertTrue(legal.contains(Move.parse("g1f3")));
+            assertFalse(legal.contains("e2e5"));
+            assertEquals(MoveList.parse(stockfish.getLegalMoves(new Query.Builder(QueryType.Legal_Moves, START_FEN).build())), legal);
+
+            String promotion = "7k/P7/8/8/8/8/8/K7 w - - 0 1";
+            MoveList moves = stockfish.legalMoves(new Query.Builder(QueryType.Legal_Moves, promotion).build());
+            assertTrue(moves.contains("a7a8q") && moves.contains("a7a8n"));
+            assertTrue(stockfish.legalMoves(new Query.Builder(QueryType.Legal_Moves, "7k/5Q2/6K1/8/8/8/8/8 b - - 0 1").build()).isEmpty());
+
+            assertEquals(0, stockfish.checkers(new Query.Builder(QueryType.Checkers, START_FEN).build()));
+            assertEquals(1L << Position.square("h5"),
+                    stockfish.checkers(new Query.Builder(QueryType.Checkers, "rnbqkbnr/ppppp2p/5p2/6pQ/4P3/8/PPPP1PPP/RNB1KBNR b KQkq - 1 3").build()));
+
+            BestMoveResult result = stockfish.analyse(new Query.Builder(QueryType.Best_Move, START_FEN).setDepth(8).build(), null);
+            assertEquals(result.getBestMove(), Move.toUci(result.getBestMoveCode()));
+            assertEquals(result.getPv(), result.getPvMoves().toUciList());
+            assertEquals(result.getBestMoveCode(), result.getPvMoves().get(0));
+            assertTrue(legal.contains(result.getBestMoveCode()));
+        } catch (Exception e) {
+            fail(e);
+        }
+    }
+
     @Test
     void checkExceptionAfterClose() {
         try {
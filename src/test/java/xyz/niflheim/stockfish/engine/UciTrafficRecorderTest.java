@@ -0,0 +1,54 @@
+package xyz.niflheim.stockfish.engine;
+
+import org.junit.jupiter.api.Test;
+import xyz.niflheim.stockfish.engine.enums.Variant;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UciTrafficRecorderTest {
+
+    @Test
+    void ringBuffer() {
+        UciTrafficRecorder recorder = new UciTrafficRecorder(4);
+        long now = System.nanoTime();
+        for (int i = 0; i < 6; i++)
+            recorder.onLine(i % 2, now + i, "line " + i);
+
+        List<UciTrafficRecorder.Entry> entries = recorder.getEntries(-1, now);
+        assertEquals(4, entries.size());
+        assertEquals("line 2", entries.get(0).getText());
+        assertEquals("line 5", entries.get(3).getText());
+
+        entries = recorder.getEntries(1, now);
+        assertEquals(2, entries.size());
+        assertEquals("line 3", entries.get(0).getText());
+        assertEquals(0, recorder.getEntries(1, now + 10).size());
+
+        recorder.clear();
+        assertEquals(0, recorder.getEntries(1, TimeUnit.HOURS).size());
+        assertThrows(IllegalArgumentException.class, () -> new UciTrafficRecorder(0));
+    }
+
+    @Test
+    void engineTraffic() {
+        try {
+            UciTrafficRecorder recorder = new UciTrafficRecorder(1024);
+            Stockfish stockfish = new Stockfish(7, null, Variant.DEFAULT, recorder, Collections.emptyMap());
+            stockfish.waitForReady();
+            stockfish.close();
+
+            List<UciTrafficRecorder.Entry> entries = recorder.getEntries(1, TimeUnit.MINUTES);
+            assertTrue(entries.stream().allMatch(e -> e.getEngine() == 7));
+            assertTrue(entries.stream().anyMatch(e -> e.isOutgoing() && e.getText().equals("isready")));
+            assertTrue(entries.stream().anyMatch(e -> !e.isOutgoing() && e.getText().equals("readyok")));
+            assertTrue(entries.stream().anyMatch(e -> !e.isOutgoing() && e.getText().startsWith("Stockfish")));
+            assertTrue(recorder.dump(1, TimeUnit.MINUTES).contains(">> quit"));
+        } catch (Exception e) {
+            fail(e);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package xyz.niflheim.stockfish.engine.enums;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import xyz.niflheim.stockfish.chess.PackedPosition;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static xyz.niflheim.stockfish.util.StringUtil.START_FEN;
@@ -42,11 +43,17 @@ class QueryTest {
         Query query = new Query.Builder(QueryType.Make_Move, START_FEN).build();
         assertEquals(START_FEN, query.getFen());
 
-        query = new Query.Builder(QueryType.Make_Move, "8/8/8/8/8/8/8/8 b KQkq - 0 1").build();
-        assertEquals("8/8/8/8/8/8/8/8 b KQkq - 0 1", query.getFen());
+        query = new Query.Builder(QueryType.Make_Move, "4k3/8/8/8/8/8/8/4K3 b - - 0 1").build();
+        assertEquals("4k3/8/8/8/8/8/8/4K3 b - - 0 1", query.getFen());
 
-        query = new Query.Builder(QueryType.Make_Move, "8/8/8/8/8/8/8/8 w kkkk - 10 10").build();
-        assertEquals("8/8/8/8/8/8/8/8 w kkkk - 10 10", query.getFen());
+        query = new Query.Builder(QueryType.Make_Move, "r3k2r/8/8/8/8/8/8/4K3 w kq - 10 10").build();
+        assertEquals("r3k2r/8/8/8/8/8/8/4K3 w kq - 10 10", query.getFen());
+
+        assertThrows(IllegalArgumentException.class,
+                () -> new Query.Builder(QueryType.Make_Move, "8/8/8/8/8/8/8/8 b KQkq - 0 1").build());
+
+        assertThrows(IllegalArgumentException.class,
+                () -> new Query.Builder(QueryType.Make_Move, "8/8/8/8/8/8/8/8 w kkkk - 10 10").build());
 
         assertThrows(IllegalArgumentException.class,
                 () -> new Query.Builder(QueryType.Make_Move, "8/8/8/8//8/8/8 w kkkk - 10 10").build());
@@ -74,6 +81,18 @@ class QueryTest {
 
         assertThrows(IllegalStateException.class,
                 () -> new Query.Builder(QueryType.Make_Move, null).build());
+
+        String fen = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+        query = new Query.Builder(QueryType.Best_Move).setPosition(PackedPosition.fromFen(fen)).setDepth(5).build();
+        assertEquals(fen, query.getFen());
+        assertEquals(PackedPosition.fromFen(fen), query.getPackedPosition());
+        assertNull(new Query.Builder(QueryType.Best_Move, fen).build().getPackedPosition());
+        assertThrows(IllegalStateException.class, () -> new Query.Builder(QueryType.Best_Move).build());
+
+        PackedPosition illegal = PackedPosition.fromFen("4k3/8/8/8/8/8/8/4K2q b - - 0 1");
+        IllegalArgumentException rejected = assertThrows(IllegalArgumentException.class,
+                () -> new Query.Builder(QueryType.Best_Move).setPosition(illegal).build());
+        assertTrue(rejected.getMessage().startsWith("Incorrect packed position in Query: 4k3/8/8/8/8/8/8/4K2q b"));
     }
 
     @Test
@@ -108,6 +127,26 @@ class QueryTest {
 
     }
 
+    @Test
+    void getProfile() {
+        query = new Query.Builder(QueryType.Best_Move, START_FEN).build();
+        assertNull(query.getProfile());
+
+        query = new Query.Builder(QueryType.Best_Move, START_FEN).setProfile("club").build();
+        assertEquals("club", query.getProfile());
+    }
+
+    @Test
+    void getGame() {
+        query = new Query.Builder(QueryType.Best_Move, START_FEN).build();
+        assertNull(query.getGame());
+        assertNull(query.getHashPolicy());
+
+        query = new Query.Builder(QueryType.Best_Move, START_FEN).setGame("round-1").setHashPolicy(HashPolicy.NEW_GAME).build();
+        assertEquals("round-1", query.getGame());
+        assertEquals(HashPolicy.NEW_GAME, query.getHashPolicy());
+    }
+
     @Test
     void getDifficulty() {
         query = new Query.Builder(QueryType.Make_Move, START_FEN).build();
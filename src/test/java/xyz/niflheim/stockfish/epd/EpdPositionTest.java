@@ -0,0 +1,39 @@
+package xyz.niflheim.stockfish.epd;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EpdPositionTest {
+
+    @Test
+    void parse() {
+        EpdPosition epd = EpdPosition.parse("2rr3k/pp3pp1/1nnqbN1p/3pN3/2pP4/2P3Q1/PPB4P/R4RK1 w - - bm Qg6; id \"WAC.001\";");
+        assertEquals("2rr3k/pp3pp1/1nnqbN1p/3pN3/2pP4/2P3Q1/PPB4P/R4RK1 w - - 0 1", epd.getFen());
+        assertEquals(Collections.singletonList("Qg6"), epd.getBestMoves());
+        assertTrue(epd.getAvoidMoves().isEmpty());
+        assertEquals("WAC.001", epd.getId());
+
+        epd = EpdPosition.parse("r1b1k2r/1pp1qppp/p1n2n2/4p3/2B1P3/2N2N2/PPPQ1PPP/R3K2R b KQkq - am Nxe4 Qb4; c0 \"a; b\"; hmvc 4; fmvn 9;");
+        assertEquals("r1b1k2r/1pp1qppp/p1n2n2/4p3/2B1P3/2N2N2/PPPQ1PPP/R3K2R b KQkq - 4 9", epd.getFen());
+        assertEquals(Arrays.asList("Nxe4", "Qb4"), epd.getAvoidMoves());
+        assertEquals(Collections.singletonList("a; b"), epd.getOperation("c0"));
+        assertNull(epd.getId());
+
+        assertThrows(IllegalArgumentException.class, () -> EpdPosition.parse("8/8/8/8/8/8/8/K6k w"));
+        assertThrows(IllegalArgumentException.class, () -> EpdPosition.parse("8/8/8/8/8/8/8/K6k w - - id \"open;"));
+    }
+
+    @Test
+    void parseAll() throws IOException {
+        List<EpdPosition> suite = EpdPosition.parseAll(new StringReader("# suite\n\n8/8/8/8/8/8/8/K6k w - - id \"a\";\n8/8/8/8/8/8/8/K6k b - - id \"b\";\n"));
+        assertEquals(2, suite.size());
+        assertEquals("b", suite.get(1).getId());
+    }
+}
@@ -0,0 +1,50 @@
+package xyz.niflheim.stockfish.epd;
+
+import org.junit.jupiter.api.Test;
+import xyz.niflheim.stockfish.engine.StockfishClient;
+import xyz.niflheim.stockfish.util.OSValidator;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EpdRunnerTest {
+
+    @Test
+    void runSuite() throws Exception {
+        if (!OSValidator.isUnix())
+            return;
+
+        List<EpdPosition> suite = Arrays.asList(
+                EpdPosition.parse("6k1/5ppp/8/8/8/8/8/R5K1 w - - bm Ra8#; id \"back rank\";"),
+                EpdPosition.parse("r1bqkbnr/pppp1ppp/2n5/4p2Q/2B1P3/8/PPPP1PPP/RNB1K1NR b KQkq - am Nf6; id \"avoid\";"),
+                EpdPosition.parse("6k1/5ppp/8/8/8/8/8/R5K1 w - - bm Ra7; id \"wrong\";"),
+                EpdPosition.parse("6k1/5ppp/8/8/8/8/8/R5K1 w - - bm Rb8b; id \"illegal\";"));
+
+        StockfishClient client = new StockfishClient.Builder()
+                .setInstances(2)
+                .setJmxEnabled(false)
+                .build();
+        try {
+            EpdReport report = new EpdRunner.Builder(client).setNodes(20000).build().run(suite);
+
+            assertEquals(4, report.getTotal());
+            assertEquals(2, report.getSolved());
+            assertEquals(1, report.getFailed());
+            assertTrue(report.getPositionsPerSecond() > 0);
+
+            EpdResult mate = report.getResults().get(0);
+            assertEquals("a1a8", mate.getBestMove());
+            assertTrue(mate.isSolved());
+            assertTrue(mate.getTimeToSolution() >= 0 && mate.getTimeToSolution() <= mate.getTime());
+            assertTrue(report.getResults().get(1).isSolved());
+            assertFalse(report.getResults().get(2).isSolved());
+            assertEquals(-1, report.getResults().get(2).getTimeToSolution());
+            assertTrue(report.getResults().get(3).getError() instanceof IllegalArgumentException);
+            assertEquals(2, client.getIdleEngines());
+        } finally {
+            client.close();
+        }
+    }
+}
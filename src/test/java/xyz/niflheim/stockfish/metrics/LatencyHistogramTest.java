@@ -0,0 +1,62 @@
+package xyz.niflheim.stockfish.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void empty() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getMin());
+        assertEquals(0, histogram.getValueAtPercentile(99));
+        assertEquals(0.0, histogram.getMean());
+    }
+
+    @Test
+    void exactBelowSubBucketCount() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++)
+            histogram.record(i);
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(50, histogram.getValueAtPercentile(50));
+        assertEquals(99, histogram.getValueAtPercentile(99));
+        assertEquals(100, histogram.getValueAtPercentile(100));
+        assertEquals(1, histogram.getMin());
+        assertEquals(50.5, histogram.getMean(), 1e-9);
+    }
+
+    @Test
+    void boundedRelativeError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        IntStream.rangeClosed(1, 100_000).forEach(i -> histogram.record(i * 1_000L));
+
+        long[] expected = {50_000_000L, 99_000_000L, 99_900_000L};
+        double[] percentiles = {50, 99, 99.9};
+        for (int i = 0; i < expected.length; i++) {
+            long value = histogram.getValueAtPercentile(percentiles[i]);
+            assertTrue(Math.abs(value - expected[i]) <= expected[i] / 64, "p" + percentiles[i] + " = " + value);
+        }
+        assertEquals(100_000_000L, histogram.getMax());
+    }
+
+    @Test
+    void reset() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(Long.MAX_VALUE);
+        histogram.record(-5);
+        assertEquals(2, histogram.getCount());
+        assertEquals(0, histogram.getMin());
+        assertEquals(Long.MAX_VALUE, histogram.getValueAtPercentile(100));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getValueAtPercentile(50));
+    }
+}
@@ -0,0 +1,86 @@
+package xyz.niflheim.stockfish.metrics;
+
+import org.junit.jupiter.api.Test;
+import xyz.niflheim.stockfish.engine.enums.QueryType;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StockfishMetricsTest {
+
+    @Test
+    void lifecycle() {
+        StockfishMetrics metrics = new StockfishMetrics();
+        metrics.querySubmitted();
+        metrics.querySubmitted();
+        assertEquals(2, metrics.getQueueDepth());
+
+        metrics.queryStarted(1_000);
+        assertEquals(1, metrics.getQueueDepth());
+        assertEquals(1, metrics.getBusyEngines());
+
+        metrics.queryCompleted(QueryType.Best_Move, 0, 5_000, 6_000);
+        assertEquals(0, metrics.getBusyEngines());
+        assertEquals(1, metrics.getCompleted());
+        assertEquals(1, metrics.getLatency(QueryType.Best_Move).getCount());
+
+        metrics.queryStarted(2_000);
+        metrics.queryFailed(QueryType.Checkers, 1, 3_000, true);
+        assertEquals(1, metrics.getFailed());
+        assertEquals(1, metrics.getFailed(QueryType.Checkers));
+        assertEquals(1, metrics.getCrashed());
+        assertEquals(8_000, metrics.getEngineBusyNanos());
+        assertEquals(2, metrics.getQueueWait().getCount());
+
+        metrics.nodesSearched(16_000);
+        assertEquals(16_000, metrics.getNodes());
+        assertEquals(2e9, metrics.getNodesPerSecond(), 1);
+
+        metrics.reset();
+        assertEquals(0, metrics.getNodes());
+        assertEquals(0, metrics.getCompleted());
+        assertEquals(0, metrics.getFailed());
+        assertEquals(0, metrics.getEngineBusyNanos());
+    }
+
+    @Test
+    void export() {
+        StockfishMetrics metrics = new StockfishMetrics();
+        metrics.querySubmitted();
+        metrics.queryStarted(10);
+        metrics.queryCompleted(QueryType.Legal_Moves, 3, 20, 30);
+
+        Map<String, Long> counters = new HashMap<>();
+        Map<String, Long> histograms = new HashMap<>();
+        boolean[] flushed = {false};
+        metrics.exportTo(new MetricsExporter() {
+            @Override
+            public void counter(String name, Map<String, String> tags, long value) {
+                counters.put(name + tags, value);
+            }
+
+            @Override
+            public void gauge(String name, Map<String, String> tags, long value) {
+                counters.put(name + tags, value);
+            }
+
+            @Override
+            public void histogram(String name, Map<String, String> tags, LatencyHistogram histogram) {
+                histograms.put(name + tags, histogram.getCount());
+            }
+
+            @Override
+            public void flush() {
+                flushed[0] = true;
+            }
+        });
+
+        assertTrue(flushed[0]);
+        assertEquals(Long.valueOf(1), counters.get("stockfish.queries.completed{}"));
+        assertEquals(Long.valueOf(0), counters.get("stockfish.queue.depth{}"));
+        assertEquals(Long.valueOf(1), histograms.get("stockfish.query.latency{type=Legal_Moves}"));
+        assertEquals(Long.valueOf(1), histograms.get("stockfish.engine.time{engine=3}"));
+    }
+}
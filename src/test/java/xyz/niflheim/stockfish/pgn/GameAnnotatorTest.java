@@ -0,0 +1,57 @@
+package xyz.niflheim.stockfish.pgn;
+
+import org.junit.jupiter.api.Test;
+import xyz.niflheim.stockfish.engine.StockfishClient;
+import xyz.niflheim.stockfish.util.OSValidator;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GameAnnotatorTest {
+
+    private static final String SCHOLARS_MATE = "[White \"A\"]\n[Black \"B\"]\n\n1. e4 e5 2. Bc4 Nc6 3. Qh5 Nf6 4. Qxf7# 1-0\n";
+    private static final String ILLEGAL = "1. e4 e5 2. Ke3 *\n";
+
+    @Test
+    void annotateGames() throws Exception {
+        if (!OSValidator.isUnix())
+            return;
+
+        StockfishClient client = new StockfishClient.Builder()
+                .setInstances(2)
+                .setJmxEnabled(false)
+                .build();
+        try {
+            GameAnnotator annotator = new GameAnnotator.Builder(client).setDepth(8).setBackward(true).build();
+
+            AnnotatedGame game = annotator.annotate(PgnReader.parse(SCHOLARS_MATE).get(0));
+            assertTrue(game.isSuccess());
+            assertEquals(7, game.getMoves().size());
+
+            AnnotatedMove blunder = game.getMoves().get(5);
+            assertEquals("Nf6", blunder.getSan());
+            assertEquals("g8f6", blunder.getMove());
+            assertEquals(MoveClassification.BLUNDER, blunder.getClassification());
+            assertTrue(blunder.getEvaluation().isMate());
+            assertEquals(1, blunder.getEvaluation().getMate());
+
+            AnnotatedMove mate = game.getMoves().get(6);
+            assertEquals(MoveClassification.BEST, mate.getClassification());
+            assertEquals(0, mate.getLoss());
+            assertTrue(game.toPgn().contains(" Nf6?? {#1} 4. Qxf7# {"));
+
+            List<PgnGame> games = PgnReader.parse(SCHOLARS_MATE + ILLEGAL + SCHOLARS_MATE);
+            List<AnnotatedGame> annotated = annotator.annotateAll(games).collect(Collectors.toList());
+            assertEquals(3, annotated.size());
+            assertEquals(Arrays.asList(true, false, true), annotated.stream().map(AnnotatedGame::isSuccess).collect(Collectors.toList()));
+            assertTrue(annotated.get(1).getError() instanceof IllegalArgumentException);
+            assertEquals(1, annotated.get(2).count(MoveClassification.BLUNDER));
+            assertEquals(2, client.getIdleEngines());
+        } finally {
+            client.close();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package xyz.niflheim.stockfish.pgn;
+
+import org.junit.jupiter.api.Test;
+import xyz.niflheim.stockfish.chess.Position;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PgnReaderTest {
+
+    private static final String PGN = "[Event \"Casual \\\"blitz\\\"\"]\n" +
+            "[White \"Anderssen\"]\n" +
+            "[Black \"Kieseritzky\"]\n" +
+            "[Result \"1-0\"]\n" +
+            "\n" +
+            "1. e4 e5 2. f4 {King's Gambit} exf4 (2... d5 3. exd5 (3. Nf3) e4) 3. Bc4 $6 Qh4+\n" +
+            "4.Kf1 b5!? ; the Bryan counter gambit\n" +
+            "5. Bxb5 1-0\n" +
+            "\n" +
+            "[FEN \"8/8/8/8/8/8/8/K6k b - - 0 40\"]\n" +
+            "\n" +
+            "40... Kg2 41. Ka2 1/2-1/2\n" +
+            "1. d4 d5 *\n" +
+            "[Event \"unfinished\"]\n" +
+            "1. c4";
+
+    @Test
+    void readGames() {
+        List<PgnGame> games = PgnReader.parse(PGN);
+        assertEquals(4, games.size());
+
+        PgnGame game = games.get(0);
+        assertEquals("Casual \"blitz\"", game.getTag("Event"));
+        assertEquals("Anderssen", game.getTag("White"));
+        assertEquals(Arrays.asList("e4", "e5", "f4", "exf4", "Bc4", "Qh4+", "Kf1", "b5!?", "Bxb5"), game.getMoves());
+        assertEquals("1-0", game.getResult());
+        assertEquals(Position.START_FEN, game.getStartFen());
+
+        game = games.get(1);
+        assertEquals("8/8/8/8/8/8/8/K6k b - - 0 40", game.getStartFen());
+        assertEquals(Arrays.asList("Kg2", "Ka2"), game.getMoves());
+        assertEquals("1/2-1/2", game.getResult());
+
+        game = games.get(2);
+        assertTrue(game.getTags().isEmpty());
+        assertEquals(Arrays.asList("d4", "d5"), game.getMoves());
+        assertEquals("*", game.getResult());
+
+        game = games.get(3);
+        assertEquals("unfinished", game.getTag("Event"));
+        assertEquals(Arrays.asList("c4"), game.getMoves());
+        assertEquals("*", game.getResult());
+    }
+
+    @Test
+    void empty() {
+        assertTrue(PgnReader.parse("").isEmpty());
+        assertTrue(PgnReader.parse("  \n{only a comment}\n").isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> PgnReader.parse("[Event]\n1. e4 *"));
+    }
+}
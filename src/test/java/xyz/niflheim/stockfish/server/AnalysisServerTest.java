@@ -0,0 +1,133 @@
+package xyz.niflheim.stockfish.server;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import xyz.niflheim.stockfish.engine.StockfishClient;
+import xyz.niflheim.stockfish.engine.StockfishSession;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static xyz.niflheim.stockfish.util.StringUtil.START_FEN;
+
+class AnalysisServerTest {
+
+    private StockfishClient client;
+    private AnalysisServer server;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        client = new StockfishClient.Builder().setInstances(2).setJmxEnabled(false).build();
+        server = new AnalysisServer.Builder(client).setAddress("localhost", 0).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+        client.close();
+    }
+
+    @Test
+    void queries() throws IOException {
+        String fen = "fen=" + URLEncoder.encode(START_FEN, "UTF-8");
+
+        HttpURLConnection legal = get("/legal_moves?" + fen);
+        assertEquals(200, legal.getResponseCode());
+        assertEquals("application/json", legal.getContentType());
+        String moves = read(legal.getInputStream());
+        assertTrue(moves.startsWith("{\"type\":\"Legal_Moves\""));
+        assertTrue(moves.contains("\"moves\":[\"a2a3\","));
+
+        HttpURLConnection best = get("/best_move?" + fen + "&depth=8");
+        assertEquals(200, best.getResponseCode());
+        assertTrue(read(best.getInputStream()).matches("\\{\"type\":\"Best_Move\",\"fen\":\".*\",\"result\":\"[a-h][1-8][a-h][1-8][nbrq]?\"}"));
+
+        HttpURLConnection move = get("/make_move?" + fen + "&move=e2e4");
+        assertTrue(read(move.getInputStream()).contains("\"result\":\"rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq - 0 1\""));
+
+        assertEquals(400, get("/best_move?" + fen).getResponseCode());
+        assertEquals(400, get("/best_move?fen=8/8/8/8/8/8/8/8+w+-+-+0+1&depth=1").getResponseCode());
+        assertEquals(400, get("/perft?" + fen + "&depth=x").getResponseCode());
+        assertEquals(404, get("/evaluate?" + fen).getResponseCode());
+        HttpURLConnection missing = get("/legal_moves");
+        assertEquals(400, missing.getResponseCode());
+        assertEquals("{\"error\":\"Missing parameter fen\"}", read(missing.getErrorStream()));
+    }
+
+    @Test
+    void streams() throws IOException {
+        HttpURLConnection analyse = get("/analyse?fen=" + URLEncoder.encode(START_FEN, "UTF-8") + "&depth=6");
+        assertEquals(200, analyse.getResponseCode());
+        assertEquals("text/event-stream", analyse.getContentType());
+        String events = read(analyse.getInputStream());
+        assertTrue(events.startsWith("event: info\ndata: {\"depth\":1,"));
+        assertTrue(events.contains("event: bestmove\ndata: {\"bestmove\":"));
+
+        HttpURLConnection batch = (HttpURLConnection) url("/batch?type=legal_moves").openConnection();
+        batch.setRequestMethod("POST");
+        batch.setDoOutput(true);
+        try (OutputStream body = batch.getOutputStream()) {
+            body.write((START_FEN + "\n\n7k/5Q2/6K1/8/8/8/8/8 b - - 0 1\n4k3/8/8/8/8/8/8/4K2R w K - 0 1\n").getBytes(StandardCharsets.UTF_8));
+        }
+        assertEquals(200, batch.getResponseCode());
+        String[] lines = read(batch.getInputStream()).split("\n");
+        assertEquals(3, lines.length);
+        assertTrue(lines[0].contains("\"index\":0"));
+        assertTrue(lines[1].contains("\"moves\":[]"));
+        assertTrue(lines[2].contains("\"e1g1\""));
+
+        assertEquals(405, get("/batch").getResponseCode());
+    }
+
+    @Test
+    void streamWaitsForSession() throws Exception {
+        String path = "/analyse?fen=" + URLEncoder.encode(START_FEN, "UTF-8") + "&depth=4";
+        HttpURLConnection waiting;
+        try (StockfishSession first = client.openSession(); StockfishSession second = client.openSession()) {
+            assertNotEquals(first.getEngineId(), second.getEngineId());
+            waiting = get(path);
+            waiting.setReadTimeout(500);
+            assertThrows(SocketTimeoutException.class, waiting::getResponseCode);
+            assertEquals(503, get(path).getResponseCode());
+        }
+        waiting.disconnect();
+
+        int status = 503;
+        for (int i = 0; i < 50 && status == 503; i++) {
+            HttpURLConnection analyse = get(path);
+            status = analyse.getResponseCode();
+            if (status == 503)
+                Thread.sleep(100);
+            else
+                assertTrue(read(analyse.getInputStream()).contains("event: bestmove"));
+        }
+        assertEquals(200, status);
+    }
+
+    private URL url(String path) throws IOException {
+        return new URL("http://localhost:" + server.getAddress().getPort() + path);
+    }
+
+    private HttpURLConnection get(String path) throws IOException {
+        return (HttpURLConnection) url(path).openConnection();
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) >= 0)
+            out.write(buffer, 0, read);
+        in.close();
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}